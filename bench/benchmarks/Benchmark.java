@@ -0,0 +1,60 @@
+package benchmarks;
+
+/**
+ * This is a single benchmark,  measured by
+ * the {@code BenchmarkRunner} for each of
+ * its parameter sizes.
+ * <p>
+ * A benchmark builds its state in {@code
+ * setUp}, which is not timed, and then has
+ * {@code run} called over and over. Its
+ * result is handed to the runner,  so that
+ * the  compiler cannot  optimize  the work
+ * away (like a JMH {@code Blackhole}).
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+public abstract class Benchmark
+{
+	private final String name;
+
+	protected Benchmark(String name)
+	{
+		this.name = name;
+	}
+
+	/**
+	 * Returns the  name  of  the  benchmark,
+	 * which is normally the method measured.
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * Builds the benchmark's state.
+	 *
+	 * @param size  The parameter size, usually
+	 * a number of entities.
+	 */
+	public void setUp(int size) throws Exception
+	{
+		return;
+	}
+
+	/**
+	 * Runs one operation of the benchmark.
+	 *
+	 * @return Returns any result of the operation.
+	 */
+	public abstract Object run() throws Exception;
+
+	/**
+	 * Releases the benchmark's state.
+	 */
+	public void tearDown() throws Exception
+	{
+		return;
+	}
+}
@@ -0,0 +1,254 @@
+package benchmarks;
+
+import java.lang.management.*;
+import java.util.*;
+
+import network.packet.codec.PacketCodec;
+
+/**
+ * This  is a small  benchmark harness, in
+ * the style of JMH: every benchmark  is
+ * run for a few warm-up iterations, which
+ * give the JIT compiler time to  settle,
+ * and then for a few measured  iterations
+ * of fixed duration. It reports the mean
+ * time per  operation,  its  error  (the
+ * standard deviation across iterations),
+ * and the bytes allocated per operation.
+ * <p>
+ * Benchmarks  run  in  a single JVM, one
+ * after the other, so results are only
+ * comparable between runs of  the same
+ * benchmarks. For the most stable numbers,
+ * filter down to one benchmark per run.
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+public final class BenchmarkRunner
+{
+	private static final int[] DEFAULT_SIZES = { 10, 100, 1000 };
+
+	/**
+	 * The results of every operation are written
+	 * here, so they are never dead code.
+	 */
+	private static volatile Object sink;
+
+	private final int warmups;
+	private final int iterations;
+	private final long iterationNanos;
+
+	/**
+	 * Creates a benchmark runner.
+	 *
+	 * @param warmups The number of warm-up
+	 * iterations.
+	 * @param iterations  The number of measured
+	 * iterations.
+	 * @param iterationMillis  The duration of
+	 * every iteration, in milliseconds.
+	 */
+	public BenchmarkRunner(int warmups, int iterations, long iterationMillis)
+	{
+		this.iterationNanos = iterationMillis * 1000000;
+		this.iterations = iterations;
+		this.warmups = warmups;
+	}
+
+	/**
+	 * Returns every benchmark.
+	 */
+	public static List<Benchmark> getBenchmarks()
+	{
+		return Arrays.asList(
+			new EntityBenchmarks.GetComponent(),
+			new EntityBenchmarks.HasAll(),
+			new EntityBenchmarks.Matches(),
+			new EntityBenchmarks.ClearModifiedComponents(),
+			new EntityBenchmarks.Commit(),
+			new EntityBenchmarks.GetEntity(),
+			new SystemBenchmarks.Targeting(),
+			new SystemBenchmarks.Physics(),
+			new SystemBenchmarks.PhysicsLoot(),
+			new SystemBenchmarks.Ai(),
+			new SystemBenchmarks.Death(),
+			new SystemBenchmarks.Bullets(),
+			new NetworkBenchmarks.SendPacket(PacketCodec.Format.BINARY),
+			new NetworkBenchmarks.SendPacket(PacketCodec.Format.SERIALIZED),
+			new NetworkBenchmarks.DecodePacket(PacketCodec.Format.BINARY),
+			new NetworkBenchmarks.DecodePacket(PacketCodec.Format.SERIALIZED),
+			new StorageBenchmarks.SaveFile(".bin"),
+			new StorageBenchmarks.SaveFile(".xml"),
+			new StorageBenchmarks.LoadFile(".bin"),
+			new StorageBenchmarks.LoadFile(".xml"));
+	}
+
+	/**
+	 * Measures a benchmark for one parameter size
+	 * and prints the result.
+	 */
+	public void measure(Benchmark benchmark, int size)
+	{
+		try
+		{
+			benchmark.setUp(size);
+
+			try
+			{
+				for (int t = 0; t < warmups; ++t) iteration(benchmark);
+
+				double[] nanosPerOp = new double[iterations];
+				double bytesPerOp = 0;
+
+				for (int t = 0; t < iterations; ++t)
+				{
+					long allocated = getAllocatedBytes();
+					long[] result = iteration(benchmark);
+					nanosPerOp[t] = (double)result[1] / result[0];
+					bytesPerOp += (double)(getAllocatedBytes() - allocated) / result[0] / iterations;
+				}
+
+				double mean = 0, variance = 0;
+				for (double value : nanosPerOp) mean += value / iterations;
+				for (double value : nanosPerOp) variance += (value - mean) * (value - mean) / Math.max(1, iterations - 1);
+
+				System.out.printf("  %-40s  %8d  %14.1f  %12.1f  %12.0f\n", benchmark.getName(), size,
+						          mean, Math.sqrt(variance), (bytesPerOp < 0 ? Double.NaN : bytesPerOp));
+			}
+			finally
+			{
+				benchmark.tearDown();
+			}
+		}
+		catch (Exception error)
+		{
+			System.out.printf("  %-40s  %8d  failed: %s\n", benchmark.getName(), size, error);
+		}
+	}
+
+	/**
+	 * Runs a benchmark for one iteration, in
+	 * batches which grow until the time taken
+	 * to read the clock no longer matters.
+	 *
+	 * @return  Returns the  number of operations
+	 * and the nanoseconds they took.
+	 */
+	private long[] iteration(Benchmark benchmark) throws Exception
+	{
+		long operations = 0;
+		long batch = 1;
+		long start = System.nanoTime();
+		long elapsed;
+
+		do
+		{
+			long batchStart = System.nanoTime();
+			for (long t = 0; t < batch; ++t) sink = benchmark.run();
+			operations += batch;
+
+			elapsed = System.nanoTime() - start;
+			if (System.nanoTime() - batchStart < iterationNanos / 100) batch *= 2;
+		}
+		while (elapsed < iterationNanos);
+
+		return new long[] { operations, elapsed };
+	}
+
+	/**
+	 * Returns the bytes allocated by the current
+	 * thread so far, or a negative value if the
+	 * JVM does not track them.
+	 */
+	private static long getAllocatedBytes()
+	{
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+		if (threads instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean)threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		else
+			return -1;
+	}
+
+	private static int[] parseSizes(String sizes)
+	{
+		String[] values = sizes.split(",");
+		int[] parsed = new int[values.length];
+		for (int t = 0; t < values.length; ++t) parsed[t] = Integer.parseInt(values[t].trim());
+		return parsed;
+	}
+
+	/**
+	 * Runs the benchmarks. Takes the following
+	 * optional arguments:
+	 * <ul>
+	 * <li>{@code -f <text>}: only runs the
+	 * benchmarks whose name contains the text
+	 * (may be given several times)</li>
+	 * <li>{@code -s <sizes>}: comma-separated
+	 * entity counts (default 10,100,1000)</li>
+	 * <li>{@code -w <count>}: warm-up iterations
+	 * (default 5)</li>
+	 * <li>{@code -i <count>}: measured iterations
+	 * (default 5)</li>
+	 * <li>{@code -t <millis>}: iteration duration
+	 * (default 1000)</li>
+	 * </ul>
+	 *
+	 * @param args The command-line arguments.
+	 */
+	public static void main(String[] args)
+	{
+		List<String> filters = new ArrayList<String>();
+		int[] sizes = DEFAULT_SIZES;
+		int warmups = 5, iterations = 5;
+		long millis = 1000;
+
+		try
+		{
+			for (int t = 0; t < args.length; t += 2)
+			{
+				if (t + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + args[t]);
+
+				if (args[t].equals("-f")) filters.add(args[t + 1]);
+				else if (args[t].equals("-s")) sizes = parseSizes(args[t + 1]);
+				else if (args[t].equals("-w")) warmups = Integer.parseInt(args[t + 1]);
+				else if (args[t].equals("-i")) iterations = Integer.parseInt(args[t + 1]);
+				else if (args[t].equals("-t")) millis = Long.parseLong(args[t + 1]);
+				else throw new IllegalArgumentException("Unknown option " + args[t]);
+			}
+
+			if (iterations <= 0) throw new IllegalArgumentException("Expected at least one iteration.");
+		}
+		catch (IllegalArgumentException error)
+		{
+			System.out.printf("%s\n", error.getMessage());
+			System.out.printf("Usage: [-f filter]... [-s sizes] [-w warmups] [-i iterations] [-t millis]\n");
+			return;
+		}
+
+		BenchmarkRunner runner = new BenchmarkRunner(warmups, iterations, millis);
+
+		System.out.printf("\n  Benchmark                                 Size           ns/op     error (ns)          B/op\n");
+		System.out.printf("  ========================================  ========  ==============  ============  ============\n");
+
+		for (Benchmark benchmark : getBenchmarks())
+		{
+			if (!matches(benchmark, filters)) continue;
+			for (int size : sizes) runner.measure(benchmark, size);
+		}
+
+		System.out.printf("\n");
+		System.exit(0); /* The physics and network classes may leave threads behind. */
+	}
+
+	private static boolean matches(Benchmark benchmark, List<String> filters)
+	{
+		if (filters.isEmpty()) return true;
+
+		for (String filter : filters)
+			if (benchmark.getName().contains(filter)) return true;
+
+		return false;
+	}
+}
@@ -0,0 +1,174 @@
+package benchmarks;
+
+import ecs.world.*;
+import ecs.entity.*;
+import ecs.components.*;
+
+/**
+ * These benchmarks measure  the entity and
+ * location  accessors  which  the  systems
+ * call for every entity, every tick. Each
+ * operation goes over every entity once.
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+final class EntityBenchmarks
+{
+	private EntityBenchmarks()
+	{
+		return;
+	}
+
+	private static abstract class EntityBenchmark extends Benchmark
+	{
+		protected Location location;
+		protected Entity[] entities;
+
+		protected EntityBenchmark(String name)
+		{
+			super(name);
+		}
+
+		@Override
+		public void setUp(int size)
+		{
+			location = Fixtures.location(size);
+			entities = Fixtures.shuffled(location);
+		}
+	}
+
+	public static class GetComponent extends EntityBenchmark
+	{
+		public GetComponent()
+		{
+			super("Entity.getComponent");
+		}
+
+		@Override
+		public Object run()
+		{
+			int found = 0;
+
+			for (Entity entity : entities)
+				if (entity.getComponent(Position.class) != null) found += 1;
+
+			return found;
+		}
+	}
+
+	public static class HasAll extends EntityBenchmark
+	{
+		public HasAll()
+		{
+			super("Entity.hasAll");
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public Object run()
+		{
+			int found = 0;
+
+			for (Entity entity : entities)
+				if (entity.hasAll(Target.class, TargetRadius.class, Position.class)) found += 1;
+
+			return found;
+		}
+	}
+
+	public static class Matches extends EntityBenchmark
+	{
+		private static final Query TARGETING = new Query(Target.class, TargetRadius.class, Position.class);
+
+		public Matches()
+		{
+			super("Entity.matches");
+		}
+
+		@Override
+		public Object run()
+		{
+			int found = 0;
+
+			for (Entity entity : entities)
+				if (entity.matches(TARGETING)) found += 1;
+
+			return found;
+		}
+	}
+
+	public static class ClearModifiedComponents extends EntityBenchmark
+	{
+		public ClearModifiedComponents()
+		{
+			super("Entity.clearModifiedComponents");
+		}
+
+		@Override
+		public Object run()
+		{
+			int modified = 0;
+
+			/* Every entity moves, as during a busy tick. */
+			for (Entity entity : entities)
+			{
+				Position position = entity.getComponent(Position.class);
+				if (position != null) position.markChanged();
+				modified += entity.clearModifiedComponents().size();
+			}
+
+			return modified;
+		}
+	}
+
+	public static class Commit extends EntityBenchmark
+	{
+		public Commit()
+		{
+			super("Location commit (1% moving)");
+		}
+
+		@Override
+		public Object run()
+		{
+			int updated = 0;
+
+			/* One entity in a hundred moves, as during a quiet tick. */
+			for (int t = 0; t < entities.length; t += 100)
+			{
+				Position position = entities[t].getComponent(Position.class);
+				if (position != null) position.markChanged();
+			}
+
+			/* Then the location is committed, as by the server. */
+			updated += location.clearRemovedEntities().size();
+
+			for (Entity entity : location.clearDirtyEntities())
+			{
+				entity.clearRemovedComponents();
+				if (entity.clearModifiedComponents().size() > 0) updated += 1;
+			}
+
+			return updated;
+		}
+	}
+
+	public static class GetEntity extends EntityBenchmark
+	{
+		public GetEntity()
+		{
+			super("Location.getEntity");
+		}
+
+		@Override
+		public Object run()
+		{
+			int found = 0;
+
+			for (Entity entity : entities)
+				if (location.getEntity(entity.getID()) != null) found += 1;
+
+			return found;
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package benchmarks;
+
+import java.util.*;
+
+import ecs.world.*;
+import ecs.entity.*;
+import ecs.helpers.*;
+
+/**
+ * This class builds the game  state  the
+ * benchmarks run against, from the same
+ * factories as the game itself. Entities
+ * are placed from a fixed seed, so every
+ * run measures the same state.
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+final class Fixtures
+{
+	private static final long SEED = 208;
+
+	/**
+	 * One entity in this many is a player, the
+	 * others are zombies.
+	 */
+	private static final int PLAYER_RATIO = 10;
+
+	private Fixtures()
+	{
+		return;
+	}
+
+	/**
+	 * Creates the game's starting location, and
+	 * adds {@code size} players and zombies to it
+	 * at random positions.
+	 */
+	public static Location location(int size)
+	{
+		Random random = new Random(SEED);
+		Location location = LocationFactory.startingLocation();
+
+		for (int t = 0; t < size; ++t)
+		{
+			float x = 0.05f + 0.9f * random.nextFloat();
+			float y = 0.05f + 0.9f * random.nextFloat();
+
+			if (t % PLAYER_RATIO == 0)
+			{
+				Entity player = EntityFactory.genPlayerEntity(String.format("player%d", t));
+				player.addComponent(new ecs.components.Position(x, y));
+				location.addEntity(player);
+			}
+			else location.addEntity(EntityFactory.genZombieEntity(x, y));
+		}
+
+		return location;
+	}
+
+	/**
+	 * Creates a world containing only the given
+	 * location.
+	 */
+	public static World world(Location location)
+	{
+		World world = new World(new HashSet<Location>(), new HashMap<String, PlayerRecord>());
+		world.add(location);
+		return world;
+	}
+
+	/**
+	 * Returns the entities of a location, in a
+	 * random (but fixed) order.
+	 */
+	public static Entity[] shuffled(Location location)
+	{
+		List<Entity> entities = new ArrayList<Entity>(location.getEntities());
+		Collections.sort(entities, new Comparator<Entity>()
+		{
+			@Override
+			public int compare(Entity a, Entity b)
+			{
+				return Long.compare(a.getID(), b.getID());
+			}
+		});
+
+		Collections.shuffle(entities, new Random(SEED));
+		return entities.toArray(new Entity[entities.size()]);
+	}
+}
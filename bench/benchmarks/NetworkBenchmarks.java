@@ -0,0 +1,230 @@
+package benchmarks;
+
+import java.net.*;
+import java.util.*;
+
+import ecs.world.*;
+import ecs.entity.*;
+import ecs.components.*;
+
+import network.*;
+import network.packet.*;
+import network.packet.codec.*;
+
+import naga.*;
+
+/**
+ * These benchmarks measure the encoding of
+ * a snapshot packet in which  every entity
+ * of a location has changed, and its
+ * decoding,  for  both  packet formats.
+ * Encoded packets are written to a socket
+ * which discards them.
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+final class NetworkBenchmarks
+{
+	private NetworkBenchmarks()
+	{
+		return;
+	}
+
+	private static SnapshotPacket snapshot(int size)
+	{
+		Location location = Fixtures.location(size);
+		SnapshotPacket snapshot = new SnapshotPacket();
+
+		for (Entity entity : location.getEntities())
+			snapshot.add(UpdatePacket.componentsUpdated(entity, entity.getComponents(), new HashSet<Class<? extends Component>>()));
+
+		return snapshot;
+	}
+
+	public static class SendPacket extends Benchmark
+	{
+		private final PacketCodec.Format format;
+		private SnapshotPacket snapshot;
+		private NetClient client;
+
+		public SendPacket(PacketCodec.Format format)
+		{
+			super(String.format("NetClient.sendPacket (%s)", format.name().toLowerCase()));
+			this.format = format;
+		}
+
+		@Override
+		public void setUp(int size)
+		{
+			client = new NetClient(new DiscardingSocket());
+			client.setPacketFormat(format);
+			snapshot = snapshot(size);
+		}
+
+		@Override
+		public Object run()
+		{
+			client.sendPacket(snapshot);
+			return client;
+		}
+	}
+
+	public static class DecodePacket extends Benchmark
+	{
+		private final PacketCodec.Format format;
+		private byte[] data;
+
+		public DecodePacket(PacketCodec.Format format)
+		{
+			super(String.format("NetClient.decodePacket (%s)", format.name().toLowerCase()));
+			this.format = format;
+		}
+
+		@Override
+		public void setUp(int size) throws Exception
+		{
+			data = PacketCodec.encode(snapshot(size), format);
+		}
+
+		@Override
+		public Object run()
+		{
+			return NetClient.decodePacket(data);
+		}
+	}
+
+	/**
+	 * A socket which  accepts  and discards
+	 * everything written to it.
+	 */
+	private static class DiscardingSocket implements NIOSocket
+	{
+		private Object tag;
+
+		@Override
+		public boolean write(byte[] packet)
+		{
+			return true;
+		}
+
+		@Override
+		public boolean write(byte[] packet, Object tag)
+		{
+			return true;
+		}
+
+		@Override
+		public void queue(Runnable runnable)
+		{
+			runnable.run();
+		}
+
+		@Override
+		public long getBytesRead()
+		{
+			return 0;
+		}
+
+		@Override
+		public long getBytesWritten()
+		{
+			return 0;
+		}
+
+		@Override
+		public long getTimeOpen()
+		{
+			return 0;
+		}
+
+		@Override
+		public long getWriteQueueSize()
+		{
+			return 0;
+		}
+
+		@Override
+		public int getMaxQueueSize()
+		{
+			return Integer.MAX_VALUE;
+		}
+
+		@Override
+		public void setMaxQueueSize(int size)
+		{
+			return;
+		}
+
+		@Override
+		public void setPacketReader(PacketReader reader)
+		{
+			return;
+		}
+
+		@Override
+		public void setPacketWriter(PacketWriter writer)
+		{
+			return;
+		}
+
+		@Override
+		public void listen(SocketObserver observer)
+		{
+			return;
+		}
+
+		@Override
+		public void closeAfterWrite()
+		{
+			return;
+		}
+
+		@Override
+		public Socket socket()
+		{
+			return null;
+		}
+
+		@Override
+		public void close()
+		{
+			return;
+		}
+
+		@Override
+		public InetSocketAddress getAddress()
+		{
+			return null;
+		}
+
+		@Override
+		public boolean isOpen()
+		{
+			return true;
+		}
+
+		@Override
+		public String getIp()
+		{
+			return "0.0.0.0";
+		}
+
+		@Override
+		public int getPort()
+		{
+			return 0;
+		}
+
+		@Override
+		public Object getTag()
+		{
+			return tag;
+		}
+
+		@Override
+		public void setTag(Object tag)
+		{
+			this.tag = tag;
+		}
+	}
+}
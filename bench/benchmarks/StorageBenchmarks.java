@@ -0,0 +1,78 @@
+package benchmarks;
+
+import java.io.*;
+
+import ecs.world.*;
+
+import dataStorage.*;
+
+/**
+ * These benchmarks measure saving a world
+ * with one populated location, and loading
+ * it back, in the XML and binary formats.
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+final class StorageBenchmarks
+{
+	private StorageBenchmarks()
+	{
+		return;
+	}
+
+	private static abstract class StorageBenchmark extends Benchmark
+	{
+		private final String extension;
+		protected World world;
+		protected File file;
+
+		protected StorageBenchmark(String name, String extension)
+		{
+			super(String.format("%s (%s)", name, extension));
+			this.extension = extension;
+		}
+
+		@Override
+		public void setUp(int size) throws Exception
+		{
+			world = Fixtures.world(Fixtures.location(size));
+			file = File.createTempFile("benchmark", extension);
+			DataStorage.saveFile(file, world);
+		}
+
+		@Override
+		public void tearDown()
+		{
+			file.delete();
+		}
+	}
+
+	public static class SaveFile extends StorageBenchmark
+	{
+		public SaveFile(String extension)
+		{
+			super("DataStorage.saveFile", extension);
+		}
+
+		@Override
+		public Object run()
+		{
+			DataStorage.saveFile(file, world);
+			return file;
+		}
+	}
+
+	public static class LoadFile extends StorageBenchmark
+	{
+		public LoadFile(String extension)
+		{
+			super("DataStorage.loadFile", extension);
+		}
+
+		@Override
+		public Object run() throws IOException
+		{
+			return DataStorage.loadFile(file);
+		}
+	}
+}
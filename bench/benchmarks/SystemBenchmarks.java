@@ -0,0 +1,189 @@
+package benchmarks;
+
+import java.util.*;
+
+import ecs.world.*;
+import ecs.entity.*;
+import ecs.helpers.*;
+import ecs.systems.*;
+
+/**
+ * These benchmarks measure the entity systems
+ * processing a single location, as they do
+ * once per tick.
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+final class SystemBenchmarks
+{
+	private static final double DELTA = 1.0 / 60;
+
+	private SystemBenchmarks()
+	{
+		return;
+	}
+
+	private static abstract class SystemBenchmark extends Benchmark
+	{
+		protected Location location;
+		protected World world;
+
+		protected SystemBenchmark(String name)
+		{
+			super(name);
+		}
+
+		@Override
+		public void setUp(int size)
+		{
+			location = Fixtures.location(size);
+			world = Fixtures.world(location);
+
+			/* Creates the location's physics bodies. */
+			world.getPhysics().process(world, location, DELTA);
+		}
+	}
+
+	public static class Physics extends SystemBenchmark
+	{
+		public Physics()
+		{
+			super("PhysicsSystem.process");
+		}
+
+		@Override
+		public Object run()
+		{
+			world.getPhysics().process(world, location, DELTA);
+			return location;
+		}
+	}
+
+	/**
+	 * A few zombies among many static entities
+	 * (money lying around), where the step is
+	 * cheap and keeping the bodies in sync with
+	 * the entities is most of the work.
+	 */
+	public static class PhysicsLoot extends SystemBenchmark
+	{
+		private static final int ZOMBIES = 10;
+
+		public PhysicsLoot()
+		{
+			super("PhysicsSystem.process (loot)");
+		}
+
+		@Override
+		public void setUp(int size)
+		{
+			Random random = new Random(size);
+			location = Fixtures.location(ZOMBIES);
+
+			for (int t = 0; t < size; ++t)
+				location.addEntity(EntityFactory.genMoney(0.05f + 0.9f * random.nextFloat(), 0.05f + 0.9f * random.nextFloat(), 10));
+
+			world = Fixtures.world(location);
+			world.getPhysics().process(world, location, DELTA);
+		}
+
+		@Override
+		public Object run()
+		{
+			world.getPhysics().process(world, location, DELTA);
+			return location;
+		}
+	}
+
+	public static class Targeting extends SystemBenchmark
+	{
+		private final TargetSystem system = new TargetSystem();
+
+		public Targeting()
+		{
+			super("TargetSystem.process");
+		}
+
+		@Override
+		public Object run()
+		{
+			system.process(world, location, DELTA);
+			return location;
+		}
+	}
+
+	public static class Ai extends SystemBenchmark
+	{
+		private final AISystem system = new AISystem();
+
+		public Ai()
+		{
+			super("AISystem.process");
+		}
+
+		@Override
+		public Object run()
+		{
+			system.process(world, location, DELTA);
+			return location;
+		}
+	}
+
+	public static class Death extends SystemBenchmark
+	{
+		private final DeathSystem system = new DeathSystem();
+
+		public Death()
+		{
+			super("DeathSystem.process");
+		}
+
+		@Override
+		public Object run()
+		{
+			system.process(world, location, DELTA);
+			return location;
+		}
+	}
+
+	public static class Bullets extends Benchmark
+	{
+		private Location location;
+		private World world;
+		private int size;
+
+		public Bullets()
+		{
+			super("Bullet lifecycle");
+		}
+
+		@Override
+		public void setUp(int size)
+		{
+			location = new Location("Range");
+			world = Fixtures.world(location);
+			this.size = size;
+		}
+
+		/**
+		 * Fires a volley of bullets, simulates them
+		 * for a tick, then removes them, as a busy
+		 * firefight would.
+		 */
+		@Override
+		public Object run()
+		{
+			for (int t = 0; t < size; ++t)
+				location.addEntity(location.getBulletPool().acquire(5, 0.005f, t * 0.02, 0.0, 0.0, 1.5));
+
+			world.getPhysics().process(world, location, DELTA);
+
+			for (Entity entity : location.getEntities()) entity.setRemoved();
+			location.clearRemovedEntities();
+			location.clearDirtyEntities();
+
+			world.getPhysics().process(world, location, DELTA);
+			return location;
+		}
+	}
+}
@@ -0,0 +1,7 @@
+#!/bin/bash
+if (( $# == 0 ))
+then
+  java -jar game.jar --bots localhost 1929 100
+else
+  java -jar game.jar --bots $*
+fi
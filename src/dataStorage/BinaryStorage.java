@@ -0,0 +1,223 @@
+package dataStorage;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+import ecs.world.*;
+import ecs.entity.*;
+
+import network.packet.codec.*;
+
+/**
+ * Handles the saving and loading of game states in a compact binary format
+ * Much faster to load than XML, which remains the human-editable format (see WorldConverter)
+ *
+ * Entities and components are written with the binary packet codec, so an entity
+ * referred to from several places (like an equipped weapon) is only written once.
+ * Files are read through a memory-mapped channel and written through a buffered one.
+ */
+public class BinaryStorage{
+
+	/** Magic number at the start of every binary world file ("WRLD") */
+	public static final int MAGIC = 0x57524C44;
+
+	/**
+	 * Version of the file layout, bump it whenever the layout changes
+	 * Version 3 records the component layout version instead of the packet codec version
+	 */
+	public static final int VERSION = 3;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Checks whether a file is a binary world file, by looking at its magic number
+	 *
+	 * @param file - the file to check
+	 * @return boolean
+	 * @throws IOException
+	 */
+	public static boolean isBinary(File file) throws IOException{
+		if(file.length() < 4) return false;
+		DataInputStream in = new DataInputStream(new FileInputStream(file));
+		try{
+			return in.readInt() == MAGIC;
+		}finally{
+			in.close();
+		}
+	}
+
+	/**
+	 * Saves the world and all its locations/saved players to a binary file
+	 *
+	 * @param file - the file to save to
+	 * @param world - the world to save
+	 * @throws IOException
+	 */
+	public static void saveFile(File file, World world) throws IOException{
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try{
+			WireWriter out = new WireWriter(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+			write(out, world);
+			out.flush();
+			channel.force(true);
+		}finally{
+			channel.close();
+		}
+	}
+
+	/**
+	 * Loads a binary file into a World
+	 *
+	 * @param file - the file to load from
+	 * @return World
+	 * @throws IOException if the file is not a (supported) binary world file
+	 */
+	public static World loadFile(File file) throws IOException{
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try{
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return read(new WireReader(buffer));
+		}finally{
+			channel.close();
+		}
+	}
+
+	/**
+	 * Saves a set of entities to a binary file (used to page out locations)
+	 *
+	 * @param file - the file to save to
+	 * @param entities - the entities to save
+	 * @throws IOException
+	 */
+	public static void saveEntities(File file, Collection<Entity> entities) throws IOException{
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try{
+			WireWriter out = new WireWriter(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+			writeHeader(out);
+			out.writeVarInt(entities.size());
+			for(Entity entity : entities) out.writeEntity(entity);
+			out.flush();
+		}finally{
+			channel.close();
+		}
+	}
+
+	/**
+	 * Loads the entities saved by saveEntities
+	 *
+	 * @param file - the file to load from
+	 * @return List of entities
+	 * @throws IOException
+	 */
+	public static List<Entity> loadEntities(File file) throws IOException{
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try{
+			WireReader in = new WireReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+			readHeader(in);
+			int count = in.readVarInt();
+			List<Entity> entities = new ArrayList<Entity>(count);
+			for(int t = 0; t < count; ++t) entities.add(in.readEntity());
+			return entities;
+		}finally{
+			channel.close();
+		}
+	}
+
+	private static void writeHeader(WireWriter out) throws IOException{
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(CodecRegistry.COMPONENT_VERSION); // not the packet codec version, so protocol changes keep files readable
+	}
+
+	private static int readHeader(WireReader in) throws IOException{
+		if(in.readInt() != MAGIC) throw new IOException("Not a binary world file");
+		int version = in.readInt();
+		if((version < 1) || (version > VERSION)) throw new IOException("Unsupported binary world version " + version);
+		int componentVersion = in.readInt();
+		if(version < 3) componentVersion = 1; // older files hold the packet codec version, whose components all match the first layout
+		if(componentVersion != CodecRegistry.COMPONENT_VERSION) throw new IOException("Unsupported component layout version " + componentVersion);
+		return version;
+	}
+
+	/**
+	 * Writes a world to a stream, in the same layout as saveFile (used to record ticks)
+	 *
+	 * @param out - the stream to write to
+	 * @param world - the world to write
+	 * @throws IOException
+	 */
+	public static void write(WireWriter out, World world) throws IOException{
+		writeHeader(out);
+		out.writeLong(world.getJournalSequence());
+		out.writeLong(world.getNextID());
+
+		out.writeVarInt(world.getLocations().size());
+		for(Location location : world.getLocations()){
+			out.writeLocation(location);
+
+			Set<SpawnPoint> points = location.getSpawnPoints();
+			out.writeVarInt(points == null ? 0 : points.size());
+			if(points != null){
+				for(SpawnPoint point : points){
+					out.writeFloat(point.getX());
+					out.writeFloat(point.getY());
+					out.writeBoolean(point.isOccupied());
+				}
+			}
+		}
+
+		out.writeVarInt(world.getSavedPlayers().size());
+		for(Map.Entry<String, PlayerRecord> record : world.getSavedPlayers().entrySet()){
+			out.writeUTF(record.getKey());
+			out.writeString(record.getValue().getLocation());
+			out.writeEntity(record.getValue().getPlayer());
+		}
+	}
+
+	/**
+	 * Reads a world written by write
+	 *
+	 * @param in - the stream to read from
+	 * @return World
+	 * @throws IOException if the stream does not hold a (supported) binary world
+	 */
+	public static World read(WireReader in) throws IOException{
+		int version = readHeader(in);
+		long journalSequence = in.readLong();
+		long nextID = (version >= 2 ? in.readLong() : 0); // version 1 files predate the ID counter
+
+		int locationCount = in.readVarInt();
+		Set<Location> locations = new HashSet<Location>();
+		for(int t = 0; t < locationCount; ++t){
+			Location location = in.readLocation();
+
+			int pointCount = in.readVarInt();
+			for(int p = 0; p < pointCount; ++p){
+				SpawnPoint point = new SpawnPoint(in.readFloat(), in.readFloat());
+				point.setOccupied(in.readBoolean());
+				location.addSpawn(point);
+			}
+
+			locations.add(location);
+		}
+
+		int playerCount = in.readVarInt();
+		Map<String, PlayerRecord> savedPlayers = new HashMap<String, PlayerRecord>();
+		for(int t = 0; t < playerCount; ++t){
+			String name = in.readUTF();
+			String location = in.readString();
+			Entity player = in.readEntity();
+			savedPlayers.put(name, new PlayerRecord(location, player));
+		}
+
+		World world = new World(locations, savedPlayers);
+		world.setJournalSequence(journalSequence);
+		world.setNextID(nextID);
+		return world;
+	}
+}
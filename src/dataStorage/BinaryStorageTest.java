@@ -0,0 +1,113 @@
+package dataStorage;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.Test;
+
+import ecs.entity.Entity;
+import ecs.helpers.EntityFactory;
+import ecs.helpers.LocationFactory;
+import ecs.world.*;
+import ecs.components.*;
+
+import network.packet.codec.CodecRegistry;
+
+/**
+ * JUnit testing for the binary saving/loading
+ */
+public class BinaryStorageTest {
+
+	public World saveAndLoad(World world) throws IOException{
+		File saveFile = new File("testSave" + DataStorage.BINARY_EXTENSION);
+		try{
+			DataStorage.saveFile(saveFile, world);
+			assertTrue("File should be binary", BinaryStorage.isBinary(saveFile));
+			return DataStorage.loadFile(saveFile);
+		}finally{
+			saveFile.delete();
+		}
+	}
+
+	@Test
+	public void testLocations() throws IOException{
+		World world = new World();
+		Location loc = LocationFactory.randomLocation();
+		loc.setName("testRoom");
+		loc.addSpawn(new SpawnPoint(0.25f, 0.75f));
+		world.add(loc);
+		world.setJournalSequence(7);
+		world.setNextID(12345);
+
+		World loaded = saveAndLoad(world);
+		assertEquals("Locations should match", world.getLocations().size(), loaded.getLocations().size());
+		assertEquals("Journal sequence should match", 7, loaded.getJournalSequence());
+		assertEquals("Next ID should match", 12345, loaded.getNextID());
+
+		for(Location location : world.getLocations()){
+			Location loadedLoc = null;
+			for(Location other : loaded.getLocations()) if(other.getName().equals(location.getName())) loadedLoc = other;
+			assertNotNull("Location should exist", loadedLoc);
+			assertEquals("Entities should match", location.getEntities().size(), loadedLoc.getEntities().size());
+			assertEquals("Spawn points should match", location.getSpawnPoints().size(), loadedLoc.getSpawnPoints().size());
+			for(Entity entity : location.getEntities()){
+				Entity loadedEntity = loadedLoc.getEntity(entity.getID());
+				assertNotNull("Entity should exist", loadedEntity);
+				assertEquals("Components should match", entity.getComponentMap().keySet(), loadedEntity.getComponentMap().keySet());
+			}
+		}
+	}
+
+	@Test
+	public void testSavedPlayer() throws IOException{
+		World world = new World();
+		Entity player = EntityFactory.genPlayerEntity("testPlayer");
+		player.getComponent(Inventory.class).addEntity(EntityFactory.genItemEntity("cheese"));
+		world.getSavedPlayers().put("testPlayer", new PlayerRecord("Starting location", player));
+
+		PlayerRecord record = saveAndLoad(world).getSavedPlayers().get("testPlayer");
+		assertNotNull("Player should be saved", record);
+		assertEquals("Location should match", "Starting location", record.getLocation());
+		assertEquals("ID should match", player.getID(), record.getPlayer().getID());
+		assertEquals("Health should match", player.getComponent(Health.class).getCurrent(), record.getPlayer().getComponent(Health.class).getCurrent());
+		assertEquals("Inventory should match", 1, record.getPlayer().getComponent(Inventory.class).getInventory().size());
+	}
+
+	/**
+	 * Overwrites the layout version and the version after it in a saved file
+	 */
+	private void setVersions(File file, int version, int next) throws IOException{
+		RandomAccessFile out = new RandomAccessFile(file, "rw");
+		try{
+			out.seek(4);
+			out.writeInt(version);
+			out.writeInt(next);
+		}finally{
+			out.close();
+		}
+	}
+
+	@Test
+	public void testVersions() throws IOException{
+		World world = new World();
+		world.getSavedPlayers().put("testPlayer", new PlayerRecord("Starting location", EntityFactory.genPlayerEntity("testPlayer")));
+		File saveFile = new File("testSave" + DataStorage.BINARY_EXTENSION);
+		try{
+			// Older files recorded the packet codec version, which may have moved on since
+			BinaryStorage.saveFile(saveFile, world);
+			setVersions(saveFile, 2, 3);
+			assertNotNull("Older file should load", BinaryStorage.loadFile(saveFile).getSavedPlayers().get("testPlayer"));
+
+			setVersions(saveFile, BinaryStorage.VERSION, CodecRegistry.COMPONENT_VERSION + 1);
+			try{
+				BinaryStorage.loadFile(saveFile);
+				fail("Unknown component layout should be refused");
+			}catch(IOException e){
+				// Expected
+			}
+		}finally{
+			saveFile.delete();
+		}
+	}
+}
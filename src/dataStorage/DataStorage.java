@@ -1,6 +1,7 @@
 package dataStorage;
 
 import java.io.*;
+import java.nio.file.*;
 
 import ecs.world.*;
 import ecs.entity.*;
@@ -19,27 +20,96 @@ import userinterface.states.UpgradesState;
  */
 
 public class DataStorage{
+	/** Files with this extension are saved in the binary format (see BinaryStorage) */
+	public static final String BINARY_EXTENSION = ".bin";
+
+	private static JAXBContext context;
+
+	/**
+	 * Returns the JAXB context, which is expensive to create and thread-safe, so it is only created once
+	 *
+	 * @return JAXBContext
+	 * @throws JAXBException
+	 */
+	private static synchronized JAXBContext getContext() throws JAXBException{
+		if(context == null) context = JAXBContext.newInstance(World.class, Component.class);
+		return context;
+	}
+
+	/**
+	 * Checks whether a world should be saved to a file in the binary format
+	 *
+	 * @param file - the file to check
+	 * @return boolean
+	 */
+	public static boolean isBinaryFile(File file){
+		return file.getName().endsWith(BINARY_EXTENSION);
+	}
+
 	/**
 	 * Used to save the world and all its entities/location.
-	 * Saves to an xml file
+	 * Saves to an xml file, or a binary file if the file name ends with BINARY_EXTENSION
 	 *
 	 * @param file - the file to save to
 	 * @param world - the world which the player was using
 	 */
 	public static void saveFile(File file, World world){
 		try{
-			JAXBContext context = JAXBContext.newInstance(World.class, Component.class);
-			Marshaller marshaller = context.createMarshaller();
+			if(isBinaryFile(file)){
+				BinaryStorage.saveFile(file, world);
+				return;
+			}
+			Marshaller marshaller = getContext().createMarshaller();
 			marshaller.setProperty(Marshaller.JAXB_SCHEMA_LOCATION, ""); // makes the XML infinitely more readable
 			marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
 			marshaller.marshal(world, file);
 		}catch(JAXBException e){
 			e.printStackTrace();
+		}catch(IOException e){
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Saves the world like saveFile, but never leaves a partially written file behind.
+	 * The world is written to a temporary file next to the target, flushed to disk,
+	 * and then renamed over the target in a single step.
+	 *
+	 * @param file - the file to save to
+	 * @param world - the world to save
+	 * @throws IOException if the world could not be written
+	 */
+	public static void saveFileAtomically(File file, World world) throws IOException{
+		File temp = new File(file.getPath() + ".tmp");
+		try{
+			if(isBinaryFile(file)) BinaryStorage.saveFile(temp, world);
+			else saveXML(temp, world);
+		}catch(IOException e){
+			temp.delete();
+			throw e;
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static void saveXML(File file, World world) throws IOException{
+		FileOutputStream out = new FileOutputStream(file);
+		try{
+			Marshaller marshaller = getContext().createMarshaller();
+			marshaller.setProperty(Marshaller.JAXB_SCHEMA_LOCATION, "");
+			marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+			marshaller.marshal(world, out);
+			out.flush();
+			out.getFD().sync();
+		}catch(JAXBException e){
+			throw new IOException("Failed to write world", e);
+		}finally{
+			out.close();
 		}
 	}
 
 	/**
-	 * Handles the loading of an xml file into a World
+	 * Handles the loading of an xml or binary file into a World
+	 * The format is detected from the file's contents, not its name
 	 *
 	 * @param file - the file to load from
 	 * @return World
@@ -48,8 +118,8 @@ public class DataStorage{
 	public static World loadFile(File file) throws IOException{
 		try {
 			if(!file.exists()) throw new IOException();
-			JAXBContext context = JAXBContext.newInstance(World.class, Component.class);
-			Unmarshaller unmarshal = context.createUnmarshaller();
+			if(BinaryStorage.isBinary(file)) return BinaryStorage.loadFile(file);
+			Unmarshaller unmarshal = getContext().createUnmarshaller();
 			World world = (World) unmarshal.unmarshal(file);
 			
 			return world;
@@ -265,4 +265,16 @@ public class DataStorageTest {
 		assertEquals(worth.getWorth(), loadedWorth.getWorth());
 	}
 
+
+	@Test
+	public void testComponents() throws IOException{
+		Entity testPlayer = save("player");
+
+		Entity loadedEntity = load(testPlayer.getID());
+
+		assertEquals(testPlayer.getComponentMap().keySet(), loadedEntity.getComponentMap().keySet());
+		for(Component component : loadedEntity.getComponents()){
+			assertSame(loadedEntity, component.getOwner());
+		}
+	}
 }
@@ -0,0 +1,36 @@
+package dataStorage;
+
+import java.io.*;
+
+import ecs.world.*;
+
+/**
+ * Offline tool which converts a world file between the XML and binary formats
+ * The input format is detected from the file's contents, the output format from
+ * the output file's name (binary if it ends with DataStorage.BINARY_EXTENSION)
+ *
+ * Usage: WorldConverter input output
+ */
+public class WorldConverter{
+
+	public static void main(String[] args) throws IOException{
+		if(args.length != 2){
+			System.out.println("Usage: WorldConverter <input> <output>");
+			System.out.println("Writes a binary world if the output ends with " + DataStorage.BINARY_EXTENSION + ", XML otherwise.");
+			return;
+		}
+
+		File input = new File(args[0]);
+		File output = new File(args[1]);
+
+		long start = System.nanoTime();
+		World world = DataStorage.loadFile(input);
+		if(world == null) throw new IOException("Failed to load " + input);
+		long loaded = System.nanoTime();
+		DataStorage.saveFileAtomically(output, world);
+		long saved = System.nanoTime();
+
+		System.out.printf("Loaded %s in %.1f ms, saved %s in %.1f ms.\n",
+				input, (loaded - start) / 1e6, output, (saved - loaded) / 1e6);
+	}
+}
@@ -5,6 +5,8 @@ import java.io.Serializable;
 import javax.xml.bind.annotation.XmlSeeAlso;
 import javax.xml.bind.annotation.XmlTransient;
 
+import ecs.entity.Entity;
+
 /** A component that makes up an entity. Components are serialized in order to be passed through the network.
  *
  * @author Lord Mumford
@@ -19,13 +21,16 @@ public abstract class Component implements Serializable {
 
 	private transient boolean changed = true, removed = false;
 
+	private transient Entity owner; // The entity this component belongs to, told whenever it changes
+
 	/** To indicate a component has changed and needs to be updated
-	 * it is marked as changed
+	 * it is marked as changed (and so is its entity, see Entity.markDirty)
 	 *
 	 */
 	public void markChanged()
 	{
 		changed = true;
+		if (owner != null) owner.markDirty();
 	}
 
 	/** Returns whether or not this component has been modified
@@ -51,6 +56,7 @@ public abstract class Component implements Serializable {
 	public void setRemoved()
 	{
 		removed = true;
+		if (owner != null) owner.markDirty();
 	}
 
 	/** Indicate if a component is marked for removal
@@ -61,4 +67,23 @@ public abstract class Component implements Serializable {
 	{
 		return removed;
 	}
+
+	/** Returns the entity this component belongs to, if any
+	 *
+	 * @return The owning entity
+	 */
+	@XmlTransient // Not part of the saved world (it would loop back through the entity)
+	public Entity getOwner()
+	{
+		return owner;
+	}
+
+	/** Sets the entity this component belongs to (done by the entity itself)
+	 *
+	 * @param owner The owning entity, or null
+	 */
+	public void setOwner(Entity owner)
+	{
+		this.owner = owner;
+	}
 }
@@ -2,6 +2,8 @@ package ecs.components;
 
 import javax.xml.bind.annotation.XmlElement;
 
+import ecs.helpers.TickContext;
+
 /** Basically a test to see if an event can fire. This component doesn't specify the event
  * or anything. Pretty much like a stop watch. Examples of firing events could be random movement after
  * a period of time, or how quickly you can shoot a gun
@@ -18,7 +20,7 @@ public class EventTrigger extends Component {
 
 	public EventTrigger(long interval){
 		this.interval = interval;
-		lastFired = System.currentTimeMillis();
+		lastFired = TickContext.currentTimeMillis();
 	}
 
 	public EventTrigger(){}
@@ -52,6 +52,14 @@ public class Inventory extends Component {
 		return current;
 	}
 
+	/** Sets the current capacity. Used when decoding an inventory
+	 *
+	 * @param current Current capacity
+	 */
+	public void setCurrent(int current){
+		this.current = current;
+	}
+
 	/** Attempts to add an entity to inventory. Returns false if unsuccessful, true if
 	 * successful. Depends on how full the inventory is, as well as an entity must have
 	 * a Size component
@@ -2,6 +2,8 @@ package ecs.components;
 
 import javax.xml.bind.annotation.XmlElement;
 
+import ecs.helpers.TickContext;
+
 /** Not all entities need a name. This also has some helper classes
  * for creating a badass randomized weapon names and NPC names
  *
@@ -19,6 +21,17 @@ public class Name extends Component {
 		this.name = name;
 	}
 
+	/** Creates a name with a suffix already applied, i.e. the name
+	 * already ends with " of suffix". Used when decoding names
+	 *
+	 * @param name Full name
+	 * @param suffix Suffix, or null
+	 */
+	public Name(String name, String suffix){
+		this.name = name;
+		this.suffix = suffix;
+	}
+
 	/** Default name constructor
 	 *
 	 */
@@ -53,8 +66,8 @@ public class Name extends Component {
 				"Angry", "Striking", "BoomBoom", "Dizzy" };
 		String[] second = new String[]{ "Machine", "Gun", "Device", "Burnanator", "Destroyer", "Boom", "Craziness",
 				"Avenger", "Peow Peow" };
-		int i = (int)(Math.random()*first.length);
-		int j = (int)(Math.random()*second.length);
+		int i = (int)(TickContext.random().nextDouble()*first.length);
+		int j = (int)(TickContext.random().nextDouble()*second.length);
 		return first[i] + " " + second[j];
 	}
 
@@ -67,7 +80,7 @@ public class Name extends Component {
 	 */
 	public static String genWeaponSuffix(){
 		String[] suffix = new String[]{ "Soothing", "Longevity", "Homing" }; // "Piercing", "Longevity",Homing",
-		int i = (int) (Math.random()*suffix.length);
+		int i = (int) (TickContext.random().nextDouble()*suffix.length);
 		return suffix[i];
 	}
 
@@ -88,7 +101,7 @@ public class Name extends Component {
 	public static String genNPCName() {
 		String[] name = new String[]{ "Guybrush", "Casius", "Hoodini", "Manal", "Dog", "Sir Pow", "Nick",
 				"Marc", "Nainesh", "Thomas", "Patrick" };
-		int i = (int) (Math.random()*name.length);
+		int i = (int) (TickContext.random().nextDouble()*name.length);
 		return name[i];
 	}
 }
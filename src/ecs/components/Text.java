@@ -2,6 +2,8 @@ package ecs.components;
 
 import javax.xml.bind.annotation.XmlElement;
 
+import ecs.helpers.TickContext;
+
 /** Text can be anything, from a description of an item to NPC dialog. The behavior is determined
  * by the systems that process the components and entities
  *
@@ -54,7 +56,7 @@ public class Text extends Component {
 				"I think zombies are kinda cute",
 				"Please don't shoot me",
 				"           CHEAT ENABLED" };
-		int i = (int) (Math.random()*name.length);
+		int i = (int) (TickContext.random().nextDouble()*name.length);
 		return name[i];
 	}
 }
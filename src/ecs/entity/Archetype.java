@@ -0,0 +1,152 @@
+package ecs.entity;
+
+import java.util.*;
+
+import ecs.components.*;
+
+/**
+ * An archetype holds every entity of a set
+ * which  has  exactly  a given  set  of
+ * component classes (its signature). Its
+ * entities and their components are stored
+ * in dense arrays, one column per component
+ * class, so that a system  can walk them
+ * without looking anything up.
+ * <p>
+ * When an entity leaves an archetype, the
+ * last entity takes its row. Loops which may
+ * change the components of the entity being
+ * processed (moving it to another archetype)
+ * should thus walk the rows backwards, from
+ * {@code size() - 1} down to zero.
+ *
+ * @author mumforpatr
+ */
+public final class Archetype
+{
+	private static final int INITIAL_CAPACITY = 8;
+
+	private final ArchetypeIndex index;
+	private final Set<Class<? extends Component>> signature;
+	private final long mask;
+	private final Map<Class<? extends Component>, Integer> columnOf;
+
+	private Entity[] entities = new Entity[INITIAL_CAPACITY];
+	private final Component[][] columns;
+	private int size = 0;
+
+	Archetype(ArchetypeIndex index, long mask, Set<Class<? extends Component>> signature)
+	{
+		this.mask = mask;
+		this.signature = Collections.unmodifiableSet(new HashSet<Class<? extends Component>>(signature));
+		this.columnOf = new HashMap<Class<? extends Component>, Integer>();
+		this.columns = new Component[signature.size()][INITIAL_CAPACITY];
+		this.index = index;
+
+		for (Class<? extends Component> type : signature) columnOf.put(type, columnOf.size());
+	}
+
+	/**
+	 * Returns the component classes of every
+	 * entity in this archetype.
+	 */
+	public Set<Class<? extends Component>> getSignature()
+	{
+		return signature;
+	}
+
+	/**
+	 * Returns the mask of the signature (see
+	 * {@code ComponentType}).
+	 */
+	public long getMask()
+	{
+		return mask;
+	}
+
+	/**
+	 * Returns the number of entities in this
+	 * archetype.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns the entity in a given row.
+	 */
+	public Entity getEntity(int row)
+	{
+		return entities[row];
+	}
+
+	/**
+	 * Returns the column of a component class,
+	 * in which the component of the entity in
+	 * a given row is at that row. Only the first
+	 * {@code size()} components are valid, and
+	 * the column is replaced when it grows, so
+	 * it should not be kept across changes.
+	 *
+	 * @param type The component class, which
+	 * must be in the signature.
+	 */
+	public Component[] getColumn(Class<? extends Component> type)
+	{
+		Integer column = columnOf.get(type);
+		if (column == null) throw new IllegalArgumentException(type.getSimpleName() + " is not part of this archetype.");
+		return columns[column];
+	}
+
+	ArchetypeIndex getIndex()
+	{
+		return index;
+	}
+
+	void add(Entity entity)
+	{
+		if (size == entities.length) grow();
+
+		for (Map.Entry<Class<? extends Component>, Integer> column : columnOf.entrySet())
+			columns[column.getValue()][size] = entity.getComponent(column.getKey());
+
+		entities[size] = entity;
+		entity.setArchetype(this, size++);
+	}
+
+	void remove(Entity entity)
+	{
+		int row = entity.getRow();
+		int last = --size;
+
+		entities[row] = entities[last];
+		entities[row].setArchetype(this, row);
+		entities[last] = null;
+
+		for (Component[] column : columns)
+		{
+			column[row] = column[last];
+			column[last] = null;
+		}
+
+		entity.setArchetype(null, 0);
+	}
+
+	/**
+	 * Replaces the component of an entity by
+	 * another of the same class.
+	 */
+	void replace(Entity entity, Component component)
+	{
+		columns[columnOf.get(component.getClass())][entity.getRow()] = component;
+	}
+
+	private void grow()
+	{
+		int capacity = entities.length * 2;
+
+		entities = Arrays.copyOf(entities, capacity);
+		for (int t = 0; t < columns.length; ++t) columns[t] = Arrays.copyOf(columns[t], capacity);
+	}
+}
@@ -0,0 +1,238 @@
+package ecs.entity;
+
+import java.util.*;
+
+/**
+ * This class sorts the entities of a set by
+ * archetype (see {@code Archetype}) and keeps
+ * them sorted as their components change, so
+ * that the entities matching a query can be
+ * walked without filtering every entity.
+ * <p>
+ * An  entity is  only  indexed by one set at
+ * a time: adding it to another index removes
+ * it from the previous one. Like the sets it
+ * indexes, this class is not thread-safe.
+ * <p>
+ * It also keeps track of which entities have
+ * changed  (see {@code  Entity.markDirty}),
+ * so that a world commit only needs to visit
+ * those, and tells its listeners (see {@code
+ * watch}) as entities enter or leave their
+ * queries.
+ *
+ * @author mumforpatr
+ */
+public final class ArchetypeIndex
+{
+	/**
+	 * The archetypes, in the order they were
+	 * created, by signature mask.
+	 */
+	private final Map<Long, Archetype> archetypes = new LinkedHashMap<Long, Archetype>();
+
+	/**
+	 * The archetypes matching every query made so
+	 * far, kept up to date as archetypes are
+	 * created.
+	 */
+	private final Map<Query, List<Archetype>> queries = new IdentityHashMap<Query, List<Archetype>>();
+
+	/**
+	 * The indexed entities which have changed,
+	 * in the order they changed.
+	 */
+	private final Set<Entity> dirty = new LinkedHashSet<Entity>();
+
+	/**
+	 * The listeners, with the query each of them
+	 * watches, in the order they were added.
+	 */
+	private final Map<QueryListener, Query> listeners = new LinkedHashMap<QueryListener, Query>();
+
+	/**
+	 * Returns  every archetype  whose entities
+	 * match a query. The list is updated in
+	 * place  as new archetypes are created, and
+	 * should not be modified.
+	 *
+	 * @param query The query.
+	 */
+	public List<Archetype> query(Query query)
+	{
+		List<Archetype> matching = queries.get(query);
+		if (matching != null) return matching;
+
+		matching = new ArrayList<Archetype>();
+
+		for (Archetype archetype : archetypes.values())
+			if (query.matches(archetype)) matching.add(archetype);
+
+		queries.put(query, matching);
+		return matching;
+	}
+
+	/**
+	 * Starts telling a listener about the entities
+	 * entering or leaving a query. The entities
+	 * matching the query so far are not reported
+	 * (see {@code query} to walk them).
+	 *
+	 * @param query The query.
+	 * @param listener The listener.
+	 */
+	public void watch(Query query, QueryListener listener)
+	{
+		listeners.put(listener, query);
+	}
+
+	/**
+	 * Stops telling a listener about changes.
+	 */
+	public void unwatch(QueryListener listener)
+	{
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Indexes an entity.
+	 */
+	public void add(Entity entity)
+	{
+		Archetype current = entity.getArchetype();
+		if (current != null) current.getIndex().remove(entity);
+
+		Archetype archetype = archetypeOf(entity);
+		archetype.add(entity);
+		if (entity.isDirty()) dirty.add(entity);
+
+		notify(entity, null, archetype);
+	}
+
+	/**
+	 * Stops indexing an entity, if this index
+	 * holds it.
+	 */
+	public void remove(Entity entity)
+	{
+		Archetype current = entity.getArchetype();
+		if ((current == null) || (current.getIndex() != this)) return;
+
+		notify(entity, current, null);
+		current.remove(entity);
+		dirty.remove(entity);
+	}
+
+	/**
+	 * Returns the indexed entities which have
+	 * changed since they were last cleared (see
+	 * {@code clearDirty}).
+	 */
+	public Set<Entity> getDirty()
+	{
+		return Collections.unmodifiableSet(dirty);
+	}
+
+	/**
+	 * Returns the indexed entities which have
+	 * changed, and marks them as unchanged. This
+	 * does not allocate when nothing changed.
+	 */
+	public List<Entity> clearDirty()
+	{
+		if (dirty.isEmpty()) return Collections.emptyList();
+
+		List<Entity> entities = new ArrayList<Entity>(dirty);
+		for (Entity entity : entities) entity.clearDirty();
+		dirty.clear();
+
+		return entities;
+	}
+
+	/**
+	 * Forgets every indexed entity (which leave
+	 * the queries of the listeners).
+	 */
+	public void clear()
+	{
+		for (Archetype archetype : archetypes.values())
+			while (archetype.size() > 0)
+			{
+				Entity entity = archetype.getEntity(archetype.size() - 1);
+				notify(entity, archetype, null);
+				archetype.remove(entity);
+			}
+
+		archetypes.clear();
+		queries.clear();
+		dirty.clear();
+	}
+
+	/**
+	 * Moves an entity whose component classes
+	 * have changed to its new archetype.
+	 */
+	void move(Entity entity)
+	{
+		Archetype previous = entity.getArchetype();
+		Archetype archetype = archetypeOf(entity);
+
+		/* Leaving first, so that listeners see the entity as it was. */
+		notifyLeft(entity, previous, archetype);
+		previous.remove(entity);
+		archetype.add(entity);
+		notifyEntered(entity, previous, archetype);
+	}
+
+	/**
+	 * Notes that an indexed entity has changed.
+	 */
+	void markDirty(Entity entity)
+	{
+		dirty.add(entity);
+	}
+
+	/**
+	 * Tells the listeners about an entity moving
+	 * from one archetype to another ({@code null}
+	 * meaning it is not indexed).
+	 */
+	private void notify(Entity entity, Archetype from, Archetype to)
+	{
+		notifyLeft(entity, from, to);
+		notifyEntered(entity, from, to);
+	}
+
+	private void notifyLeft(Entity entity, Archetype from, Archetype to)
+	{
+		if ((listeners.isEmpty()) || (from == null)) return;
+
+		for (Map.Entry<QueryListener, Query> listener : listeners.entrySet())
+			if ((listener.getValue().matches(from)) && ((to == null) || (!listener.getValue().matches(to))))
+				listener.getKey().left(entity);
+	}
+
+	private void notifyEntered(Entity entity, Archetype from, Archetype to)
+	{
+		if ((listeners.isEmpty()) || (to == null)) return;
+
+		for (Map.Entry<QueryListener, Query> listener : listeners.entrySet())
+			if ((listener.getValue().matches(to)) && ((from == null) || (!listener.getValue().matches(from))))
+				listener.getKey().entered(entity);
+	}
+
+	private Archetype archetypeOf(Entity entity)
+	{
+		long mask = entity.getMask();
+		Archetype archetype = archetypes.get(mask);
+		if (archetype != null) return archetype;
+
+		archetype = new Archetype(this, mask, entity.getComponentMap().keySet());
+		archetypes.put(mask, archetype);
+
+		for (Map.Entry<Query, List<Archetype>> query : queries.entrySet())
+			if (query.getKey().matches(archetype)) query.getValue().add(archetype);
+
+		return archetype;
+	}
+}
@@ -0,0 +1,96 @@
+package ecs.entity;
+
+import java.util.concurrent.atomic.*;
+
+import ecs.components.*;
+
+/**
+ * This class numbers component classes, so
+ * that the component classes of an entity
+ * (or wanted by a query) can be kept as a
+ * single {@code long} bit mask, bit {@code n}
+ * being set for the class numbered {@code n}.
+ * Checking  for a  set of components is then
+ * a single AND.
+ * <p>
+ * Classes are numbered  the first time they
+ * are  used,  so  the  numbers are only
+ * meaningful within  one process and must
+ * not be saved or sent over the network (the
+ * packet codec has its own, fixed, tags).
+ *
+ * @author mumforpatr
+ */
+public final class ComponentType
+{
+	/**
+	 * The most  component classes which can be
+	 * numbered, one per bit of a mask.
+	 */
+	public static final int MAX_TYPES = Long.SIZE;
+
+	private static final AtomicInteger count = new AtomicInteger();
+
+	private static final ClassValue<Integer> ids = new ClassValue<Integer>()
+	{
+		@Override
+		protected Integer computeValue(Class<?> type)
+		{
+			int id = count.getAndIncrement();
+
+			if (id >= MAX_TYPES)
+				throw new IllegalStateException("Too many component classes (" + type.getName() + " would be the " + (id + 1) + "th).");
+
+			return id;
+		}
+	};
+
+	private ComponentType()
+	{
+		return;
+	}
+
+	/**
+	 * Returns the number of a component class,
+	 * between zero and {@code MAX_TYPES - 1}.
+	 */
+	public static int idOf(Class<? extends Component> type)
+	{
+		return ids.get(type);
+	}
+
+	/**
+	 * Returns the mask of a component class.
+	 */
+	public static long maskOf(Class<? extends Component> type)
+	{
+		return 1L << ids.get(type);
+	}
+
+	/**
+	 * Returns  the  mask of  a  set of component
+	 * classes.
+	 */
+	@SafeVarargs
+	public static long maskOf(Class<? extends Component>... types)
+	{
+		long mask = 0;
+
+		for (Class<? extends Component> type : types) mask |= maskOf(type);
+
+		return mask;
+	}
+
+	/**
+	 * Returns  the  mask of  a  set of component
+	 * classes.
+	 */
+	public static long maskOf(Iterable<Class<? extends Component>> types)
+	{
+		long mask = 0;
+
+		for (Class<? extends Component> type : types) mask |= maskOf(type);
+
+		return mask;
+	}
+}
@@ -1,5 +1,7 @@
 package ecs.entity;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.*;
 
@@ -25,10 +27,20 @@ public class Entity implements Serializable {
 
 	private Map<Class<? extends Component>, Component> components = new HashMap<Class<? extends Component>, Component>(); // An entity is a sum of its parts
 
-	private final long ID;
+	private long ID; // Only changes when a removed entity is reused (see renewID)
 
 	private transient boolean toRemove = false; // If it's marked for removal, there should be some system to clear it up after processing
 
+	// The archetype (and row in it) this entity is stored in by its location, if any (see ArchetypeIndex)
+	private transient Archetype archetype;
+	private transient int row;
+
+	// One bit per component class this entity has, so that hasAll is a single AND (see ComponentType)
+	private transient long mask;
+
+	// Whether a component changed or was removed, or the entity was removed, since the last commit
+	private transient boolean dirty = false;
+
 	//@XmlElement
 	public long getID(){
 		return ID;
@@ -55,13 +67,31 @@ public class Entity implements Serializable {
 		this.ID = ID;
 	}
 
+	/**
+	 * Gives this entity a new ID, so that it can be reused as a new entity once it has been
+	 * removed from its location (see BulletPool).
+	 */
+	public void renewID()
+	{
+		if (archetype != null) throw new IllegalStateException("Cannot renew the ID of an entity still in a location.");
+		ID = IDProvider.generateID();
+	}
+
 	public <T extends Component> T getComponent(Class<T> component)
 	{
 		return component.cast(components.get(component));
 	}
 
 	public void addComponent(Component comp) {
-		components.put(comp.getClass(), comp);
+		Component previous = components.put(comp.getClass(), comp);
+		if (previous != null) disown(previous);
+		else mask |= ComponentType.maskOf(comp.getClass());
+		comp.setOwner(this);
+		if (comp.hasChanged() || comp.isRemoved()) markDirty();
+
+		if (archetype == null) return;
+		if (previous == null) archetype.getIndex().move(this); // New component class, so a new archetype
+		else archetype.replace(this, comp);
 	}
 
 	//@XmlElement(name="component")
@@ -76,6 +106,45 @@ public class Entity implements Serializable {
 
 	public void addComponentMap(Map<Class<? extends Component>, Component> comp){
 		components = comp;
+		mask = ComponentType.maskOf(components.keySet());
+		for (Component component : components.values()) component.setOwner(this);
+		markDirty();
+		if (archetype != null) archetype.getIndex().move(this);
+	}
+
+	/**
+	 * Marks this entity as changed, so that it is looked at by the next world
+	 * commit (which only visits the changed entities of each location).
+	 */
+	public void markDirty(){
+		if (dirty) return;
+		dirty = true;
+		if (archetype != null) archetype.getIndex().markDirty(this);
+	}
+
+	public boolean isDirty(){
+		return dirty;
+	}
+
+	void clearDirty(){
+		dirty = false;
+	}
+
+	long getMask(){
+		return mask;
+	}
+
+	Archetype getArchetype(){
+		return archetype;
+	}
+
+	int getRow(){
+		return row;
+	}
+
+	void setArchetype(Archetype archetype, int row){
+		this.archetype = archetype;
+		this.row = row;
 	}
 
 	public void clearRemoved()
@@ -89,11 +158,12 @@ public class Entity implements Serializable {
 	 */
 	public Set<Component> clearModifiedComponents()
 	{
-		Set<Component> modified = new HashSet<Component>();
+		Set<Component> modified = Collections.emptySet();
 
 		for (Component component : components.values())
 			if (component.hasChanged())
 			{
+				if (modified.isEmpty()) modified = new HashSet<Component>();
 				modified.add(component);
 				component.clearChanges();
 			}
@@ -107,7 +177,7 @@ public class Entity implements Serializable {
 	 */
 	public Set<Class<? extends Component>> clearRemovedComponents()
 	{
-		Set<Class<? extends Component>> removed = new HashSet<Class<? extends Component>>();
+		Set<Class<? extends Component>> removed = Collections.emptySet();
 
 		Iterator<Component> iter = components.values().iterator();
 
@@ -116,11 +186,15 @@ public class Entity implements Serializable {
 			Component component = iter.next();
 			if (component.isRemoved())
 			{
+				if (removed.isEmpty()) removed = new HashSet<Class<? extends Component>>();
 				removed.add(component.getClass());
+				mask &= ~ComponentType.maskOf(component.getClass());
+				disown(component);
 				iter.remove();
 			}
 		}
 
+		if ((archetype != null) && (!removed.isEmpty())) archetype.getIndex().move(this);
 		return removed;
 	}
 
@@ -132,6 +206,7 @@ public class Entity implements Serializable {
 	public void setRemoved()
 	{
 		toRemove = true;
+		markDirty();
 	}
 
 	@Override
@@ -159,7 +234,21 @@ public class Entity implements Serializable {
 	 * and it will be deleted on the next tick.
 	 */
 	public void removeComponent(Class<? extends Component> toRemove) {
-		components.remove(toRemove);
+		Component removed = components.remove(toRemove);
+		if (removed == null) return;
+		mask &= ~ComponentType.maskOf(toRemove);
+		disown(removed);
+		if (archetype != null) archetype.getIndex().move(this);
+	}
+
+	private void disown(Component component){
+		if (component.getOwner() == this) component.setOwner(null);
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		mask = ComponentType.maskOf(components.keySet());
+		for (Component component : components.values()) component.setOwner(this);
 	}
 
 	/**
@@ -174,10 +263,40 @@ public class Entity implements Serializable {
 	 */
 	public boolean hasAll(Class<? extends Component>... classes)
 	{
-		for (Class<? extends Component> componentClass : classes)
-			if (!components.containsKey(componentClass)) return false;
+		long wanted = ComponentType.maskOf(classes);
+		return (mask & wanted) == wanted;
+	}
 
-		return true;
+	/**
+	 * Checks an entity for  the existence of a
+	 * component  (this  avoids  creating  an
+	 * array for the common, single class case).
+	 *
+	 * @param type Component to check for.
+	 *
+	 * @return Returns {@code true} if and only
+	 * if this entity has  an instance of {@code
+	 * type}.
+	 */
+	public boolean hasAll(Class<? extends Component> type)
+	{
+		return (mask & ComponentType.maskOf(type)) != 0;
+	}
+
+	/**
+	 * Checks whether an entity matches a query,
+	 * which is cheaper than {@code hasAll} as
+	 * the query's mask is computed only once.
+	 *
+	 * @param query The query.
+	 *
+	 * @return Returns {@code true} if and only
+	 * if this entity has  an instance of every
+	 * component the query asks for.
+	 */
+	public boolean matches(Query query)
+	{
+		return (mask & query.getMask()) == query.getMask();
 	}
 
 	/**
@@ -192,10 +311,7 @@ public class Entity implements Serializable {
 	 */
 	public boolean hasOne(Class<? extends Component>... classes)
 	{
-		for (Class<? extends Component> componentClass : classes)
-			if (components.containsKey(componentClass)) return true;
-
-		return false;
+		return (mask & ComponentType.maskOf(classes)) != 0;
 	}
 
 	public Type.EntityType getType()
@@ -1,23 +1,134 @@
 package ecs.entity;
 
-import java.security.*;
+import java.util.concurrent.atomic.*;
+
+import ecs.helpers.*;
 
 /**
  * This simple static class  is responsible
- * for  generating  unbiased and  uniformly
- * distributed  64-bit ID  numbers for  new
- * entities.  It is  never serialized,  and
- * only  maintains  the state  of  whatever
- * PRNG is used to generate random ID's.
- * 
+ * for handing out unique 64-bit ID numbers
+ * for new entities. ID's are  allocated in
+ * increasing order from a single counter,
+ * and each thread reserves a whole block of
+ * them at a time, so that allocating an ID
+ * is usually just an increment.
+ * <p>
+ * During  a server tick, ID's are drawn from
+ * the block the tick gave to its context
+ * instead (see {@code TickContext}), so that
+ * recorded ticks create the same entities
+ * when they are replayed.
+ * <p>
+ * The counter is saved with the world (see
+ * {@code World.getNextID}), and moved past
+ * the saved value when the world is loaded,
+ * so that ID's are never reused across
+ * restarts.
+ *
  * @author Thomas Beneteau (300250968)
  */
 public final class IDProvider
 {
-	private final static transient SecureRandom prng = new SecureRandom();
+	/**
+	 * The number of ID's each thread reserves
+	 * at a time.
+	 */
+	public static final int BLOCK_SIZE = 1 << 12;
+
+	/**
+	 * The first ID not yet reserved (ID's start
+	 * at one, zero meaning no ID).
+	 */
+	private static final AtomicLong reserved = new AtomicLong(1);
 
-	public final static synchronized Long generateID()
+	/**
+	 * Bumped whenever the counter is moved, so
+	 * that blocks reserved before are dropped.
+	 */
+	private static final AtomicInteger epoch = new AtomicInteger();
+
+	private static final class Block
 	{
-		return prng.nextLong();
+		private long next, end;
+		private int epoch;
+	}
+
+	private static final ThreadLocal<Block> blocks = new ThreadLocal<Block>()
+	{
+		@Override
+		protected Block initialValue()
+		{
+			return new Block();
+		}
+	};
+
+	private IDProvider()
+	{
+		return;
+	}
+
+	public static long generateID()
+	{
+		if (TickContext.isActive())
+		{
+			long id = TickContext.nextID();
+			if (id != 0) return id;
+		}
+
+		Block block = blocks.get();
+		int current = epoch.get();
+
+		if ((block.next == block.end) || (block.epoch != current))
+		{
+			block.next = reserve(BLOCK_SIZE);
+			block.end = block.next + BLOCK_SIZE;
+			block.epoch = current;
+		}
+
+		return block.next++;
+	}
+
+	/**
+	 * Reserves a range of ID's, for instance to
+	 * be handed out by a tick.
+	 *
+	 * @param count The number of ID's.
+	 *
+	 * @return Returns the first reserved ID.
+	 */
+	public static long reserve(long count)
+	{
+		return reserved.getAndAdd(count);
+	}
+
+	/**
+	 * Returns the first ID not yet reserved, to
+	 * be saved with the world. Every ID handed
+	 * out so far is below it.
+	 */
+	public static long getReserved()
+	{
+		return reserved.get();
+	}
+
+	/**
+	 * Makes sure no ID below a given one will be
+	 * handed out from now on, for instance when
+	 * loading a saved world.
+	 *
+	 * @param id The first ID which may be used.
+	 */
+	public static void advance(long id)
+	{
+		long current;
+
+		do
+		{
+			current = reserved.get();
+			if (current >= id) return;
+		}
+		while (!reserved.compareAndSet(current, id));
+
+		epoch.incrementAndGet();
 	}
 }
@@ -0,0 +1,65 @@
+package ecs.entity;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.Test;
+
+import ecs.helpers.*;
+
+/**
+ * JUnit tests for entity ID allocation.
+ */
+public class IDProviderTest {
+
+	@Test
+	public void testUniqueAcrossThreads() throws Exception{
+		final int threads = 4, count = 3 * IDProvider.BLOCK_SIZE;
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<long[]>> results = new ArrayList<Future<long[]>>();
+
+		for (int t = 0; t < threads; ++t){
+			results.add(pool.submit(new Callable<long[]>(){
+				@Override
+				public long[] call(){
+					long[] ids = new long[count];
+					for (int i = 0; i < count; ++i) ids[i] = IDProvider.generateID();
+					return ids;
+				}
+			}));
+		}
+
+		Set<Long> seen = new HashSet<Long>();
+		for (Future<long[]> result : results)
+			for (long id : result.get()) assertTrue("IDs should be unique", seen.add(id));
+
+		pool.shutdown();
+	}
+
+	@Test
+	public void testAdvance() throws Exception{
+		IDProvider.generateID(); // reserves a block for this thread
+		long next = IDProvider.getReserved() + 1000;
+		IDProvider.advance(next);
+		assertTrue("IDs below the saved counter should not be reused", IDProvider.generateID() >= next);
+
+		IDProvider.advance(1);
+		assertTrue("The counter should never go back", IDProvider.getReserved() > next);
+	}
+
+	@Test
+	public void testTickIDs() throws Exception{
+		long ids = IDProvider.reserve(TickContext.IDS);
+		TickContext.begin(42, 0, ids);
+		try{
+			assertEquals("Ticks should use their own IDs", ids, IDProvider.generateID());
+			assertEquals("Ticks should use their own IDs", ids + 1, IDProvider.generateID());
+		}finally{
+			TickContext.end();
+		}
+		long id = IDProvider.generateID();
+		assertTrue("Outside ticks, IDs should not come from the tick", (id < ids) || (id >= ids + TickContext.IDS));
+	}
+}
@@ -0,0 +1,65 @@
+package ecs.entity;
+
+import java.util.*;
+
+import ecs.components.*;
+
+/**
+ * A query describes the entities a system is
+ * interested in, by the component classes
+ * they must all have. It is usually declared
+ * once  per system, and matched against the
+ * archetypes of a location (see {@code
+ * Location.query}), which caches the result.
+ *
+ * @author mumforpatr
+ */
+public final class Query
+{
+	private final Set<Class<? extends Component>> types;
+	private final long mask;
+
+	/**
+	 * Creates a query.
+	 *
+	 * @param types The component classes the
+	 * matching entities must all have.
+	 */
+	@SafeVarargs
+	public Query(Class<? extends Component>... types)
+	{
+		Set<Class<? extends Component>> set = new HashSet<Class<? extends Component>>();
+		for (Class<? extends Component> type : types) set.add(type);
+
+		this.types = Collections.unmodifiableSet(set);
+		this.mask = ComponentType.maskOf(set);
+	}
+
+	/**
+	 * Returns whether every entity of an archetype
+	 * matches this query.
+	 */
+	public boolean matches(Archetype archetype)
+	{
+		return (archetype.getMask() & mask) == mask;
+	}
+
+	/**
+	 * Returns the component classes the matching
+	 * entities must all have.
+	 */
+	public Set<Class<? extends Component>> getTypes()
+	{
+		return types;
+	}
+
+	/**
+	 * Returns the mask of the component classes
+	 * the matching entities must all have (see
+	 * {@code ComponentType}).
+	 */
+	public long getMask()
+	{
+		return mask;
+	}
+}
@@ -0,0 +1,38 @@
+package ecs.entity;
+
+/**
+ * This interface is notified as the entities
+ * of a set start or stop matching a query
+ * (see {@code ArchetypeIndex.watch}), that is
+ * when they are added to or removed from the
+ * set, or gain or lose components such that
+ * they now match the query or no longer do.
+ * <p>
+ * Listeners are called as soon as the set
+ * changes, possibly in the middle of another
+ * system, so they  should only take note of
+ * the change and act on it later. Replacing
+ * a component by another of the same class
+ * is not reported.
+ *
+ * @author mumforpatr
+ */
+public interface QueryListener
+{
+	/**
+	 * Called when an entity starts matching the
+	 * query.
+	 *
+	 * @param entity The entity.
+	 */
+	public void entered(Entity entity);
+
+	/**
+	 * Called when an entity stops matching the
+	 * query, before it is removed (so it still
+	 * has the ID it had in the set).
+	 *
+	 * @param entity The entity.
+	 */
+	public void left(Entity entity);
+}
@@ -0,0 +1,122 @@
+package ecs.helpers;
+
+import java.util.*;
+
+import ecs.entity.*;
+import ecs.components.*;
+import ecs.components.Type.*;
+
+/**
+ * This class recycles the bullets of a single
+ * location. Bullets  only live for a second
+ * or so, and firefights create many of them,
+ * so instead of  building a new entity every
+ * shot, removed bullets are kept here with
+ * their components and handed out again with
+ * a new ID and fresh values.
+ * <p>
+ * Bullets are released once they have been
+ * removed from the location (and the  world
+ * committed), so nothing refers to them any
+ * longer. Like the location, this class is
+ * not thread-safe.
+ *
+ * @author Lord Mumford
+ */
+public final class BulletPool
+{
+	/**
+	 * The most bullets kept for reuse, the rest
+	 * are left to the garbage collector.
+	 */
+	public static final int MAX_SIZE = 256;
+
+	/**
+	 * The health every bullet starts with.
+	 */
+	private static final int HEALTH = 10;
+
+	/**
+	 * The components of every bullet, which are
+	 * kept with it. Any other component (given
+	 * by the weapon) is dropped on release.
+	 */
+	private static final Query BULLET = new Query(Type.class, Position.class, Volume.class, DamageFactor.class,
+												  Velocity.class, Health.class, ModelData.class);
+
+	private final Deque<Entity> free = new ArrayDeque<Entity>();
+
+	/**
+	 * Returns a new bullet, reusing a released one
+	 * if possible. Every  component is marked as
+	 * changed, as for a new entity.
+	 *
+	 * @param damage The damage the bullet deals.
+	 * @param radius The radius of the bullet.
+	 * @param x The initial x-coordinate.
+	 * @param y The initial y-coordinate.
+	 * @param vx The initial x-velocity.
+	 * @param vy The initial y-velocity.
+	 */
+	public Entity acquire(int damage, float radius, double x, double y, double vx, double vy)
+	{
+		Entity bullet = free.poll();
+
+		if (bullet == null)
+			return EntityFactory.genBulletEntity(new DamageFactor(damage), radius, new Position(x, y), new Velocity(vx, vy));
+
+		bullet.renewID();
+
+		Position position = bullet.getComponent(Position.class);
+		position.setX(x);
+		position.setY(y);
+
+		Velocity velocity = bullet.getComponent(Velocity.class);
+		velocity.setX(vx);
+		velocity.setY(vy);
+
+		Volume volume = bullet.getComponent(Volume.class);
+		volume.setWidth(radius * 2);
+		volume.setHeight(radius * 2);
+
+		bullet.getComponent(DamageFactor.class).setDamageFactor(damage);
+		bullet.getComponent(Health.class).setMax(HEALTH);
+		bullet.getComponent(Health.class).setCurrent(HEALTH);
+
+		for (Component component : bullet.getComponentMap().values()) component.markChanged();
+
+		return bullet;
+	}
+
+	/**
+	 * Releases a bullet which has been removed
+	 * from its location. Entities which are not
+	 * plain bullets are ignored.
+	 */
+	public void release(Entity bullet)
+	{
+		if ((bullet.getType() != EntityType.BULLET) || (!bullet.matches(BULLET))) return;
+		if (free.size() == MAX_SIZE) return;
+
+		for (Component component : bullet.getComponentMap().values())
+			if (component.isRemoved()) return; /* Should not happen to a bullet, not worth undoing. */
+
+		/* Drop whatever the weapon added (and so any reference to other entities). */
+		if (bullet.getComponentMap().size() > BULLET.getTypes().size())
+		{
+			for (Class<? extends Component> type : new ArrayList<Class<? extends Component>>(bullet.getComponentMap().keySet()))
+				if (!BULLET.getTypes().contains(type)) bullet.removeComponent(type);
+		}
+
+		free.push(bullet);
+	}
+
+	/**
+	 * Returns the number of bullets ready to be
+	 * reused.
+	 */
+	public int size()
+	{
+		return free.size();
+	}
+}
@@ -0,0 +1,52 @@
+package ecs.helpers;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import ecs.world.*;
+import ecs.entity.*;
+import ecs.components.*;
+
+/**
+ * JUnit tests for the recycling of bullets.
+ */
+public class BulletPoolTest {
+
+	@Test
+	public void testRecycle() throws Exception{
+		Location location = new Location("Range");
+		BulletPool pool = location.getBulletPool();
+
+		Entity bullet = pool.acquire(5, 0.005f, 1, 2, 3, 4);
+		bullet.addComponent(new Name("Gun", "Homing"));
+		location.addEntity(bullet);
+		long id = bullet.getID();
+
+		bullet.getComponent(Health.class).decrease(10);
+		bullet.setRemoved();
+		location.clearRemovedEntities();
+		assertEquals("Removed bullet should be released", 1, pool.size());
+
+		Entity reused = pool.acquire(7, 0.005f, 5, 6, 7, 8);
+		assertSame("Released bullet should be reused", bullet, reused);
+		assertTrue("Reused bullet should have a new ID", reused.getID() != id);
+		assertFalse("Weapon components should be dropped", reused.hasAll(Name.class));
+		assertEquals("Position should be reset", 5, reused.getComponent(Position.class).getX(), 0);
+		assertEquals("Velocity should be reset", 8, reused.getComponent(Velocity.class).getY(), 0);
+		assertEquals("Damage should be reset", 7, reused.getComponent(DamageFactor.class).getDamageFactor());
+		assertEquals("Health should be reset", 10, reused.getComponent(Health.class).getCurrent());
+		assertFalse("Reused bullet should not be removed", reused.isRemoved());
+
+		for (Component component : reused.getComponents())
+			assertTrue("Every component should be sent again", component.hasChanged());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testRenewInLocation() throws Exception{
+		Location location = new Location("Range");
+		Entity bullet = location.getBulletPool().acquire(5, 0.005f, 0, 0, 0, 0);
+		location.addEntity(bullet);
+		bullet.renewID();
+	}
+}
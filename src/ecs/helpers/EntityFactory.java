@@ -132,7 +132,7 @@ public class EntityFactory {
 		ent.addComponent(new Type(EntityType.WEAPON));
 		ent.addComponent(new Size(60));
 		ent.addComponent(new DamageFactor(10));
-		ent.addComponent(new EventTrigger(100 + (long)(Math.random()*200)));
+		ent.addComponent(new EventTrigger(100 + (long)(TickContext.random().nextDouble()*200)));
 		final Name name = new Name(Name.genWeaponName());
 		name.setSuffix(Name.genWeaponSuffix());
 		ent.addComponent(name);
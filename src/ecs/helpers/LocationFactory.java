@@ -1,7 +1,5 @@
 package ecs.helpers;
 
-import java.util.Random;
-
 import renderer.ModelType;
 import ecs.components.Inventory;
 import ecs.components.Position;
@@ -17,8 +15,6 @@ import ecs.world.SpawnPoint;
  */
 public class LocationFactory {
 
-	private transient static Random random = new Random();
-
 	/** Create a starting location where players spawn. Contains a container that may
 	 * hold things a player may find useful, as well as a key that lets them get outside
 	 *
@@ -97,7 +93,7 @@ public class LocationFactory {
 	 * @return
 	 */
 	public static Location randomLocation(){
-		final long ID = random.nextLong() % 10000;
+		final long ID = TickContext.random().nextLong() % 10000;
 		final Location location = new Location("Random Room" + ID);
 		// Boundaries
 		location.addEntity(EntityFactory.genWallEntity(0.5f, -0.05f, 1f, 0.1f)); // Top
@@ -0,0 +1,162 @@
+package ecs.helpers;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * This class holds the  random numbers and
+ * the clock used by the game logic during a
+ * server tick. Each tick (and each location
+ * processed within it) is given its own seed
+ * and time, so that a recorded tick can be
+ * replayed with the exact same outcome, no
+ * matter which thread it runs on. Each part
+ * is also given its own block of entity ID's
+ * for the same reason (see {@code IDProvider}).
+ * <p>
+ * Outside of a tick  (for instance on the
+ * client, or while generating the world) it
+ * falls back to an unseeded generator and to
+ * the system clock.
+ *
+ * @author Lord Mumford
+ */
+public final class TickContext
+{
+	/**
+	 * The number of entity ID's reserved for each
+	 * part of a tick.
+	 */
+	public static final int IDS = 1 << 16;
+
+	/**
+	 * A small generator which  can be reseeded
+	 * without allocating,  and yields the full
+	 * 64 bits of state  (unlike Random, whose
+	 * longs only take 2^48 values).
+	 */
+	private static final class TickRandom extends Random
+	{
+		private static final long serialVersionUID = 1L;
+
+		private long state;
+		private boolean active;
+		private long time;
+		private long nextID, endID;
+
+		@Override
+		public void setSeed(long seed)
+		{
+			state = seed;
+		}
+
+		@Override
+		public long nextLong()
+		{
+			return mix(state += 0x9E3779B97F4A7C15L, 0);
+		}
+
+		@Override
+		protected int next(int bits)
+		{
+			return (int)(nextLong() >>> (64 - bits));
+		}
+	}
+
+	private static final ThreadLocal<TickRandom> current = new ThreadLocal<TickRandom>()
+	{
+		@Override
+		protected TickRandom initialValue()
+		{
+			return new TickRandom();
+		}
+	};
+
+	private TickContext()
+	{
+		return;
+	}
+
+	/**
+	 * Starts a tick (or a part of a tick) on the
+	 * calling thread.
+	 *
+	 * @param seed The seed of the random numbers.
+	 * @param time The time of the tick, which is
+	 * returned by {@code currentTimeMillis}.
+	 * @param ids The first of the {@code IDS}
+	 * entity ID's reserved for this part of the
+	 * tick, which are returned by {@code nextID}.
+	 */
+	public static void begin(long seed, long time, long ids)
+	{
+		TickRandom context = current.get();
+		context.setSeed(seed);
+		context.active = true;
+		context.time = time;
+		context.nextID = ids;
+		context.endID = ids + IDS;
+	}
+
+	/**
+	 * Ends the tick on the calling thread.
+	 */
+	public static void end()
+	{
+		current.get().active = false;
+	}
+
+	/**
+	 * Returns whether a tick is running on the
+	 * calling thread.
+	 */
+	public static boolean isActive()
+	{
+		return current.get().active;
+	}
+
+	/**
+	 * Returns the random number generator to be
+	 * used by the game logic.
+	 */
+	public static Random random()
+	{
+		TickRandom context = current.get();
+		return (context.active ? context : ThreadLocalRandom.current());
+	}
+
+	/**
+	 * Returns the time of the current tick, or
+	 * the system time outside of a tick.
+	 */
+	public static long currentTimeMillis()
+	{
+		TickRandom context = current.get();
+		return (context.active ? context.time : System.currentTimeMillis());
+	}
+
+	/**
+	 * Returns the next entity ID reserved for
+	 * the current tick, or zero outside of a
+	 * tick or once they have all been used.
+	 */
+	public static long nextID()
+	{
+		TickRandom context = current.get();
+		if ((!context.active) || (context.nextID == context.endID)) return 0;
+		return context.nextID++;
+	}
+
+	/**
+	 * Derives a seed from another one and  a
+	 * salt  (the  SplitMix64  finalizer),  so
+	 * that nearby salts give unrelated seeds.
+	 */
+	public static long mix(long seed, long salt)
+	{
+		long z = seed + salt * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -4,6 +4,7 @@ import ecs.world.*;
 import ecs.entity.*;
 import ecs.components.*;
 import ecs.components.Type.*;
+import ecs.helpers.TickContext;
 
 /** Processes how AI behaves. Very basic AI that responds to what they have targetted
  *
@@ -12,11 +13,16 @@ import ecs.components.Type.*;
  */
 public class AISystem implements EntitySystem {
 
+	// Every entity with AI has a target
+	private static final Query AI = new Query(Type.class, Target.class);
+
 	@Override
 	public void process(World world, Location location, double delta) {
-		for(Entity ent : location.getEntities()){ // Go through the location
-			if(ent.hasAll(Type.class)){ // Check type
-				EntityType type = ent.getType();
+		for(Archetype archetype : location.query(AI)){ // Go through the entities which may have AI
+			Component[] types = archetype.getColumn(Type.class);
+			for(int row = 0; row < archetype.size(); ++row){
+				Entity ent = archetype.getEntity(row);
+				EntityType type = ((Type)types[row]).getType(); // Check type
 				if(type==EntityType.ZOMBIE || type==EntityType.NPC){ // If it's an NPC or Zombie
 					doAI(world, location, ent); // Perform zombie AI
 				} else if (type==EntityType.BULLET && ent.hasAll(Name.class) && ent.getComponent(Name.class).hasSuffix()){
@@ -119,9 +125,9 @@ public class AISystem implements EntitySystem {
 	private void randomMovement(Entity entity, World world, Location location) {
 		if(entity.hasAll(EventTrigger.class)){
 			EventTrigger trigger = entity.getComponent(EventTrigger.class);
-			if(trigger.canFire(System.currentTimeMillis())){
-				double x = (Math.random()*2) - 1;
-				double y = (Math.random()*2) - 1;
+			if(trigger.canFire(TickContext.currentTimeMillis())){
+				double x = (TickContext.random().nextDouble()*2) - 1;
+				double y = (TickContext.random().nextDouble()*2) - 1;
 				world.getPhysics().displaceEntity(location, entity, (float)(x * 0.0008f), (float)(y * 0.0008f));
 			}
 		}
@@ -137,13 +143,13 @@ public class AISystem implements EntitySystem {
 	 */
 	private void attackTarget(World world, Location location, Entity zombie, Entity other) {
 		EventTrigger trigger = zombie.getComponent(EventTrigger.class);
-		if(trigger.canFire(System.currentTimeMillis())){
+		if(trigger.canFire(TickContext.currentTimeMillis())){
 			if(other.getType()==EntityType.PLAYER){
 				other.getComponent(Health.class).decrease(10);
 			} else if (other.getType()==EntityType.NPC){
 				other.getComponent(Health.class).decrease(10);
 				world.getPhysics().displaceEntity(location, other,
-						(float)(((Math.random()*2)-1) * 0.003f), (float)(((Math.random()*2)-1) * 0.003f));
+						(float)(((TickContext.random().nextDouble()*2)-1) * 0.003f), (float)(((TickContext.random().nextDouble()*2)-1) * 0.003f));
 			}
 		}
 	}
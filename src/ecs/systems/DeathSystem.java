@@ -7,6 +7,7 @@ import ecs.entity.*;
 import ecs.components.*;
 import ecs.components.Type.*;
 import ecs.helpers.EntityFactory;
+import ecs.helpers.TickContext;
 
 /** Determines what happens when an entity dies. This only happens to entities
  * that have a health component, and the current health is less than 0
@@ -16,17 +17,18 @@ import ecs.helpers.EntityFactory;
  */
 public class DeathSystem implements EntitySystem {
 
-	private Set<Entity> toAdd; // If entities are added after death, i.e dropping coins, they are added here
-
-	public DeathSystem(){
-		toAdd = new HashSet<Entity>();
-	}
+	private static final Query MORTAL = new Query(Health.class);
 
 	@Override
 	public void process(World world, Location location, double delta) {
-		toAdd.clear(); // toAdd is cleared to avoid duplication
-		for(Entity ent : location.getEntities()){
-			if(ent.hasAll(Health.class) && ent.getComponent(Health.class).getCurrent()<=0){ // If has health and health <0
+		// If entities are added after death, i.e dropping coins, they are added here
+		// (kept local as locations may be processed in parallel, and in order so replays add them the same way)
+		List<Entity> toAdd = new ArrayList<Entity>();
+		for(Archetype archetype : location.query(MORTAL)){
+			Component[] health = archetype.getColumn(Health.class);
+			for(int row = 0; row < archetype.size(); ++row){
+				Entity ent = archetype.getEntity(row);
+				if(((Health)health[row]).getCurrent()>0) continue; // If health <0
 				if(ent.hasAll(Type.class)){
 					EntityType type = ent.getType();
 					switch(type){
@@ -62,7 +64,7 @@ public class DeathSystem implements EntitySystem {
 	 * @param player Player entity
 	 */
 	private void playerDeath(World world, Entity player) {
-		player.getComponent(Worth.class).setWorth(0);
+		if(player.hasAll(Worth.class)) player.getComponent(Worth.class).setWorth(0); // players don't always carry money
 		player.getComponent(Equipped.class).equip(EntityFactory.genDefaultWeapon("None"));
 
 	}
@@ -73,12 +75,12 @@ public class DeathSystem implements EntitySystem {
 	 * @param toAdd Entities (drops) to add to the location
 	 * @param zombie Zombie
 	 */
-	private void zombieDeath(Set<Entity> toAdd, Entity zombie) {
+	private void zombieDeath(List<Entity> toAdd, Entity zombie) {
 		zombie.setRemoved();
 		if(zombie.hasAll(Position.class)){
 			Position pos = zombie.getComponent(Position.class);
-			toAdd.add(EntityFactory.genMoney((float)pos.getX(), (float)pos.getY(), (int)(Math.random()*50)));
-			int RNG = (int)(Math.random()*0);
+			toAdd.add(EntityFactory.genMoney((float)pos.getX(), (float)pos.getY(), (int)(TickContext.random().nextDouble()*50)));
+			int RNG = (int)(TickContext.random().nextDouble()*0);
 			if(RNG==0){
 				Entity weapon = EntityFactory.genRandomWeapon();
 				weapon.addComponent(new Position(pos.getX(), pos.getY()));
@@ -1,11 +1,13 @@
 package ecs.systems;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import ecs.entity.*;
 import ecs.components.*;
 import ecs.components.Volume.VolumeType;
 import ecs.world.Location;
+import ecs.world.LongMap;
 import ecs.components.Type.*;
 
 import org.jbox2d.common.*;
@@ -37,6 +39,20 @@ import log.Log;
  * respond   to   entities   losing   their
  * Velocity component  (so dynamic entities
  * cannot become static and vice versa).
+ * <p>
+ * The bodies of removed bullets are not
+ * destroyed, but deactivated and reused for
+ * the next bullets, as  there can  be  many
+ * of them and they do not live long.
+ * <p>
+ * Rather than looking for new and removed
+ * entities every tick, the system watches
+ * each location (see {@code Location.watch})
+ * and creates or removes bodies as entities
+ * enter or leave it. The  dynamic bodies are
+ * kept in dense arrays, with the Position and
+ * Velocity components they are  read back
+ * into, so that readback looks nothing up.
  *
  * @author Thomas Beneteau (300250968)
  */
@@ -44,17 +60,167 @@ public class PhysicsSystem implements EntitySystem
 {
 	private final String COMPONENT = "Physics System";
 
-	private class PhysicsWorld implements ContactListener
+	/**
+	 * A body and the entity it simulates. Dynamic
+	 * bodies also have a slot in the readback
+	 * arrays of their world.
+	 */
+	private static final class Simulated
+	{
+		public final long ID;
+		public final Entity entity;
+		public final Body body;
+		public int slot = -1;
+
+		public Simulated(Entity entity, Body body)
+		{
+			this.ID = entity.getID();
+			this.entity = entity;
+			this.body = body;
+		}
+	}
+
+	private class PhysicsWorld implements ContactListener, QueryListener
 	{
-		public final Map<Long, Body> bodies = new HashMap<Long, Body>();
+		public final LongMap<Simulated> bodies = new LongMap<Simulated>();
 		public final World world = new World(new Vec2(0.0f, 0.0f));
 		private final Location location;
 
+		/**
+		 * The entities which entered or left the
+		 * location (or the query) since the last
+		 * synchronization, in that order.
+		 */
+		public final List<Entity> entering = new ArrayList<Entity>();
+		public final List<Simulated> leaving = new ArrayList<Simulated>();
+
+		/**
+		 * The dynamic bodies, with the components
+		 * they are read back into (the first {@code
+		 * moving} of each array are valid).
+		 */
+		private Simulated[] movers = new Simulated[INITIAL_CAPACITY];
+		private Position[] positions = new Position[INITIAL_CAPACITY];
+		private Velocity[] velocities = new Velocity[INITIAL_CAPACITY];
+		private int moving = 0;
+
+		/**
+		 * Deactivated bullet bodies, ready to be
+		 * reused (see {@code reuseBullet}).
+		 */
+		private final Deque<Body> freeBullets = new ArrayDeque<Body>();
+		private final Vec2 temp = new Vec2();
+
 		public PhysicsWorld(Location location)
 		{
 			world.setContactListener(this);
 			world.setSleepingAllowed(true);
 			this.location = location;
+
+			/* Every entity there already is new to us, in the order a tick would walk them. */
+			for (Archetype archetype : location.query(ACTIVE))
+				for (int row = 0; row < archetype.size(); ++row) entering.add(archetype.getEntity(row));
+
+			location.watch(ACTIVE, this);
+		}
+
+		@Override
+		public void entered(Entity entity)
+		{
+			entering.add(entity);
+		}
+
+		@Override
+		public void left(Entity entity)
+		{
+			Simulated simulated = bodies.get(entity.getID());
+			if ((simulated != null) && (simulated.entity == entity)) leaving.add(simulated);
+		}
+
+		/**
+		 * Starts simulating an entity.
+		 */
+		public void add(Simulated simulated)
+		{
+			bodies.put(simulated.ID, simulated);
+			if (simulated.body.getType() != BodyType.DYNAMIC) return;
+
+			if (moving == movers.length)
+			{
+				movers = Arrays.copyOf(movers, moving * 2);
+				positions = Arrays.copyOf(positions, moving * 2);
+				velocities = Arrays.copyOf(velocities, moving * 2);
+			}
+
+			movers[moving] = simulated;
+			positions[moving] = simulated.entity.getComponent(Position.class);
+			velocities[moving] = simulated.entity.getComponent(Velocity.class);
+			simulated.slot = moving++;
+		}
+
+		/**
+		 * Stops simulating an entity, and releases
+		 * its body.
+		 */
+		public void remove(Simulated simulated)
+		{
+			bodies.remove(simulated.ID);
+
+			if (simulated.slot >= 0)
+			{
+				int slot = simulated.slot, last = --moving;
+
+				movers[slot] = movers[last];
+				positions[slot] = positions[last];
+				velocities[slot] = velocities[last];
+				movers[slot].slot = slot;
+
+				movers[last] = null;
+				positions[last] = null;
+				velocities[last] = null;
+				simulated.slot = -1;
+			}
+
+			release(simulated.body);
+		}
+
+		/**
+		 * Copies the position and velocity of every
+		 * awake dynamic body into its entity. The
+		 * components are looked up again only if
+		 * they were replaced or removed.
+		 */
+		public void readback()
+		{
+			for (int t = 0; t < moving; ++t)
+			{
+				Body body = movers[t].body;
+
+				/* Sleeping bodies have not moved. */
+				if (!body.isAwake()) continue;
+
+				Entity entity = movers[t].entity;
+				Position position = positions[t];
+				Velocity velocity = velocities[t];
+
+				if ((position == null) || (position.getOwner() != entity))
+					position = positions[t] = entity.getComponent(Position.class);
+
+				if ((velocity == null) || (velocity.getOwner() != entity))
+					velocity = velocities[t] = entity.getComponent(Velocity.class);
+
+				if (position != null)
+				{
+					position.setX(body.getPosition().x);
+					position.setY(body.getPosition().y);
+				}
+
+				if (velocity != null)
+				{
+					velocity.setX(body.getLinearVelocity().x);
+					velocity.setY(body.getLinearVelocity().y);
+				}
+			}
 		}
 
 		/**
@@ -108,6 +274,50 @@ public class PhysicsSystem implements EntitySystem
 			bullet.setRemoved();
 		}
 
+		/**
+		 * Removes a body from the simulation. Bullet
+		 * bodies are kept (inactive) for reuse.
+		 */
+		private void release(Body body)
+		{
+			if ((body.isBullet()) && (body.getType() == BodyType.DYNAMIC) && (freeBullets.size() < MAX_FREE_BULLETS))
+			{
+				body.setActive(false);
+				freeBullets.push(body);
+			}
+			else world.destroyBody(body);
+		}
+
+		/**
+		 * Returns a deactivated bullet body, moved
+		 * to a bullet entity and active again, or
+		 * {@code null} if there is none of the
+		 * right size.
+		 */
+		public Body reuseBullet(Entity entity)
+		{
+			Body body = freeBullets.peek();
+			if (body == null) return null;
+
+			Shape shape = body.getFixtureList().getShape();
+			Volume volume = entity.getComponent(Volume.class);
+
+			if ((volume.getType() != VolumeType.CIRCLE) || (shape.getType() != ShapeType.CIRCLE)
+				|| (shape.getRadius() != volume.getWidth() / 2)) return null;
+
+			Position pos = entity.getComponent(Position.class);
+			Velocity vel = entity.getComponent(Velocity.class);
+			freeBullets.pop();
+
+			body.setTransform(temp.set((float)pos.getX(), (float)pos.getY()), 0.0f);
+			body.setLinearVelocity(temp.set((float)vel.getX(), (float)vel.getY()));
+			body.setAngularVelocity(0.0f);
+			body.setUserData(entity.getID());
+			body.setActive(true);
+			body.setAwake(true);
+			return body;
+		}
+
 		/* Contact utility methods. */
 
 		/**
@@ -162,7 +372,23 @@ public class PhysicsSystem implements EntitySystem
 		}
 	}
 
-	private final Map<Location, PhysicsWorld> worlds = new HashMap<Location, PhysicsWorld>();
+	/* Concurrent as locations may be processed in parallel (each location's
+	 * physics world is still only ever used by one thread at a time). */
+	private final Map<Location, PhysicsWorld> worlds = new ConcurrentHashMap<Location, PhysicsWorld>();
+
+	/**
+	 * The entities simulated by this system (see
+	 * {@code isActive}).
+	 */
+	private static final Query ACTIVE = new Query(Volume.class, Position.class);
+
+	/**
+	 * The most  deactivated bullet bodies kept
+	 * per location.
+	 */
+	private static final int MAX_FREE_BULLETS = 256;
+
+	private static final int INITIAL_CAPACITY = 64;
 
 	private final int VELOCITY_ITERATIONS = 6;
 	private final int POSITION_ITERATIONS = 3;
@@ -170,59 +396,57 @@ public class PhysicsSystem implements EntitySystem
 	@Override
 	public void process(ecs.world.World dummy, Location location, double delta)
 	{
-		/* Synchronization phase: add new physics entities, remove those that are gone. */
+		/* Synchronization phase: add the entities which entered, remove those that left. */
 
-		if (!worlds.containsKey(location))
-			worlds.put(location, new PhysicsWorld(location));
 		PhysicsWorld world = worlds.get(location);
 
-		Iterator<Map.Entry<Long, Body>> iter = world.bodies.entrySet().iterator();
-		while (iter.hasNext())
+		if (world == null)
 		{
-			Map.Entry<Long, Body> entry = iter.next();
+			world = new PhysicsWorld(location);
+			worlds.put(location, world);
+		}
 
-			Entity entity = location.getEntity(entry.getKey());
+		/* Entities may have left and come back since (or entered and left), so
+		 * only the entities which are gone for good lose their body. */
+		for (Simulated simulated : world.leaving)
+		{
+			if (world.bodies.get(simulated.ID) != simulated) continue;
 
-			if ((entity == null) || (!isActive(entity)))
-			{
-				world.world.destroyBody(entry.getValue());
-				iter.remove();
-			}
+			Entity entity = location.getEntity(simulated.ID);
+
+			if ((entity != simulated.entity) || (!isActive(entity)))
+				world.remove(simulated);
 		}
 
-		for (Entity entity : location.getEntities())
+		for (Entity entity : world.entering)
 		{
-			if ((isActive(entity)) && (!world.bodies.containsKey(entity.getID())))
-				world.bodies.put(entity.getID(), physicsFactory(world.world, entity));
+			if ((location.getEntity(entity.getID()) == entity) && (isActive(entity)) && (world.bodies.get(entity.getID()) == null))
+				world.add(new Simulated(entity, physicsFactory(world, entity)));
 		}
 
+		world.leaving.clear();
+		world.entering.clear();
+
 		/* Simulation phase: step the physics simulation, and handle collisions. */
 
 		world.world.step((float)delta, VELOCITY_ITERATIONS, POSITION_ITERATIONS);
 
-		/* Readback phase: get the bodies back from the simulation and update the entities. */
-
-		for (Long ID : world.bodies.keySet())
-		{
-			Entity entity = location.getEntity(ID);
-			Body body = world.bodies.get(ID);
+		/* Readback phase: get the bodies back from the simulation and update the entities
+		 * (we never update static bodies, as they will not move). */
 
-			/* We never update static bodies, as they will not move. */
-			if (body.isAwake() && (body.getType() == BodyType.DYNAMIC))
-			{
-				if (entity.hasAll(Position.class))
-				{
-					entity.getComponent(Position.class).setX(body.getPosition().x);
-					entity.getComponent(Position.class).setY(body.getPosition().y);
-				}
+		world.readback();
+	}
 
-				if (entity.hasAll(Velocity.class))
-				{
-					entity.getComponent(Velocity.class).setX(body.getLinearVelocity().x);
-					entity.getComponent(Velocity.class).setY(body.getLinearVelocity().y);
-				}
-			}
-		}
+	/**
+	 * Frees the  physics simulation of a location
+	 * (for instance when  it hibernates). It is
+	 * rebuilt from the  entities the next time
+	 * the location is processed.
+	 */
+	public void removeLocation(Location location)
+	{
+		PhysicsWorld world = worlds.remove(location);
+		if (world != null) location.unwatch(world);
 	}
 
 	/**
@@ -235,7 +459,7 @@ public class PhysicsSystem implements EntitySystem
 		if (!hasBody(location, entity))
 			throw new IllegalArgumentException("This entity is not simulated by the physics system. : " + entity.getType());
 
-		return worlds.get(location).bodies.get(entity.getID());
+		return worlds.get(location).bodies.get(entity.getID()).body;
 	}
 
 	/**
@@ -248,12 +472,58 @@ public class PhysicsSystem implements EntitySystem
 		PhysicsWorld world = worlds.get(location);
 		if (world == null) return false;
 
-		Body body = world.bodies.get(entity.getID());
-		if (body == null) return false;
+		Simulated simulated = world.bodies.get(entity.getID());
+		if (simulated == null) return false;
 
 		return true;
 	}
 
+	/**
+	 * Returns  every  entity  of  a  location
+	 * whose  center  lies  within  a  given
+	 * distance of a point. This goes through
+	 * the broadphase  of the physics  world,
+	 * so only nearby bodies are examined, and
+	 * only  entities  simulated  by  this
+	 * system can be found.
+	 *
+	 * @param location The location to search.
+	 * @param x The query x-coordinate.
+	 * @param y The query y-coordinate.
+	 * @param radius The query radius.
+	 * @param type  The  entity type  to look
+	 * for, or {@code null} for any type.
+	 *
+	 * @return Returns the matching entities.
+	 */
+	public List<Entity> queryRadius(final Location location, double x, double y, final double radius, final EntityType type)
+	{
+		final List<Entity> result = new ArrayList<Entity>();
+		final Position center = new Position(x, y);
+
+		PhysicsWorld world = worlds.get(location);
+		if (world == null) return result;
+
+		AABB bounds = new AABB(new Vec2((float)(x - radius), (float)(y - radius)),
+							   new Vec2((float)(x + radius), (float)(y + radius)));
+
+		world.world.queryAABB(new QueryCallback()
+		{
+			@Override
+			public boolean reportFixture(Fixture fixture)
+			{
+				Entity entity = location.getEntity((Long)fixture.getBody().getUserData());
+
+				if ((entity != null) && (entity.hasAll(Position.class)) && ((type == null) || (entity.getType() == type)))
+					if (entity.getComponent(Position.class).getDistance(center) <= radius) result.add(entity);
+
+				return true; /* Keep going. */
+			}
+		}, bounds);
+
+		return result;
+	}
+
 	/**
 	 * Applies an  impulse to an  entity, which
 	 * will accelerate it in a given direction.
@@ -283,7 +553,12 @@ public class PhysicsSystem implements EntitySystem
 		entity.getComponent(Position.class).setX(x);
 		entity.getComponent(Position.class).setY(y);
 		PhysicsWorld world = worlds.get(location);
-		world.world.destroyBody(world.bodies.remove(entity.getID()));
+		Simulated simulated = world.bodies.get(entity.getID());
+		if (simulated == null) return;
+
+		/* The body is created again, at the new position, on the next tick. */
+		world.remove(simulated);
+		world.entering.add(entity);
 	}
 
 	/**
@@ -292,7 +567,7 @@ public class PhysicsSystem implements EntitySystem
 	 */
 	private boolean isActive(Entity entity)
 	{
-		return (entity.hasAll(Volume.class, Position.class));
+		return (entity.matches(ACTIVE));
 	}
 
 	/**
@@ -300,13 +575,20 @@ public class PhysicsSystem implements EntitySystem
 	 * body   with  the   appropriate  physical
 	 * constants.
 	 */
-	private Body physicsFactory(World world, Entity entity)
+	private Body physicsFactory(PhysicsWorld physicsWorld, Entity entity)
 	{
 		float NA = Float.NaN; /* For static objects where damping is not applicable. */
 		float INF = Float.POSITIVE_INFINITY; /* To use infinite damping (if needed). */
 
 		EntityType type = entity.getType();
-		Body body = physicsBody(world, entity);
+
+		if ((type == EntityType.BULLET) && (getBodyType(entity) == BodyType.DYNAMIC))
+		{
+			Body body = physicsWorld.reuseBullet(entity);
+			if (body != null) return body;
+		}
+
+		Body body = physicsBody(physicsWorld.world, entity);
 		FixtureDef params = new FixtureDef();
 		params.shape = getShape(entity);
 
@@ -1,58 +1,73 @@
 package ecs.systems;
 
+import java.util.List;
+
+import ecs.components.Component;
 import ecs.components.Position;
 import ecs.components.Target;
 import ecs.components.TargetRadius;
 import ecs.components.Type;
 import ecs.components.Worth;
 import ecs.components.Type.EntityType;
+import ecs.entity.Archetype;
 import ecs.entity.Entity;
+import ecs.entity.Query;
 import ecs.world.*;
 
 /** Targetting system to determine what entities are targetting if they have a target component
  * They will target whatever is in their radius, and prioritise things that are closest to them.
  * If money is targetted, it is added to the player's worth
  *
+ * Candidates are looked up through the physics system's broadphase, so only entities
+ * near the targetting entity are considered. Only the archetypes of entities which
+ * can target are walked.
+ *
  * @author mumforpatr
  *
  */
 public class TargetSystem implements EntitySystem {
 
+	private static final Query TARGETING = new Query(Target.class, TargetRadius.class, Position.class);
+
 	@Override
 	public void process(World world, Location location, double delta) {
-		for(Entity ent : location.getEntities()){
-			if (ent.hasAll(Target.class, TargetRadius.class)){
-				Target target = ent.getComponent(Target.class);
-				double radius = (ent.getComponent(TargetRadius.class)).getRadius();
+		PhysicsSystem physics = world.getPhysics();
+		List<Archetype> archetypes = location.query(TARGETING);
+
+		// Picking up money may give a player a Worth component, moving it to another (maybe new)
+		// archetype, so archetypes created meanwhile are skipped and rows are walked backwards
+		for(int a = archetypes.size() - 1; a >= 0; --a){
+			Archetype archetype = archetypes.get(a);
+			Component[] targets = archetype.getColumn(Target.class);
+			Component[] radii = archetype.getColumn(TargetRadius.class);
+			Component[] positions = archetype.getColumn(Position.class);
+
+			for(int row = archetype.size() - 1; row >= 0; --row){
+				Entity ent = archetype.getEntity(row);
+				Target target = (Target)targets[row];
+				double radius = ((TargetRadius)radii[row]).getRadius();
+				Position pos = (Position)positions[row];
 				// Retrieve the targetting radius, then target the closest targetable entity (has position)
-				//if(!target.hasTarget()){
-				double dist = Double.MAX_VALUE; // Max distance
-				for(Entity targEnt : location.getEntities()){
-					if(targEnt.hasAll(Type.class, Position.class) && targEnt.getID()!=ent.getID()){
+				double dist = radius;
+				Entity closest = null; // Stays null if nothing in range
+				for(Entity targEnt : physics.queryRadius(location, pos.getX(), pos.getY(), radius, null)){
+					if(targEnt.hasAll(Type.class) && targEnt.getID()!=ent.getID()){
 						EntityType type = targEnt.getType();
 						if(target.targets(type)){ // If the entity can target this type of entity
-
-							Position pos = targEnt.getComponent(Position.class);
-							double disBetween = pos.getDistance(ent.getComponent(Position.class));
-							if(disBetween < dist && disBetween < radius){
+							double disBetween = targEnt.getComponent(Position.class).getDistance(pos);
+							if(disBetween < dist){
 								dist = disBetween;
-								target.setTarget(targEnt);
-								target.hasChanged();
+								closest = targEnt;
 							}
-							if (disBetween < radius && targEnt.getType()==EntityType.MONEY && ent.getType()==EntityType.PLAYER){
+							if (disBetween < radius && type==EntityType.MONEY && ent.getType()==EntityType.PLAYER && !targEnt.isRemoved()){
 								// Pick up the money automatically
 								takeMoney(ent, targEnt);
 							}
 						}
 					}
 				}
-				if(dist>radius){ // i.e, Double.MAX_VALUE, nothing in range
-					target.setTarget(null);
-					target.hasChanged();
-				}
+				target.setTarget(closest);
 			}
-
-
 		}
 	}
 
@@ -77,4 +92,3 @@ public class TargetSystem implements EntitySystem {
 }
 
 	// Add a map of types of entity to what they can or want to target
-
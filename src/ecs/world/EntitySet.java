@@ -0,0 +1,208 @@
+package ecs.world;
+
+import java.io.*;
+import java.util.*;
+
+import ecs.entity.*;
+
+/**
+ * The  set of  entities of  a location. It
+ * behaves as  a plain set (and can thus be
+ * filled  by JAXB  or modified through its
+ * iterator) but also keeps an index of its
+ * entities  by  ID,  so  that  they can be
+ * looked up in constant time. Entities are
+ * also sorted by archetype, so that systems
+ * can walk only those they are interested in
+ * (see {@code query}).
+ * <p>
+ * The indices are not serialized, they are
+ * rebuilt upon deserialization.
+ * <p>
+ * Entities are iterated in the order they
+ * were added (rather than in the order of
+ * their identity hash codes), so a replayed
+ * tick processes them in the same order.
+ */
+public class EntitySet extends AbstractSet<Entity> implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	private final Set<Entity> entities = new LinkedHashSet<Entity>();
+	private transient LongMap<Entity> index = new LongMap<Entity>();
+	private transient ArchetypeIndex archetypes = new ArchetypeIndex();
+
+	/**
+	 * Returns the entity with a given ID, or
+	 * {@code null} if there is none.
+	 */
+	public Entity get(long id)
+	{
+		return index.get(id);
+	}
+
+	/**
+	 * Removes the entity with a given ID, and
+	 * returns it  (or {@code null} if  there
+	 * was none).
+	 */
+	public Entity removeByID(long id)
+	{
+		Entity entity = index.remove(id);
+		if (entity != null) entities.remove(entity);
+		if (entity != null) archetypes.remove(entity);
+		return entity;
+	}
+
+	/**
+	 * Returns  every  archetype whose entities
+	 * match a query (see {@code ArchetypeIndex}).
+	 */
+	public List<Archetype> query(Query query)
+	{
+		return archetypes.query(query);
+	}
+
+	/**
+	 * Tells a listener about the entities which
+	 * enter or leave a query from now on (see
+	 * {@code ArchetypeIndex.watch}). Listeners
+	 * are not serialized.
+	 */
+	public void watch(Query query, QueryListener listener)
+	{
+		archetypes.watch(query, listener);
+	}
+
+	/**
+	 * Stops telling a listener about changes.
+	 */
+	public void unwatch(QueryListener listener)
+	{
+		archetypes.unwatch(listener);
+	}
+
+	/**
+	 * Returns the  entities which have changed
+	 * since the last call to {@code
+	 * clearDirty}, in the order they changed.
+	 */
+	public Set<Entity> getDirty()
+	{
+		return archetypes.getDirty();
+	}
+
+	/**
+	 * Returns the entities which have changed,
+	 * and marks them as unchanged.
+	 */
+	public List<Entity> clearDirty()
+	{
+		return archetypes.clearDirty();
+	}
+
+	/**
+	 * Sorts the entities by archetype again, in
+	 * the order they were added. Rows are moved
+	 * around as entities change archetype, so
+	 * this puts them back in the order they would
+	 * be in had the set just been loaded.
+	 */
+	public void reindex()
+	{
+		archetypes.clear();
+		for (Entity entity : entities) archetypes.add(entity);
+	}
+
+	@Override
+	public boolean add(Entity entity)
+	{
+		if (!entities.add(entity)) return false;
+		index.put(entity.getID(), entity);
+		archetypes.add(entity);
+		return true;
+	}
+
+	@Override
+	public boolean remove(Object object)
+	{
+		if (!entities.remove(object)) return false;
+		unindex((Entity)object);
+		archetypes.remove((Entity)object);
+		return true;
+	}
+
+	@Override
+	public boolean contains(Object object)
+	{
+		return entities.contains(object);
+	}
+
+	@Override
+	public int size()
+	{
+		return entities.size();
+	}
+
+	@Override
+	public void clear()
+	{
+		entities.clear();
+		index.clear();
+		archetypes.clear();
+	}
+
+	@Override
+	public Iterator<Entity> iterator()
+	{
+		final Iterator<Entity> iter = entities.iterator();
+
+		return new Iterator<Entity>()
+		{
+			private Entity current;
+
+			@Override
+			public boolean hasNext()
+			{
+				return iter.hasNext();
+			}
+
+			@Override
+			public Entity next()
+			{
+				return (current = iter.next());
+			}
+
+			@Override
+			public void remove()
+			{
+				iter.remove();
+				unindex(current);
+				archetypes.remove(current);
+			}
+		};
+	}
+
+	/**
+	 * Only unindexes an entity if the index does
+	 * not point to another entity with the same
+	 * ID.
+	 */
+	private void unindex(Entity entity)
+	{
+		if (index.get(entity.getID()) == entity) index.remove(entity.getID());
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		index = new LongMap<Entity>();
+		archetypes = new ArchetypeIndex();
+
+		for (Entity entity : entities)
+		{
+			index.put(entity.getID(), entity);
+			archetypes.add(entity);
+		}
+	}
+}
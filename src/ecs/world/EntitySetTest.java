@@ -0,0 +1,211 @@
+package ecs.world;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+import ecs.entity.*;
+import ecs.components.*;
+
+/**
+ * JUnit tests for the archetype index of entity sets.
+ */
+public class EntitySetTest {
+
+	private static final Query POSITIONED = new Query(Position.class);
+
+	private static Entity entity(Component... components){
+		Entity entity = new Entity();
+		for (Component component : components) entity.addComponent(component);
+		return entity;
+	}
+
+	private static Set<Entity> matching(EntitySet set, Query query){
+		Set<Entity> result = new HashSet<Entity>();
+		for (Archetype archetype : set.query(query)){
+			Component[] positions = archetype.getColumn(Position.class);
+			for (int row = 0; row < archetype.size(); ++row){
+				Entity entity = archetype.getEntity(row);
+				assertSame("Columns should hold the entity's components", entity.getComponent(Position.class), positions[row]);
+				result.add(entity);
+			}
+		}
+		return result;
+	}
+
+	@Test
+	public void testQuery() throws Exception{
+		EntitySet set = new EntitySet();
+		Entity a = entity(new Position(1, 1));
+		Entity b = entity(new Position(2, 2), new Health(10));
+		Entity c = entity(new Health(10));
+		set.add(a);
+		set.add(b);
+		set.add(c);
+
+		assertEquals("Only positioned entities should match", new HashSet<Entity>(Arrays.asList(a, b)), matching(set, POSITIONED));
+		assertEquals("Archetypes should be distinct", 2, set.query(POSITIONED).size());
+	}
+
+	@Test
+	public void testComponentChanges() throws Exception{
+		EntitySet set = new EntitySet();
+		Entity a = entity(new Health(10));
+		Entity b = entity(new Position(2, 2));
+		set.add(a);
+		set.add(b);
+		matching(set, POSITIONED); // caches the query
+
+		a.addComponent(new Position(1, 1));
+		assertEquals("Added component should move the entity", new HashSet<Entity>(Arrays.asList(a, b)), matching(set, POSITIONED));
+
+		b.addComponent(new Position(3, 3));
+		assertEquals("Replaced component should be in its column", 2, matching(set, POSITIONED).size());
+
+		b.removeComponent(Position.class);
+		assertEquals("Removed component should move the entity", Collections.singleton(a), matching(set, POSITIONED));
+
+		a.getComponent(Position.class).setRemoved();
+		a.clearRemovedComponents();
+		assertTrue("Cleared component should move the entity", matching(set, POSITIONED).isEmpty());
+	}
+
+	@Test
+	public void testRemoval() throws Exception{
+		EntitySet set = new EntitySet();
+		List<Entity> entities = new ArrayList<Entity>();
+		for (int t = 0; t < 20; ++t){
+			Entity entity = entity(new Position(t, t));
+			entities.add(entity);
+			set.add(entity);
+		}
+
+		set.remove(entities.get(3));
+		set.removeByID(entities.get(7).getID());
+		Iterator<Entity> iter = set.iterator();
+		iter.next();
+		iter.remove();
+
+		Set<Entity> expected = new HashSet<Entity>(entities);
+		expected.removeAll(Arrays.asList(entities.get(0), entities.get(3), entities.get(7)));
+		assertEquals("Removed entities should not match", expected, matching(set, POSITIONED));
+
+		set.clear();
+		assertTrue("Cleared set should not match", matching(set, POSITIONED).isEmpty());
+	}
+
+	@Test
+	public void testReindex() throws Exception{
+		EntitySet set = new EntitySet();
+		Entity a = entity(new Position(1, 1));
+		Entity b = entity(new Position(2, 2));
+		Entity c = entity(new Position(3, 3));
+		set.add(a);
+		set.add(b);
+		set.add(c);
+		set.remove(a);
+		set.add(a);
+
+		set.reindex();
+		Archetype archetype = set.query(POSITIONED).get(0);
+		assertSame("Rows should follow insertion order", b, archetype.getEntity(0));
+		assertSame("Rows should follow insertion order", c, archetype.getEntity(1));
+		assertSame("Rows should follow insertion order", a, archetype.getEntity(2));
+	}
+
+	@Test
+	public void testDirty() throws Exception{
+		EntitySet set = new EntitySet();
+		Entity a = entity(new Position(1, 1));
+		Entity b = entity(new Position(2, 2));
+		set.add(a);
+		set.add(b);
+
+		assertEquals("New entities should be dirty", Arrays.asList(a, b), set.clearDirty());
+		a.clearModifiedComponents();
+		b.clearModifiedComponents();
+		assertTrue("Cleared entities should not be dirty", set.clearDirty().isEmpty());
+
+		b.getComponent(Position.class).markChanged();
+		a.setRemoved();
+		assertEquals("Changed entities should be dirty in order", Arrays.asList(b, a), set.clearDirty());
+
+		b.getComponent(Position.class).clearChanges();
+		b.removeComponent(Position.class);
+		Position position = new Position(3, 3);
+		position.clearChanges();
+		a.addComponent(position);
+		position.markChanged();
+		assertEquals("Removed components should not mark their entity", Collections.singletonList(a), set.clearDirty());
+
+		set.remove(a);
+		a.getComponent(Position.class).markChanged();
+		assertTrue("Entities of another set should not be dirty", set.clearDirty().isEmpty());
+		set.add(a);
+		assertEquals("Dirty entities should stay dirty when added", Collections.singletonList(a), set.clearDirty());
+	}
+
+	@Test
+	public void testMasks() throws Exception{
+		Query targeting = new Query(Position.class, Health.class);
+		Entity a = entity(new Position(1, 1));
+		assertTrue("Added component should be found", a.hasAll(Position.class));
+		assertFalse("Missing component should not be found", a.hasAll(Health.class));
+		assertTrue("Query of a present component should match", a.matches(new Query(Position.class)));
+		assertFalse("Query should not match", a.matches(targeting));
+
+		a.addComponent(new Health(10));
+		assertTrue("Query should match", a.matches(targeting));
+
+		a.getComponent(Health.class).setRemoved();
+		a.clearRemovedComponents();
+		assertFalse("Cleared component should not be found", a.hasAll(Health.class));
+
+		a.removeComponent(Position.class);
+		assertFalse("Removed component should not be found", a.hasAll(Position.class));
+		assertTrue("Empty query should always match", a.matches(new Query()));
+	}
+
+	@Test
+	public void testWatch() throws Exception{
+		EntitySet set = new EntitySet();
+		Entity a = entity(new Position(1, 1));
+		set.add(a);
+
+		final List<String> events = new ArrayList<String>();
+		QueryListener listener = new QueryListener(){
+			@Override
+			public void entered(Entity entity){
+				events.add("+" + entity.getID());
+			}
+
+			@Override
+			public void left(Entity entity){
+				events.add("-" + entity.getID());
+			}
+		};
+
+		set.watch(POSITIONED, listener);
+		assertTrue("Entities already there should not be reported", events.isEmpty());
+
+		Entity b = entity(new Health(10));
+		set.add(b);
+		assertTrue("Entities not matching should not be reported", events.isEmpty());
+
+		b.addComponent(new Position(2, 2));
+		b.addComponent(new Position(3, 3));
+		b.addComponent(new Velocity(0, 0));
+		assertEquals("Gaining a component should enter once", Arrays.asList("+" + b.getID()), events);
+
+		b.getComponent(Position.class).setRemoved();
+		b.clearRemovedComponents();
+		set.remove(a);
+		assertEquals("Losing a component or the set should leave", Arrays.asList("+" + b.getID(), "-" + b.getID(), "-" + a.getID()), events);
+
+		set.unwatch(listener);
+		set.add(a);
+		assertEquals("Unwatched listeners should not be told", 3, events.size());
+	}
+}
@@ -9,15 +9,17 @@ import renderer.ModelType;
 
 import ecs.entity.*;
 import ecs.helpers.*;
+import ecs.components.Type.EntityType;
 
 public class Location implements Serializable
 {
-	private static final long serialVersionUID = 1L;
+	private static final long serialVersionUID = 2L;
 
-	private final Set<Entity> entities = new HashSet<Entity>();
+	private final EntitySet entities = new EntitySet();
 	private String name;
 	private String description;
-	private transient Set<SpawnPoint> spawnPoints = new HashSet<SpawnPoint>();
+	private transient Set<SpawnPoint> spawnPoints = new LinkedHashSet<SpawnPoint>();
+	private transient BulletPool bulletPool; // Removed bullets, to be reused (created when first needed)
 	private ModelType modelType;
 	
 	@XmlElement
@@ -50,6 +52,34 @@ public class Location implements Serializable
 		entities.add(e);
 	}
 
+	/**
+	 * Returns the archetypes of this location whose entities match a query,
+	 * so that a system only walks the entities it is interested in
+	 */
+	public List<Archetype> query(Query query){
+		return entities.query(query);
+	}
+
+	/**
+	 * Tells a listener about the entities which start or stop matching a query, as they are
+	 * added, removed or change components, so that a system need not look for them every tick
+	 */
+	public void watch(Query query, QueryListener listener){
+		entities.watch(query, listener);
+	}
+
+	public void unwatch(QueryListener listener){
+		entities.unwatch(listener);
+	}
+
+	/**
+	 * Puts the entities of every archetype back in the order they were added in
+	 * (see EntitySet.reindex)
+	 */
+	public void reindex(){
+		entities.reindex();
+	}
+
 	public void setModelType(ModelType mType){
 		modelType = mType;
 	}
@@ -58,38 +88,49 @@ public class Location implements Serializable
 
 	public void removeEntity(long id)
 	{
-		Iterator<Entity> iter = entities.iterator();
-
-		while (iter.hasNext())
-		{
-			if (iter.next().getID() == id)
-			{
-				iter.remove();
-				break;
-			}
-		}
+		entities.removeByID(id);
 	}
 
 	public Set<Entity> clearRemovedEntities()
 	{
-		Iterator<Entity> iter = entities.iterator();
-		Set<Entity> removed = new HashSet<Entity>();
-
-		while (iter.hasNext())
-		{
-			Entity entity = iter.next();
+		Set<Entity> removed = Collections.emptySet();
 
+		// Removed entities are always dirty, so only those need to be looked at
+		for (Entity entity : entities.getDirty())
 			if (entity.isRemoved())
 			{
-				entity.clearRemoved();
+				if (removed.isEmpty()) removed = new HashSet<Entity>();
 				removed.add(entity);
-				iter.remove();
 			}
+
+		for (Entity entity : removed)
+		{
+			entity.clearRemoved();
+			entities.remove(entity);
+			if (entity.getType() == EntityType.BULLET) getBulletPool().release(entity);
 		}
 
 		return removed;
 	}
 
+	/**
+	 * Returns the pool from which the bullets fired in this location are taken
+	 */
+	public BulletPool getBulletPool()
+	{
+		if (bulletPool == null) bulletPool = new BulletPool();
+		return bulletPool;
+	}
+
+	/**
+	 * Returns the entities whose components have changed since the last call, in the order
+	 * they changed, so that the world can be committed without visiting every entity
+	 */
+	public List<Entity> clearDirtyEntities()
+	{
+		return entities.clearDirty();
+	}
+
 	public void addSpawn(SpawnPoint point){
 		spawnPoints.add(point);
 	}
@@ -105,11 +146,7 @@ public class Location implements Serializable
 
 	public Entity getEntity(long id)
 	{
-		for (Entity entity : entities)
-			if (entity.getID() == id)
-				return entity;
-
-		return null;
+		return entities.get(id);
 	}
 
 	@XmlElement
@@ -124,7 +161,7 @@ public class Location implements Serializable
 	public void spawnEntities() {
 		for(SpawnPoint point : spawnPoints){
 			if(!point.isOccupied()){
-				double RNG = Math.random()*2;
+				double RNG = TickContext.random().nextDouble()*2;
 				if(RNG>=1){ this.addEntity(EntityFactory.genZombieEntity(point.getX(), point.getY()));
 				} else { this.addEntity(EntityFactory.genNPC(point.getX(), point.getY())); }
 			}
@@ -0,0 +1,143 @@
+package ecs.world;
+
+import java.util.*;
+
+/**
+ * A  hash map  from primitive long keys to
+ * objects,  using   open  addressing  with
+ * linear  probing. Unlike  a HashMap<Long,
+ * V> it never boxes its keys and allocates
+ * nothing  per entry,  which makes lookups
+ * by entity  ID cheap enough to be used in
+ * inner loops.
+ * <p>
+ * Null  values  are  not  supported (get()
+ * returns null for missing keys).
+ */
+public class LongMap<V>
+{
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys;
+	private Object[] values;
+	private int size = 0;
+
+	public LongMap()
+	{
+		keys = new long[MIN_CAPACITY];
+		values = new Object[MIN_CAPACITY];
+	}
+
+	/**
+	 * Returns the number of entries.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns the value associated with a key,
+	 * or {@code null} if there is none.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key)
+	{
+		int mask = keys.length - 1;
+
+		for (int t = hash(key) & mask; values[t] != null; t = (t + 1) & mask)
+			if (keys[t] == key) return (V)values[t];
+
+		return null;
+	}
+
+	/**
+	 * Associates a value with a key, and returns
+	 * the value previously associated with it.
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value)
+	{
+		if (value == null) throw new IllegalArgumentException("Null values are not supported.");
+		if (2 * (size + 1) > keys.length) resize(2 * keys.length);
+
+		int mask = keys.length - 1;
+		int t = hash(key) & mask;
+
+		for (; values[t] != null; t = (t + 1) & mask)
+			if (keys[t] == key)
+			{
+				V previous = (V)values[t];
+				values[t] = value;
+				return previous;
+			}
+
+		keys[t] = key;
+		values[t] = value;
+		++size;
+		return null;
+	}
+
+	/**
+	 * Removes a key, and returns the value which
+	 * was associated with it.
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key)
+	{
+		int mask = keys.length - 1;
+		int t = hash(key) & mask;
+
+		while ((values[t] != null) && (keys[t] != key)) t = (t + 1) & mask;
+		if (values[t] == null) return null;
+
+		V previous = (V)values[t];
+		values[t] = null;
+		--size;
+
+		/* Shift back the entries which probed past the hole. */
+		for (int u = (t + 1) & mask; values[u] != null; u = (u + 1) & mask)
+		{
+			int home = hash(keys[u]) & mask;
+
+			if (((u - home) & mask) >= ((u - t) & mask))
+			{
+				keys[t] = keys[u];
+				values[t] = values[u];
+				values[u] = null;
+				t = u;
+			}
+		}
+
+		return previous;
+	}
+
+	/**
+	 * Removes every entry.
+	 */
+	public void clear()
+	{
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void resize(int capacity)
+	{
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+
+		keys = new long[capacity];
+		values = new Object[capacity];
+		size = 0;
+
+		for (int t = 0; t < oldKeys.length; ++t)
+			if (oldValues[t] != null) put(oldKeys[t], (V)oldValues[t]);
+	}
+
+	private static int hash(long key)
+	{
+		key *= 0x9E3779B97F4A7C15L; /* Fibonacci hashing. */
+		return (int)(key ^ (key >>> 32));
+	}
+}
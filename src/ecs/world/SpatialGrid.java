@@ -0,0 +1,122 @@
+package ecs.world;
+
+import java.util.*;
+
+import ecs.entity.*;
+import ecs.components.*;
+
+/**
+ * A   uniform  grid   which  buckets   the
+ * entities   of   a   location   by  their
+ * position,  so that  radius queries  only
+ * need   to   look   at   the   few  cells
+ * overlapping  the query circle instead of
+ * every entity in the location.
+ * <p>
+ * Entities  without  a  Position component
+ * are  never   indexed.  The   grid  is  a
+ * snapshot:   it  must   be  rebuilt   (or
+ * updated) when entities move.
+ */
+public class SpatialGrid
+{
+	private final Map<Long, List<Entity>> cells = new HashMap<Long, List<Entity>>();
+	private final double cellSize;
+
+	/**
+	 * Creates an empty grid.
+	 *
+	 * @param cellSize The  width  and height of
+	 * a grid cell, ideally close to the typical
+	 * query radius.
+	 */
+	public SpatialGrid(double cellSize)
+	{
+		if (!(cellSize > 0)) throw new IllegalArgumentException("Cell size must be positive.");
+		this.cellSize = cellSize;
+	}
+
+	/**
+	 * Returns the size of a grid cell.
+	 */
+	public double getCellSize()
+	{
+		return cellSize;
+	}
+
+	/**
+	 * Removes every entity from the grid.
+	 */
+	public void clear()
+	{
+		cells.clear();
+	}
+
+	/**
+	 * Clears the grid and indexes  every entity
+	 * with a position.
+	 *
+	 * @param entities The entities to index.
+	 */
+	public void rebuild(Collection<Entity> entities)
+	{
+		clear();
+
+		for (Entity entity : entities)
+			if (entity.hasAll(Position.class)) insert(entity);
+	}
+
+	/**
+	 * Indexes an entity at its current position.
+	 *
+	 * @param entity The entity to index.
+	 */
+	public void insert(Entity entity)
+	{
+		Position position = entity.getComponent(Position.class);
+		long key = key(cell(position.getX()), cell(position.getY()));
+
+		List<Entity> cell = cells.get(key);
+		if (cell == null) cells.put(key, cell = new ArrayList<Entity>());
+		cell.add(entity);
+	}
+
+	/**
+	 * Returns every indexed entity within a given
+	 * distance of a point (inclusive).
+	 *
+	 * @param x The query x-coordinate.
+	 * @param y The query y-coordinate.
+	 * @param radius The query radius.
+	 *
+	 * @return Returns the matching entities.
+	 */
+	public List<Entity> queryRadius(double x, double y, double radius)
+	{
+		List<Entity> result = new ArrayList<Entity>();
+		Position center = new Position(x, y);
+
+		for (int cx = cell(x - radius); cx <= cell(x + radius); ++cx)
+			for (int cy = cell(y - radius); cy <= cell(y + radius); ++cy)
+			{
+				List<Entity> cell = cells.get(key(cx, cy));
+				if (cell == null) continue;
+
+				for (Entity entity : cell)
+					if ((entity.hasAll(Position.class)) && (entity.getComponent(Position.class).getDistance(center) <= radius))
+						result.add(entity);
+			}
+
+		return result;
+	}
+
+	private int cell(double coordinate)
+	{
+		return (int)Math.floor(coordinate / cellSize);
+	}
+
+	private static long key(int cx, int cy)
+	{
+		return ((long)cx << 32) | (cy & 0xFFFFFFFFL);
+	}
+}
@@ -28,15 +28,32 @@ public class World {
 	private transient final DeathSystem death = new DeathSystem();
 	private transient final AISystem ai = new AISystem();
 
+	// Journal files numbered below this are already included in this world (see WorldPersistence)
+	private long journalSequence = 0;
+
+	// Entity IDs from this one up have never been handed out (see IDProvider), zero if unknown
+	private long nextID = 0;
+
 	public World()
 	{
+		this(new HashSet<Location>(), new HashMap<String, PlayerRecord>());
+		//startLocation = LocationFactory.startingLocation();
+		//locations.add(startLocation);
+		locations.add(LocationFactory.startingLocation());
+	}
+
+	/**
+	 * Creates a world from existing locations and saved players, without generating
+	 * a starting location (used to build detached copies of a world).
+	 */
+	public World(Set<Location> locations, Map<String, PlayerRecord> savedPlayers)
+	{
+		this.locations = locations;
+		this.savedPlayers = savedPlayers;
 		addSystem(physics);
 		addSystem(target);
 		addSystem(ai);
 		addSystem(death);
-		//startLocation = LocationFactory.startingLocation();
-		//locations.add(startLocation);
-		locations.add(LocationFactory.startingLocation());
 	}
 
 	public PhysicsSystem getPhysics()
@@ -63,6 +80,11 @@ public class World {
 		systems.add(system);
 	}
 
+	// The systems in the order they are run, so callers can time each of them
+	public List<EntitySystem> getSystems(){
+		return Collections.unmodifiableList(systems);
+	}
+
 	public void process(Location location, double delta) {
 		for(EntitySystem system : systems){
 			system.process(this, location, delta);
@@ -130,4 +152,22 @@ public class World {
 	public void setSavedPlayers(Map<String, PlayerRecord> players){
 		savedPlayers = players;
 	}
+
+	@XmlElement
+	public long getJournalSequence(){
+		return journalSequence;
+	}
+
+	public void setJournalSequence(long sequence){
+		journalSequence = sequence;
+	}
+
+	@XmlElement
+	public long getNextID(){
+		return nextID;
+	}
+
+	public void setNextID(long id){
+		nextID = id;
+	}
 }
@@ -0,0 +1,183 @@
+package log;
+
+import java.io.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+import java.util.logging.*;
+import java.util.logging.Formatter;
+
+/**
+ * This  class writes log events to a file
+ * from its own thread. Logging threads only
+ * add events to a ring buffer, and  never
+ * wait for the file (unless they  asked to
+ * when the ring is full).
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+final class AsyncLogWriter implements Runnable
+{
+	/**
+	 * What to do when  logging while the ring
+	 * buffer is full.
+	 */
+	public enum OverflowPolicy
+	{
+		/**
+		 * The  event  is dropped,  and the number
+		 * of dropped events is logged later.
+		 */
+		DROP,
+
+		/**
+		 * The logging thread waits until there is
+		 * room in the ring buffer.
+		 */
+		BLOCK
+	}
+
+	private static final long IDLE_NANOS = 1000000;
+
+	private final LogRing ring;
+	private final OverflowPolicy policy;
+	private final Formatter formatter;
+	private final Writer output;
+
+	private final AtomicLong dropped = new AtomicLong();
+	private final Thread thread;
+	private volatile boolean running = true;
+
+	public AsyncLogWriter(String path, Formatter formatter, int capacity, OverflowPolicy policy) throws IOException
+	{
+		output = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path), "UTF-8"));
+		ring = new LogRing(capacity);
+		this.formatter = formatter;
+		this.policy = policy;
+
+		thread = new Thread(this, "Log Writer");
+		thread.setDaemon(true);
+		thread.start();
+
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				close();
+			}
+		}));
+	}
+
+	/**
+	 * Queues an event to be written.
+	 */
+	public void submit(LogEvent event)
+	{
+		if (ring.offer(event)) return;
+
+		if (policy == OverflowPolicy.DROP) dropped.incrementAndGet();
+		else
+		{
+			while ((running) && (!ring.offer(event))) Thread.yield();
+		}
+	}
+
+	/**
+	 * Writes every queued event, then stops the
+	 * writer thread and closes the file.
+	 */
+	public void close()
+	{
+		if (!running) return;
+		running = false;
+
+		LockSupport.unpark(thread);
+
+		try
+		{
+			thread.join();
+		}
+		catch (InterruptedException error)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public void run()
+	{
+		try
+		{
+			output.write(formatter.getHead(null));
+
+			while (true)
+			{
+				boolean stopping = !running;
+				boolean wrote = drain();
+
+				if (stopping) break;
+
+				/* Only flush once the ring is empty, to write in large batches. */
+				if (!wrote) output.flush();
+				if (!wrote) LockSupport.parkNanos(IDLE_NANOS);
+			}
+
+			output.write(formatter.getTail(null));
+			output.close();
+		}
+		catch (IOException error)
+		{
+			System.err.printf("Log writer failed: %s\n", error);
+		}
+		finally
+		{
+			/* Logging threads must not wait for a writer which is gone. */
+			running = false;
+		}
+	}
+
+	private boolean drain() throws IOException
+	{
+		boolean wrote = false;
+		LogEvent event;
+
+		while ((event = ring.poll()) != null)
+		{
+			write(event);
+			wrote = true;
+		}
+
+		long count = dropped.getAndSet(0);
+
+		if (count > 0)
+		{
+			LogEvent warning = new LogEvent(Level.WARNING, null, "Log", "Log ring buffer full, dropped %d event(s).", new Object[] { count });
+			write(warning);
+			wrote = true;
+		}
+
+		return wrote;
+	}
+
+	/**
+	 * Writes  an event. An  event which cannot
+	 * be formatted is reported and skipped, so
+	 * that it does not stop the writer thread.
+	 */
+	private void write(LogEvent event) throws IOException
+	{
+		String text;
+
+		try
+		{
+			text = formatter.format(event.toRecord());
+		}
+		catch (RuntimeException error)
+		{
+			System.err.printf("Log writer failed to format an event: %s\n", error);
+			return;
+		}
+
+		output.write(text);
+	}
+}
@@ -0,0 +1,183 @@
+package log;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+import java.util.logging.Formatter;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for the asynchronous log writer.
+ */
+public class AsyncLogWriterTest {
+
+	private static final int CAPACITY = 4;
+
+	/**
+	 * Writes one message per line, and holds the writer thread in the first call until released,
+	 * so that the ring can be filled up.
+	 */
+	private static class StallingFormatter extends Formatter {
+		final CountDownLatch stalled = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		@Override
+		public String format(LogRecord record){
+			stalled.countDown();
+			try{
+				release.await();
+			}
+			catch (InterruptedException e){
+				Thread.currentThread().interrupt();
+			}
+			return record.getMessage() + "\n";
+		}
+	}
+
+	private static LogEvent event(String message, Object... args){
+		return new LogEvent(Level.INFO, null, "Test", message, args);
+	}
+
+	private static List<String> lines(File file) throws IOException{
+		return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Starts a writer, and submits events until it is stalled and its ring is full.
+	 */
+	private static AsyncLogWriter stalled(File file, StallingFormatter formatter, AsyncLogWriter.OverflowPolicy policy) throws Exception{
+		AsyncLogWriter writer = new AsyncLogWriter(file.getPath(), formatter, CAPACITY, policy);
+		writer.submit(event("event %d", 0));
+		assertTrue("Writer should take the first event", formatter.stalled.await(10, TimeUnit.SECONDS));
+		for (int t = 1; t <= CAPACITY; ++t) writer.submit(event("event %d", t));
+		return writer;
+	}
+
+	@Test
+	public void testDrop() throws Exception{
+		File file = File.createTempFile("log", ".txt");
+		try{
+			StallingFormatter formatter = new StallingFormatter();
+			AsyncLogWriter writer = stalled(file, formatter, AsyncLogWriter.OverflowPolicy.DROP);
+
+			writer.submit(event("event %d", 5)); // Dropped, as the ring is full
+			writer.submit(event("event %d", 6));
+			formatter.release.countDown();
+			writer.close();
+
+			List<String> lines = lines(file);
+			assertEquals("Queued events and a warning should be written", CAPACITY + 2, lines.size());
+			for (int t = 0; t <= CAPACITY; ++t) assertEquals("Events should be written in order", "event " + t, lines.get(t));
+			assertEquals("Dropped events should be counted", "Log ring buffer full, dropped 2 event(s).", lines.get(CAPACITY + 1));
+		}
+		finally{
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testBlock() throws Exception{
+		File file = File.createTempFile("log", ".txt");
+		try{
+			StallingFormatter formatter = new StallingFormatter();
+			final AsyncLogWriter writer = stalled(file, formatter, AsyncLogWriter.OverflowPolicy.BLOCK);
+
+			Thread producer = new Thread(new Runnable(){
+				@Override
+				public void run(){
+					writer.submit(event("event %d", CAPACITY + 1));
+				}
+			});
+			producer.start();
+			producer.join(200);
+			assertTrue("Producer should wait while the ring is full", producer.isAlive());
+
+			formatter.release.countDown();
+			producer.join(10000);
+			assertFalse("Producer should go on once there is room", producer.isAlive());
+			writer.close();
+
+			List<String> lines = lines(file);
+			assertEquals("No event should be dropped", CAPACITY + 2, lines.size());
+			for (int t = 0; t <= CAPACITY + 1; ++t) assertEquals("Events should be written in order", "event " + t, lines.get(t));
+		}
+		finally{
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testArguments() throws Exception{
+		File file = File.createTempFile("log", ".txt");
+		try{
+			StallingFormatter formatter = new StallingFormatter();
+			AsyncLogWriter writer = new AsyncLogWriter(file.getPath(), formatter, CAPACITY, AsyncLogWriter.OverflowPolicy.DROP);
+			writer.submit(event("first"));
+			assertTrue("Writer should take the first event", formatter.stalled.await(10, TimeUnit.SECONDS));
+
+			StringBuilder state = new StringBuilder("before");
+			writer.submit(event("%s %d", state, 42));
+			state.replace(0, state.length(), "after"); // Changed before the writer gets to it
+			formatter.release.countDown();
+			writer.close();
+
+			assertEquals("Arguments should be captured when logged", Arrays.asList("first", "before 42"), lines(file));
+		}
+		finally{
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testFormatFailure() throws Exception{
+		File file = File.createTempFile("log", ".txt");
+		try{
+			Formatter formatter = new Formatter(){
+				@Override
+				public String format(LogRecord record){
+					if (record.getMessage().equals("broken")) throw new IllegalStateException("Cannot format");
+					return record.getMessage() + "\n";
+				}
+			};
+			AsyncLogWriter writer = new AsyncLogWriter(file.getPath(), formatter, CAPACITY, AsyncLogWriter.OverflowPolicy.BLOCK);
+
+			// Blocking producers would wait forever if the writer thread had died
+			for (int t = 0; t < CAPACITY * 4; ++t) writer.submit(event(t % 2 == 0 ? "broken" : "event %d", t));
+			writer.close();
+
+			List<String> lines = lines(file);
+			assertEquals("Only the broken events should be skipped", CAPACITY * 2, lines.size());
+			for (int t = 0; t < lines.size(); ++t) assertEquals("Events should be written in order", "event " + (t * 2 + 1), lines.get(t));
+		}
+		finally{
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testEventFields() throws Exception{
+		File file = File.createTempFile("log", ".txt");
+		try{
+			AsyncLogWriter writer = new AsyncLogWriter(file.getPath(), new Log.JSONFormatter(), CAPACITY, AsyncLogWriter.OverflowPolicy.BLOCK);
+			long before = System.currentTimeMillis();
+			writer.submit(event("message"));
+			long after = System.currentTimeMillis();
+			writer.close();
+
+			// The time and thread are the logging thread's, not the writer's
+			String line = lines(file).get(0);
+			assertTrue("Thread should be the logging thread", line.contains(",\"thread\":" + Thread.currentThread().getId() + ","));
+			long time = Long.parseLong(line.substring(line.indexOf(':') + 1, line.indexOf(',')));
+			assertTrue("Time should be when the event was logged", (time >= before) && (time <= after));
+		}
+		finally{
+			file.delete();
+		}
+	}
+}
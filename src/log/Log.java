@@ -9,6 +9,13 @@ import org.apache.commons.lang3.StringEscapeUtils;;
 /**
  * This is  a simple HTML logger  which can
  * be used to easily log program events.
+ * <p>
+ * Once set up,  log events are handed to a
+ * writer thread through a bounded ring buffer,
+ * and their messages are only formatted by
+ * that thread, so logging never waits for
+ * the disk. The log can be written as HTML,
+ * plain text or JSON lines.
  * 
  * @author Thomas Beneteau (300250968)
  */
@@ -17,34 +24,65 @@ public final class Log
 	private final static String defaultPath = "log.html";
 	private final static Logger logger = Logger.global;
 
+	private final static int defaultCapacity = 8192;
+
+	/**
+	 * The log writer, or {@code null} if the
+	 * logger has not been set up (events then
+	 * go to the standard logger).
+	 */
+	private static volatile AsyncLogWriter writer = null;
+	private static volatile int minimumLevel = Level.ALL.intValue();
+
 	/**
 	 * Initializes   the  logger   instance  to
 	 * output formatted log  records to a given
 	 * file. This  should be called  before any
 	 * logging occurs.
+	 * <p>
+	 * The log format depends on the file's
+	 * extension: HTML for {@code .html}, JSON
+	 * lines for {@code .jsonl} and plain text
+	 * otherwise.
 	 *
 	 * @param target The program being logged.
 	 * @param path The file to which to log.
+	 * @param capacity The number of events which
+	 * can be queued for the writer thread.
+	 * @param block Whether  to wait rather than
+	 * drop events when the queue is full.
 	 */
-	public final static void setupLogger(final String target, final String path) throws IOException
+	public final static void setupLogger(final String target, final String path, final int capacity, final boolean block) throws IOException
 	{
-		final FileHandler handler = new FileHandler(path, false);
-		handler.setFormatter(new HTMLFormatter(target));
-		logger.setUseParentHandlers(false);
-		logger.addHandler(handler);
-		logger.setLevel(Level.ALL);
+		final Formatter formatter;
+
+		if ((path.endsWith(".html")) || (path.endsWith(".htm"))) formatter = new HTMLFormatter(target);
+		else if ((path.endsWith(".jsonl")) || (path.endsWith(".json"))) formatter = new JSONFormatter();
+		else formatter = new TextFormatter();
+
+		writer = new AsyncLogWriter(path, formatter, capacity, block ? AsyncLogWriter.OverflowPolicy.BLOCK
+																	 : AsyncLogWriter.OverflowPolicy.DROP);
+		minimumLevel = Level.ALL.intValue();
 	}
 
 	/**
 	 * Convenience  setup  method which  writes
 	 * the  log  to  a   default  file  in  the
 	 * program's working directory.
+	 * <p>
+	 * The  defaults can be overridden with the
+	 * {@code log.file},  {@code log.capacity}
+	 * and {@code log.overflow} ({@code drop} or
+	 * {@code block}) system properties.
 	 *
 	 * @param target The program being logged.
 	 */
 	public final static void setupLogger(final String target) throws IOException
 	{
-		setupLogger(target, defaultPath);
+		final String path = System.getProperty("log.file", defaultPath);
+		final int capacity = Integer.getInteger("log.capacity", defaultCapacity);
+		final boolean block = System.getProperty("log.overflow", "drop").equalsIgnoreCase("block");
+		setupLogger(target, path, capacity, block);
 	}
 
 	/**
@@ -52,52 +90,57 @@ public final class Log
 	 */
 	public final static void disableLogger()
 	{
+		minimumLevel = Level.OFF.intValue();
 		logger.setLevel(Level.OFF);
 	}
 
 	private final static void log(final Level level, final Throwable error, final String component, final String message, final Object... args)
 	{
-		logger.logp(level, component, null, String.format(message, args), error);
+		if (level.intValue() < minimumLevel) return;
+
+		final AsyncLogWriter current = writer;
+		if (current != null) current.submit(new LogEvent(level, error, component, message, args));
+		else logger.logp(level, component, null, new LogEvent(level, error, component, message, args).formatMessage(), error);
 	}
 
 	public final static void severe(final String component, final String message, final Object... args)
 	{
-		log(Level.SEVERE, null, component, String.format(message, args));
+		log(Level.SEVERE, null, component, message, args);
 	}
 
 	public final static void severe(final Throwable error, final String component, final String message, final Object... args)
 	{
-		log(Level.SEVERE, error, component, String.format(message, args));
+		log(Level.SEVERE, error, component, message, args);
 	}
 
 	public final static void warning(final String component, final String message, final Object... args)
 	{
-		log(Level.WARNING, null, component, String.format(message, args));
+		log(Level.WARNING, null, component, message, args);
 	}
 
 	public final static void warning(final Throwable error, final String component, final String message, final Object... args)
 	{
-		log(Level.WARNING, error, component, String.format(message, args));
+		log(Level.WARNING, error, component, message, args);
 	}
 
 	public final static void info(final String component, final String message, final Object... args)
 	{
-		log(Level.INFO, null, component, String.format(message, args));
+		log(Level.INFO, null, component, message, args);
 	}
 
 	public final static void info(final Throwable error, final String component, final String message, final Object... args)
 	{
-		log(Level.INFO, error, component, String.format(message, args));
+		log(Level.INFO, error, component, message, args);
 	}
 
 	public final static void debug(final String component, final String message, final Object... args)
 	{
-		log(Level.FINER, null, component, String.format(message, args));
+		log(Level.FINER, null, component, message, args);
 	}
 
 	public final static void debug(final Throwable error, final String component, final String message, final Object... args)
 	{
-		log(Level.FINER, error, component, String.format(message, args));
+		log(Level.FINER, error, component, message, args);
 	}
 
 	/**
@@ -119,7 +162,7 @@ public final class Log
 		@Override
 		public final String format(final LogRecord record)
 		{
-			final StringBuffer log = new StringBuffer(65536);
+			final StringBuilder log = new StringBuilder(256);
 			if((row += 1) % 2 == 0) log.append("<tr>");
 			else log.append("<tr class=\"alt\">");
 
@@ -135,7 +178,7 @@ public final class Log
 
 		private final String formatRecordTime(final LogRecord record)
 		{
-			return escape(getFormattedDate(startTime, record.getMillis()));
+			return escape(getFormattedDate(startTime, timeOf(record)));
 		}
 
 		private final String formatRecordComponent(final LogRecord record)
@@ -216,6 +259,99 @@ public final class Log
 		}
 	}
 	
+	/**
+	 * This formatter writes one plain line of
+	 * text per log record.
+	 */
+	public static class TextFormatter extends Formatter
+	{
+		private final long startTime = System.currentTimeMillis();
+
+		@Override
+		public final String format(final LogRecord record)
+		{
+			final StringBuilder log = new StringBuilder(128);
+			log.append(getFormattedDate(startTime, timeOf(record))).append(' ');
+			log.append(record.getLevel().getName()).append(' ');
+			log.append('[').append(record.getSourceClassName()).append("] ");
+			log.append(record.getMessage());
+			if (record.getThrown() != null) log.append(" (").append(record.getThrown()).append(')');
+			return log.append('\n').toString();
+		}
+	}
+
+	/**
+	 * This formatter writes one JSON object per
+	 * line and per log record, for consumption
+	 * by log processing tools.
+	 */
+	public static class JSONFormatter extends Formatter
+	{
+		@Override
+		public final String format(final LogRecord record)
+		{
+			final StringBuilder log = new StringBuilder(128);
+			log.append("{\"time\":").append(timeOf(record));
+			log.append(",\"level\":\"").append(record.getLevel().getName()).append('"');
+			log.append(",\"thread\":").append(threadOf(record));
+			log.append(",\"component\":"); quote(log, record.getSourceClassName());
+			log.append(",\"message\":"); quote(log, record.getMessage());
+			if (record.getThrown() != null) { log.append(",\"error\":"); quote(log, record.getThrown().toString()); }
+			return log.append("}\n").toString();
+		}
+
+		private final void quote(final StringBuilder log, final String text)
+		{
+			if (text == null)
+			{
+				log.append("null");
+				return;
+			}
+
+			log.append('"');
+
+			for (int t = 0; t < text.length(); ++t)
+			{
+				final char c = text.charAt(t);
+
+				switch (c)
+				{
+					case '"':  log.append("\\\""); break;
+					case '\\': log.append("\\\\"); break;
+					case '\n': log.append("\\n"); break;
+					case '\r': log.append("\\r"); break;
+					case '\t': log.append("\\t"); break;
+					default:
+						if (c < 0x20) log.append(String.format("\\u%04x", (int)c));
+						else log.append(c);
+				}
+			}
+
+			log.append('"');
+		}
+	}
+
+	/**
+	 * Returns the time a record was logged (for
+	 * events  queued for  the writer, the time
+	 * they were created).
+	 */
+	private static final long timeOf(final LogRecord record)
+	{
+		if (record instanceof LogEvent.Record) return ((LogEvent.Record)record).getTime();
+		else return record.getMillis();
+	}
+
+	/**
+	 * Returns the ID of the thread which logged
+	 * a record, or {@code null} if unknown.
+	 */
+	private static final Long threadOf(final LogRecord record)
+	{
+		if (record instanceof LogEvent.Record) return ((LogEvent.Record)record).getThread();
+		else return null;
+	}
+
 	public static final String getFormattedDate(final long startTime, final long time)
 	{
 		final long MS_PER_HOUR   = 1000 * 60 * 60;
@@ -0,0 +1,135 @@
+package log;
+
+import java.util.*;
+import java.util.logging.*;
+
+/**
+ * This is a log event as it is queued for
+ * the log writer. The message is only
+ * formatted by the writer thread, so any
+ * argument which might change  (that is,
+ * anything but strings, boxed primitives
+ * and enums) is converted to a string when
+ * the event is created, on the logging
+ * thread.
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+final class LogEvent
+{
+	private final Level level;
+	private final long time;
+	private final long threadID;
+	private final String component;
+	private final String message;
+	private final Object[] args;
+	private final Throwable error;
+
+	public LogEvent(Level level, Throwable error, String component, String message, Object[] args)
+	{
+		this.threadID = Thread.currentThread().getId();
+		this.time = System.currentTimeMillis();
+		this.component = component;
+		this.message = message;
+		this.level = level;
+		this.error = error;
+		this.args = snapshot(args);
+	}
+
+	/**
+	 * Returns  the arguments, with every one of
+	 * them which might change converted to a
+	 * string. The array is only copied if one
+	 * needs converting.
+	 */
+	private static Object[] snapshot(Object[] args)
+	{
+		if (args == null) return null;
+
+		Object[] copy = args;
+
+		for (int t = 0; t < args.length; ++t)
+		{
+			if (isImmutable(args[t])) continue;
+
+			if (copy == args) copy = args.clone();
+			copy[t] = String.valueOf(args[t]);
+		}
+
+		return copy;
+	}
+
+	private static boolean isImmutable(Object arg)
+	{
+		return (arg == null) || (arg instanceof String) || (arg instanceof Integer) || (arg instanceof Long)
+			|| (arg instanceof Double) || (arg instanceof Float) || (arg instanceof Short) || (arg instanceof Byte)
+			|| (arg instanceof Character) || (arg instanceof Boolean) || (arg instanceof Enum);
+	}
+
+	/**
+	 * Formats the message with its arguments.
+	 */
+	public String formatMessage()
+	{
+		try
+		{
+			return String.format(message, args);
+		}
+		catch (IllegalFormatException exception)
+		{
+			return message; /* Still better than nothing. */
+		}
+	}
+
+	/**
+	 * Converts this event to a standard log
+	 * record, formatting its message.
+	 */
+	public Record toRecord()
+	{
+		Record record = new Record(level, formatMessage(), time, threadID);
+		record.setSourceClassName(component);
+		record.setThrown(error);
+		return record;
+	}
+
+	/**
+	 * This is a log record which keeps the time
+	 * and  thread of its event,  as they were
+	 * when it was logged (the standard record
+	 * only has deprecated setters for  them,
+	 * and an {@code int} thread ID).
+	 */
+	static final class Record extends LogRecord
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final long time;
+		private final long threadID;
+
+		private Record(Level level, String message, long time, long threadID)
+		{
+			super(level, message);
+			this.threadID = threadID;
+			this.time = time;
+		}
+
+		/**
+		 * Returns the time the event was logged, in
+		 * milliseconds since the epoch.
+		 */
+		public long getTime()
+		{
+			return time;
+		}
+
+		/**
+		 * Returns the ID of the thread which logged
+		 * the event.
+		 */
+		public long getThread()
+		{
+			return threadID;
+		}
+	}
+}
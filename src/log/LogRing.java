@@ -0,0 +1,100 @@
+package log;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * This  is a bounded, lock-free queue of log
+ * events, which any number of threads may
+ * add to and a single thread  (the log
+ * writer) removes from.
+ * <p>
+ * Every slot  has a sequence  number which
+ * tells producers  whether it is  free for
+ * the current lap around the ring, and the
+ * consumer whether it has been filled, so
+ * producers only contend on  the  tail
+ * counter and never block.
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+final class LogRing
+{
+	private final AtomicReferenceArray<LogEvent> slots;
+	private final AtomicLongArray sequences;
+	private final AtomicLong tail = new AtomicLong();
+	private final int mask;
+
+	/**
+	 * Only accessed by the consumer.
+	 */
+	private long head = 0;
+
+	/**
+	 * Creates a ring.
+	 *
+	 * @param capacity  The  capacity, which is
+	 * rounded up to a power of two.
+	 */
+	public LogRing(int capacity)
+	{
+		if (capacity <= 0) throw new IllegalArgumentException("Log ring capacity must be positive.");
+
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) size <<= 1;
+
+		slots = new AtomicReferenceArray<LogEvent>(size);
+		sequences = new AtomicLongArray(size);
+		mask = size - 1;
+
+		for (int t = 0; t < size; ++t) sequences.set(t, t);
+	}
+
+	/**
+	 * Adds an event, unless the ring is full.
+	 *
+	 * @return Returns {@code false} if the ring
+	 * is full.
+	 */
+	public boolean offer(LogEvent event)
+	{
+		long position = tail.get();
+
+		while (true)
+		{
+			int index = (int)(position & mask);
+			long difference = sequences.get(index) - position;
+
+			if (difference == 0)
+			{
+				if (tail.compareAndSet(position, position + 1))
+				{
+					slots.lazySet(index, event);
+					sequences.set(index, position + 1); /* Publishes the slot. */
+					return true;
+				}
+			}
+			else if (difference < 0) return false;
+
+			position = tail.get();
+		}
+	}
+
+	/**
+	 * Removes the oldest event. This must only
+	 * be called by the consumer thread.
+	 *
+	 * @return Returns the event, or {@code null}
+	 * if the ring is empty.
+	 */
+	public LogEvent poll()
+	{
+		int index = (int)(head & mask);
+		if (sequences.get(index) != head + 1) return null;
+
+		LogEvent event = slots.get(index);
+		slots.lazySet(index, null);
+		sequences.set(index, head + mask + 1); /* Frees the slot for the next lap. */
+		head += 1;
+		return event;
+	}
+}
@@ -0,0 +1,86 @@
+package log;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for the log ring buffer.
+ */
+public class LogRingTest {
+
+	private static LogEvent event(int producer, int number){
+		return new LogEvent(Level.INFO, null, "Test", "%d %d", new Object[] { producer, number });
+	}
+
+	@Test
+	public void testOverflow() throws Exception{
+		LogRing ring = new LogRing(3); // Rounded up to 4
+		LogEvent[] events = new LogEvent[4];
+
+		for (int t = 0; t < 4; ++t){
+			events[t] = event(0, t);
+			assertTrue("Ring should accept events until full", ring.offer(events[t]));
+		}
+		assertFalse("Full ring should refuse events", ring.offer(event(0, 4)));
+
+		assertSame("Oldest event should come first", events[0], ring.poll());
+		LogEvent next = event(0, 5);
+		assertTrue("Polled slot should be reused", ring.offer(next));
+		assertFalse("Ring should be full again", ring.offer(event(0, 6)));
+
+		for (int t = 1; t < 4; ++t) assertSame("Events should come in order", events[t], ring.poll());
+		assertSame("Events should come in order across laps", next, ring.poll());
+		assertNull("Empty ring should return nothing", ring.poll());
+	}
+
+	@Test
+	public void testConcurrent() throws Exception{
+		final int producers = 4, count = 20000;
+		final LogRing ring = new LogRing(64);
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(producers);
+
+		try{
+			List<Future<?>> tasks = new ArrayList<Future<?>>();
+			for (int p = 0; p < producers; ++p){
+				final int producer = p;
+				tasks.add(pool.submit(new Callable<Void>(){
+					@Override
+					public Void call() throws Exception{
+						start.await();
+						for (int t = 0; t < count; ++t)
+							while (!ring.offer(event(producer, t))) Thread.yield();
+						return null;
+					}
+				}));
+			}
+
+			start.countDown();
+
+			// Every event should arrive exactly once, and in order for each producer
+			int[] next = new int[producers];
+			for (int received = 0; received < producers * count; ){
+				LogEvent event = ring.poll();
+				if (event == null){
+					Thread.yield();
+					continue;
+				}
+				String[] fields = event.formatMessage().split(" ");
+				int producer = Integer.parseInt(fields[0]);
+				assertEquals("Events of a producer should come in order", next[producer]++, Integer.parseInt(fields[1]));
+				++received;
+			}
+
+			for (Future<?> task : tasks) task.get();
+			assertNull("Ring should be empty", ring.poll());
+		}
+		finally{
+			pool.shutdownNow();
+		}
+	}
+}
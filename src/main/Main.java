@@ -1,6 +1,8 @@
 package main;
 
 import network.server.front_end.ControlPanel;	/* Server entry point. */
+import network.client.bot.LoadGenerator;		/* Load generator entry point. */
+import network.server.back_end.TickReplayer;	/* Tick replayer entry point. */
 import userinterface.GameStateManager;			/* Client entry point. */
 
 import log.Log;
@@ -12,14 +14,19 @@ import log.Log;
  * the   client's  user   interface,  while
  * specifying   {@code  --server}   on  the
  * command-line  will run  the game  server
- * instead.
+ * instead, {@code --bots} will run the
+ * headless load generator and {@code
+ * --replay} will replay recorded ticks.
  */
 public class Main
 {
 	/**
 	 * If  the first  command-line argument  is
 	 * {@code --server}, runs the built-in game
-	 * server, otherwise runs the game client.
+	 * server,  if  it is {@code --bots},  runs
+	 * the load generator, if it is {@code
+	 * --replay}, replays recorded ticks, and
+	 * otherwise runs the game client.
 	 *
 	 * @param args The command-line arguments.
 	 */
@@ -32,6 +39,16 @@ public class Main
 				Log.setupLogger("Game Server");
 				ControlPanel.main(strip(args));
 			}
+			else if ((args.length != 0) && (args[0].equals("--bots")))
+			{
+				Log.setupLogger("Load Generator");
+				LoadGenerator.main(strip(args));
+			}
+			else if ((args.length != 0) && (args[0].equals("--replay")))
+			{
+				Log.setupLogger("Tick Replayer");
+				TickReplayer.main(strip(args));
+			}
 			else
 			{
 				Log.disableLogger();
@@ -1,12 +1,10 @@
 package network;
 
-import java.io.*;
-import java.util.zip.*;
-
 import ecs.world.*;
 import ecs.entity.*;
 
 import network.packet.*;
+import network.packet.codec.*;
 import network.packet.transport.*;
 
 import log.Log;
@@ -45,9 +43,18 @@ public class NetClient
 
 	private boolean locationChanged = false;
 	private Location newLocation;
+
+	/**
+	 * The format used to encode outgoing packets.
+	 * Every client starts with Java serialization
+	 * and  switches to  the  binary codec once it
+	 * has been negotiated at login.
+	 */
+	private volatile PacketCodec.Format format = PacketCodec.Format.SERIALIZED;
 	
 	/**
-	 * Dummy implementation of the NetClient for test purposes.
+	 * Dummy implementation of the NetClient for test purposes
+	 * (and replays), packets sent to it are discarded.
 	 */
 	public NetClient(String name, Location location)
 	{
@@ -60,6 +67,7 @@ public class NetClient
 	{
 		socket.setPacketWriter(writer);
 		socket.setPacketReader(reader);
+		reader.setSocket(socket);
 		this.socket = socket;
 	}
 
@@ -150,6 +158,15 @@ public class NetClient
 		if (this.location != null) playerEntity.setRemoved();
 	}
 
+	/**
+	 * Returns the location the player is moving
+	 * to this tick, or null if it is not moving.
+	 */
+	public Location getNewLocation()
+	{
+		return newLocation;
+	}
+
 	/**
 	 * Returns the player's current location.
 	 */
@@ -194,6 +211,62 @@ public class NetClient
 		return reader.getThroughput();
 	}
 
+	/**
+	 * Returns the  total number of bytes read
+	 * from the remote host.
+	 */
+	public long getBytesReceived()
+	{
+		return socket.getBytesRead();
+	}
+
+	/**
+	 * Returns the  average round-trip time to
+	 * the remote host in seconds, or NaN if it
+	 * has not been measured yet.
+	 */
+	public double getLatency()
+	{
+		return reader.getLatency();
+	}
+
+	/**
+	 * Returns the average offset of the remote
+	 * host's  clock from ours in seconds, or
+	 * NaN if it has not been measured yet.
+	 */
+	public double getClockOffset()
+	{
+		return reader.getClockOffset();
+	}
+
+	/**
+	 * Pings the  remote host to measure the
+	 * round-trip time, at most once a second.
+	 */
+	public void ping()
+	{
+		reader.ping();
+	}
+
+	/**
+	 * Sets the format used to encode packets sent
+	 * to the remote host.
+	 */
+	public void setPacketFormat(PacketCodec.Format format)
+	{
+		this.format = format;
+	}
+
+	/**
+	 * Returns the format used to encode packets
+	 * sent to the remote host.
+	 */
+	public PacketCodec.Format getPacketFormat()
+	{
+		return format;
+	}
+
 	/**
 	 * Returns a formatted representation of the client.
 	 */
@@ -207,41 +280,70 @@ public class NetClient
 	/**
 	 * Utility  method which  encodes a  {@code
 	 * NetPacket}  into  a (short)  byte  array
-	 * using serialization,  and then  sends it
-	 * over the  network to be received  by the
-	 * remote host.
-	 * <p>
-	 * Compresses outgoing packets.
+	 * using the negotiated packet format, and
+	 * then sends  it over the network  to be
+	 * received by the remote host.
 	 *
 	 * @param packet The packet to send.
 	 */
 	public void sendPacket(NetPacket packet)
 	{
+		if (socket == null) return;
+
+		try
+		{
+			socket.write(PacketCodec.encode(packet, format));
+		}
+		catch (Exception error)
+		{
+			Log.warning(error, COMPONENT, "Serialization error.");
+		}
+	}
+
+	/**
+	 * Sends  an  already  encoded packet to the
+	 * remote host. The packet's byte array is
+	 * shared with other clients, and a reference
+	 * is held until the socket  reports it as
+	 * sent (see {@code packetSent}).
+	 *
+	 * @param packet The encoded packet to send.
+	 */
+	public void sendPacket(EncodedPacket packet)
+	{
+		if (socket == null) return;
+		packet.retain();
+
 		try
 		{
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-			GZIPOutputStream zip = new GZIPOutputStream(bytes);
-			ObjectOutputStream stream = new ObjectOutputStream(zip);
-			stream.writeObject(packet);
-			stream.close();
-			zip.close();
-
-			socket.write(bytes.toByteArray());
-			bytes.close();
+			if (!socket.write(packet.getBytes(format), packet)) packet.release();
 		}
 		catch (Exception error)
 		{
+			packet.release();
 			Log.warning(error, COMPONENT, "Serialization error.");
 		}
 	}
 
+	/**
+	 * Sends a packet which  has already been
+	 * encoded in this client's packet format.
+	 *
+	 * @param data The encoded packet.
+	 */
+	public void sendEncodedPacket(byte[] data)
+	{
+		if (socket == null) return;
+		socket.write(data);
+	}
+
 	/**
 	 * Utility  method  which   decodes  a  raw
 	 * network   packet    into   a   NetPacket
 	 * instance, to be parsed and dispatched by
 	 * the client or server.
 	 * <p>
-	 * Decompresses incoming packets.
+	 * Accepts both binary and serialized packets.
 	 *
 	 * @param data The raw network data.
 	 *
@@ -251,12 +353,7 @@ public class NetClient
 	{
 		try
 		{
-			ByteArrayInputStream bytes = new ByteArrayInputStream(data);
-			GZIPInputStream zip = new GZIPInputStream(bytes);
-			ObjectInputStream stream = new ObjectInputStream(zip);
-			NetPacket packet = (NetPacket)stream.readObject();
-			stream.close();
-			return packet;
+			return PacketCodec.decode(data);
 		}
 		catch (Exception error)
 		{
@@ -9,6 +9,7 @@ import ecs.components.Type.*;
 
 import network.*;
 import network.packet.*;
+import network.packet.codec.*;
 import network.packet.message.*;
 import network.packet.message.LoginMessage.*;
 
@@ -29,6 +30,7 @@ public class GameClient
 	private final ClientObserver clientObserver;
 	private final PlayerObserver observer;
 	private final NIOService service;
+	private final boolean ownsService;
 	private NIOSocket socket;
 	private NetClient client;
 
@@ -40,6 +42,21 @@ public class GameClient
 		ServiceLoop.execute(service, observer);
 		this.clientObserver = clientObserver;
 		this.observer = observer;
+		this.ownsService = true;
+	}
+
+	/**
+	 * Creates a game client which shares an
+	 * already running network service  with
+	 * other clients, so that many clients can
+	 * run from a single network thread.
+	 */
+	public GameClient(ClientObserver clientObserver, NIOService service)
+	{
+		this.observer = new PlayerObserver();
+		this.clientObserver = clientObserver;
+		this.ownsService = false;
+		this.service = service;
 	}
 
 	/**
@@ -59,7 +76,8 @@ public class GameClient
 	 */
 	public void close()
 	{
-		service.close();
+		if (ownsService) service.close();
+		else if (socket != null) socket.close();
 	}
 
 	/**
@@ -148,7 +166,16 @@ public class GameClient
 					break;
 
 				case UPDATE:
-					handleUpdate((UpdatePacket)packet);
+					if (packet instanceof SnapshotPacket)
+					{
+						handleSnapshot((SnapshotPacket)packet);
+						if (clientObserver.game != null) clientObserver.game.snapshotPacket((SnapshotPacket)packet);
+					}
+					else
+					{
+						handleUpdate((UpdatePacket)packet);
+						if (clientObserver.game != null) clientObserver.game.updatePacket((UpdatePacket)packet);
+					}
 					break;
 
 				default:
@@ -196,6 +223,7 @@ public class GameClient
 	{
 		if (message.getLoginStatus() == LoginStatus.LOGGED_IN)
 		{
+			client.setPacketFormat(PacketCodec.negotiate(message.getCodecVersion()));
 			client.setName(message.getPlayerName());
 			clientObserver.login.loginSucceeded(client);
 		}
@@ -210,13 +238,14 @@ public class GameClient
 				if ((entity.getType() == EntityType.PLAYER) && (entity.getName().equals(client.getName())))
 				{
 					client.setPlayerEntity(entity);
-					System.out.println(entity);
 					break;
 				}
 
 			client.changeLocation(message.newLocation);
 			client.updateLocation();
 		}
+
+		if (clientObserver.game != null) clientObserver.game.locationChangePacket(message.newLocation);
 	}
 
 	private void handlePublicMessage(PublicMessage message)
@@ -229,6 +258,22 @@ public class GameClient
 		clientObserver.chat.privateMessageReceived(message.getSource(), message.getMessage());
 	}
 
+	private void handleSnapshot(SnapshotPacket packet)
+	{
+		Location location = client.getLocation();
+
+		if (location == null)
+		{
+			System.out.println("Got snapshot packet, but no location to update!");
+			return;
+		}
+
+		synchronized (location)
+		{
+			for (UpdatePacket update : packet.updates) handleUpdate(update);
+		}
+	}
+
 	private void handleUpdate(UpdatePacket packet)
 	{
 		Location location = client.getLocation();
@@ -267,6 +312,12 @@ public class GameClient
 							entity.removeComponent(componentClass);
 					}
 
+					if (packet.deltas != null)
+					{
+						for (ComponentDelta delta : packet.deltas)
+							delta.applyTo(entity);
+					}
+
 					break;
 
 				case DELETE:
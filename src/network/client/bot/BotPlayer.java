@@ -0,0 +1,242 @@
+package network.client.bot;
+
+import java.io.*;
+import java.util.*;
+
+import ecs.world.*;
+import ecs.entity.*;
+import ecs.components.*;
+
+import network.*;
+import network.client.*;
+import network.client.observers.*;
+import network.packet.*;
+import network.packet.action.*;
+import network.packet.action.MovementAction.*;
+import network.packet.message.*;
+import network.packet.message.LoginMessage.*;
+
+import log.Log;
+import naga.*;
+
+/**
+ * This is a headless virtual player, which
+ * logs into a game server like a  real one
+ * and  then  follows  a  script  of moves
+ * and shots. The script is  generated from
+ * a seed, so a given bot always walks and
+ * shoots the same way.
+ * <p>
+ * The bot is driven by its load generator,
+ * which calls {@code move}  and {@code shoot}
+ * at the configured rates.
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+public class BotPlayer implements GeneralObserver, LoginObserver, GameObserver, ChatObserver
+{
+	private static final String COMPONENT = "Bot Player";
+
+	/**
+	 * The  bot walks in straight lines of a
+	 * random  number of steps between these
+	 * two bounds.
+	 */
+	private static final int MIN_STEPS = 5;
+	private static final int MAX_STEPS = 20;
+
+	private final String name;
+	private final GameClient client;
+	private final BotStatistics statistics;
+
+	/**
+	 * Moves and shots are scripted separately,
+	 * as they are sent from different threads.
+	 */
+	private final Random moves;
+	private final Random shots;
+
+	private volatile boolean active = false;
+	private volatile boolean failed = false;
+	private volatile long lastSnapshot = 0;
+
+	/**
+	 * The current leg of the walk, which is only
+	 * accessed by the thread moving the bot.
+	 */
+	private Direction direction = Direction.UP;
+	private int steps = 0;
+
+	/**
+	 * Creates a bot.
+	 *
+	 * @param name The bot's player name.
+	 * @param seed The seed of its script.
+	 * @param service  The network service the
+	 * bot's connection runs on.
+	 * @param statistics The statistics to update.
+	 */
+	public BotPlayer(String name, long seed, NIOService service, BotStatistics statistics)
+	{
+		this.client = new GameClient(new ClientObserver(this, this, this, this), service);
+		this.moves = new Random(seed);
+		this.shots = new Random(~seed);
+		this.statistics = statistics;
+		this.name = name;
+	}
+
+	/**
+	 * Connects to the server and logs in.
+	 */
+	public void connect(String host, int port) throws IOException
+	{
+		client.connect(host, port);
+		client.sendLogin(new LoginMessage(name));
+		statistics.connected.incrementAndGet();
+	}
+
+	/**
+	 * Disconnects from the server.
+	 */
+	public void close()
+	{
+		active = false;
+		client.close();
+	}
+
+	/**
+	 * Sends the next movement of the script.
+	 */
+	public void move()
+	{
+		if (!isPlaying()) return;
+
+		if (steps-- <= 0)
+		{
+			direction = Direction.values()[moves.nextInt(Direction.values().length)];
+			steps = MIN_STEPS + moves.nextInt(MAX_STEPS - MIN_STEPS + 1);
+		}
+
+		client.sendAction(new MovementAction(direction));
+		statistics.actions.incrementAndGet();
+	}
+
+	/**
+	 * Shoots somewhere around the bot.
+	 */
+	public void shoot()
+	{
+		if (!isPlaying()) return;
+
+		Entity player = client.getPlayerEntity();
+		Position position = player.getComponent(Position.class);
+		if (position == null) return;
+
+		double x = position.getX() + shots.nextDouble() - 0.5;
+		double y = position.getY() + shots.nextDouble() - 0.5;
+
+		client.sendPacket(new PlayerShootAction(x, y));
+		statistics.actions.incrementAndGet();
+	}
+
+	/**
+	 * Pings the server to measure the round-trip
+	 * time.
+	 */
+	public void ping()
+	{
+		if (active) client.getClient().ping();
+	}
+
+	/**
+	 * Returns the bot's round-trip time to the
+	 * server in seconds, or NaN if unknown.
+	 */
+	public double getLatency()
+	{
+		return (active ? client.getClient().getLatency() : Double.NaN);
+	}
+
+	/**
+	 * Returns the number of bytes the bot has
+	 * received from the server.
+	 */
+	public long getBytesReceived()
+	{
+		return (client.getClient() == null ? 0 : client.getClient().getBytesReceived());
+	}
+
+	private boolean isPlaying()
+	{
+		return (active) && (client.getCurrentLocation() != null) && (client.getPlayerEntity() != null);
+	}
+
+	@Override
+	public void connectionLost(Exception exception)
+	{
+		Log.info(exception, COMPONENT, "Bot '%s' lost its connection.", name);
+
+		/* A bot dropped before logging in was refused. */
+		if (active) statistics.disconnected.incrementAndGet();
+		else if (!failed) statistics.failed.incrementAndGet();
+
+		active = false;
+		failed = true;
+	}
+
+	@Override
+	public void loginSucceeded(NetClient client)
+	{
+		statistics.loggedIn.incrementAndGet();
+		active = true;
+	}
+
+	@Override
+	public void loginFailed(NetClient client, LoginStatus status)
+	{
+		Log.warning(COMPONENT, "Bot '%s' failed to log in (%s).", name, status);
+		statistics.failed.incrementAndGet();
+		failed = true;
+	}
+
+	@Override
+	public void updatePacket(UpdatePacket packet)
+	{
+		statistics.updates.incrementAndGet();
+	}
+
+	@Override
+	public void snapshotPacket(SnapshotPacket packet)
+	{
+		long now = System.nanoTime();
+		if (lastSnapshot != 0) statistics.snapshotIntervals.record(now - lastSnapshot);
+		lastSnapshot = now;
+
+		statistics.updates.addAndGet(packet.updates.size());
+		statistics.snapshots.incrementAndGet();
+	}
+
+	@Override
+	public void locationChangePacket(Location location)
+	{
+		lastSnapshot = 0; /* The server restarts the stream. */
+	}
+
+	@Override
+	public void noSuchRecipient(String recipient, String message)
+	{
+		return;
+	}
+
+	@Override
+	public void publicMessageReceived(String source, String message)
+	{
+		return;
+	}
+
+	@Override
+	public void privateMessageReceived(String source, String message)
+	{
+		return;
+	}
+}
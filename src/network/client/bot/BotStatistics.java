@@ -0,0 +1,34 @@
+package network.client.bot;
+
+import java.util.concurrent.atomic.*;
+
+import network.server.back_end.LatencyHistogram;
+
+/**
+ * This class collects the statistics of a
+ * group  of  bots.  It  is  updated  from
+ * the network thread and  the bot threads
+ * concurrently, without locks.
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+public class BotStatistics
+{
+	public final AtomicInteger connected = new AtomicInteger();
+	public final AtomicInteger loggedIn = new AtomicInteger();
+	public final AtomicInteger failed = new AtomicInteger();
+	public final AtomicInteger disconnected = new AtomicInteger();
+
+	public final AtomicLong snapshots = new AtomicLong();
+	public final AtomicLong updates = new AtomicLong();
+	public final AtomicLong actions = new AtomicLong();
+
+	/**
+	 * The time between two consecutive snapshots
+	 * received by the same bot. The server sends
+	 * one snapshot every network tick, so this
+	 * stretches as soon as the  server's ticks
+	 * start to overrun.
+	 */
+	public final LatencyHistogram snapshotIntervals = new LatencyHistogram();
+}
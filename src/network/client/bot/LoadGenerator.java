@@ -0,0 +1,273 @@
+package network.client.bot;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import network.*;
+import network.client.*;
+
+import log.Log;
+import naga.*;
+
+/**
+ * This is a headless load generator, which
+ * connects  many  virtual  players  (see
+ * {@code BotPlayer}) to a game server  to
+ * find out how many  it can carry. It does
+ * not need any of the graphics libraries.
+ * <p>
+ * Every few seconds it reports the number
+ * of bots  playing,  the rate at which they
+ * receive  snapshots and  the time between
+ * them (which grows when the server's ticks
+ * overrun),  their  round-trip  time  and
+ * the amount of data they receive.
+ * <p>
+ * The bots share a few network threads, as
+ * decoding snapshots for many  bots is too
+ * much for one, and their actions are sent
+ * from a small pool of threads.
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+public class LoadGenerator
+{
+	private static final String COMPONENT = "Load Generator";
+
+	/**
+	 * The time between two bot connections,
+	 * so that the  server is not  hit by all
+	 * the logins at once.
+	 */
+	private static final long RAMP_UP_MILLIS = 20;
+
+	private static final long REPORT_SECONDS = 5;
+
+	private final List<BotPlayer> bots = new ArrayList<BotPlayer>();
+	private final BotStatistics statistics = new BotStatistics();
+	private final ScheduledExecutorService scheduler;
+	private final NIOService[] services;
+
+	private long lastBytes = 0;
+	private long lastSnapshots = 0;
+	private long lastActions = 0;
+
+	/**
+	 * Creates a load generator.
+	 *
+	 * @param threads The number of network
+	 * threads, and of threads to send bot
+	 * actions from.
+	 */
+	public LoadGenerator(int threads) throws IOException
+	{
+		services = new NIOService[threads];
+		scheduler = Executors.newScheduledThreadPool(threads);
+
+		ExceptionObserver observer = new ExceptionObserver()
+		{
+			@Override
+			public void notifyExceptionThrown(Throwable error)
+			{
+				Log.warning(error, COMPONENT, "Exception caught.");
+			}
+		};
+
+		for (int t = 0; t < threads; ++t)
+		{
+			services[t] = new NIOService(ClientDefaults.BUFFER_SIZE);
+			services[t].setExceptionObserver(observer);
+			ServiceLoop.execute(services[t], observer);
+		}
+	}
+
+	/**
+	 * Connects the bots to a server, and has
+	 * them move and shoot at the given rates.
+	 *
+	 * @param host The server host.
+	 * @param port The server port.
+	 * @param count The number of bots.
+	 * @param moveRate The moves per second of
+	 * each bot.
+	 * @param shootRate The shots per second of
+	 * each bot.
+	 */
+	public void start(String host, int port, int count, double moveRate, double shootRate) throws IOException, InterruptedException
+	{
+		for (int t = 0; t < count; ++t)
+		{
+			final BotPlayer bot = new BotPlayer(String.format("bot%05d", t), t, services[t % services.length], statistics);
+			bots.add(bot);
+
+			bot.connect(host, port);
+
+			schedule(moveRate, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					bot.move();
+				}
+			});
+
+			schedule(shootRate, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					bot.shoot();
+				}
+			});
+
+			schedule(1, new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					bot.ping();
+				}
+			});
+
+			Thread.sleep(RAMP_UP_MILLIS);
+		}
+
+		scheduler.scheduleAtFixedRate(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				report();
+			}
+		}, REPORT_SECONDS, REPORT_SECONDS, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Disconnects every bot and stops.
+	 */
+	public void close()
+	{
+		scheduler.shutdownNow();
+		for (BotPlayer bot : bots) bot.close();
+		for (NIOService service : services) service.close();
+	}
+
+	private void schedule(double rate, final Runnable task)
+	{
+		if (rate <= 0) return;
+
+		/* Spread the bots evenly over the period. */
+		long period = (long)(1e9 / rate);
+		long delay = (long)(Math.random() * period);
+
+		scheduler.scheduleAtFixedRate(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					task.run();
+				}
+				catch (Exception error)
+				{
+					Log.warning(error, COMPONENT, "Bot action failed.");
+				}
+			}
+		}, delay, period, TimeUnit.NANOSECONDS);
+	}
+
+	private void report()
+	{
+		long bytes = 0;
+		double latency = 0;
+		int measured = 0;
+
+		for (BotPlayer bot : bots)
+		{
+			bytes += bot.getBytesReceived();
+
+			double botLatency = bot.getLatency();
+			if (Double.isNaN(botLatency)) continue;
+
+			latency += botLatency;
+			measured += 1;
+		}
+
+		long snapshots = statistics.snapshots.get();
+		long actions = statistics.actions.get();
+		int playing = statistics.loggedIn.get() - statistics.disconnected.get();
+
+		System.out.printf("  %d/%d bots playing (%d failed, %d lost), %.0f actions/s, %.1f snapshots/s per bot\n",
+				          playing, bots.size(), statistics.failed.get(), statistics.disconnected.get(),
+				          (double)(actions - lastActions) / REPORT_SECONDS,
+				          (playing == 0 ? 0 : (double)(snapshots - lastSnapshots) / REPORT_SECONDS / playing));
+		System.out.printf("  Snapshot interval: mean %.1f ms, 50%% %.1f ms, 99%% %.1f ms, max %.1f ms\n",
+				          statistics.snapshotIntervals.getMean() / 1e6,
+				          statistics.snapshotIntervals.getPercentile(0.50) / 1e6,
+				          statistics.snapshotIntervals.getPercentile(0.99) / 1e6,
+				          statistics.snapshotIntervals.getMax() / 1e6);
+		System.out.printf("  Round-trip time: %s, received %.1f kB/s\n\n",
+				          (measured == 0 ? "-" : String.format("%.1f ms", latency / measured * 1000)),
+				          (double)(bytes - lastBytes) / REPORT_SECONDS / 1024);
+
+		statistics.snapshotIntervals.reset();
+		lastSnapshots = snapshots;
+		lastActions = actions;
+		lastBytes = bytes;
+	}
+
+	/**
+	 * Takes as arguments the server host and
+	 * port and the number of bots,  optionally
+	 * followed by the moves and shots per second
+	 * of each bot and the test duration  in
+	 * seconds (runs until killed by default).
+	 *
+	 * @param args The command-line arguments.
+	 */
+	public static void main(String[] args)
+	{
+		if ((args.length < 3) || (args.length > 6))
+		{
+			System.out.println("Usage: <host> <port> <bots> [moves/s] [shots/s] [seconds]");
+			return;
+		}
+
+		LoadGenerator generator = null;
+
+		try
+		{
+			String host = args[0];
+			int port = Integer.parseInt(args[1]);
+			int count = Integer.parseInt(args[2]);
+			double moveRate = (args.length > 3 ? Double.parseDouble(args[3]) : 5);
+			double shootRate = (args.length > 4 ? Double.parseDouble(args[4]) : 1);
+			long duration = (args.length > 5 ? Long.parseLong(args[5]) : 0);
+
+			generator = new LoadGenerator(Math.max(2, Runtime.getRuntime().availableProcessors()));
+			System.out.printf("Connecting %d bots to %s:%d.\n\n", count, host, port);
+			generator.start(host, port, count, moveRate, shootRate);
+
+			if (duration > 0) Thread.sleep(duration * 1000);
+			else Thread.sleep(Long.MAX_VALUE);
+		}
+		catch (NumberFormatException error)
+		{
+			System.out.printf("Invalid argument: %s\n", error.getMessage());
+		}
+		catch (InterruptedException error)
+		{
+			return;
+		}
+		catch (IOException error)
+		{
+			System.out.printf("Network error: %s\n", error.getMessage());
+		}
+		finally
+		{
+			if (generator != null) generator.close();
+		}
+	}
+}
@@ -13,5 +13,7 @@ public interface GameObserver
 {
 	public void updatePacket(UpdatePacket packet);
 
+	public void snapshotPacket(SnapshotPacket packet);
+
 	public void locationChangePacket(Location location);
 }
@@ -0,0 +1,127 @@
+package network.packet;
+
+import ecs.entity.*;
+import ecs.components.*;
+
+/**
+ * A  component delta carries a Position or
+ * Velocity update  as fixed-point integers
+ * instead of a whole serialized component.
+ * Values are quantized to 1/2^20 units and
+ * sent either as absolute values, when the
+ * receiver has no baseline for this entity
+ * yet, or as differences to the last value
+ * sent for the entity.
+ * <p>
+ * The   network  stream  is  reliable  and
+ * ordered, so  the last value sent is also
+ * the  value  the  receiver  holds, and no
+ * explicit acknowledgement is needed.
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+public class ComponentDelta implements java.io.Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The number of quantization steps per unit.
+	 */
+	public static final double SCALE = (1 << 20);
+
+	public final Class<? extends Component> type;
+	public final boolean absolute;
+	public final int x, y;
+
+	public ComponentDelta(Class<? extends Component> type, boolean absolute, int x, int y)
+	{
+		if ((type != Position.class) && (type != Velocity.class))
+			throw new IllegalArgumentException("Cannot delta encode " + type + ".");
+
+		this.type = type;
+		this.absolute = absolute;
+		this.x = x;
+		this.y = y;
+	}
+
+	/**
+	 * Returns whether a component can be delta
+	 * encoded.
+	 */
+	public static boolean supports(Component component)
+	{
+		return (component instanceof Position) || (component instanceof Velocity);
+	}
+
+	/**
+	 * Converts a value to fixed-point.
+	 */
+	public static int quantize(double value)
+	{
+		return (int)Math.round(value * SCALE);
+	}
+
+	/**
+	 * Converts a fixed-point value back.
+	 */
+	public static double dequantize(int value)
+	{
+		return value / SCALE;
+	}
+
+	/**
+	 * Returns the quantized x and y values of a
+	 * position or velocity component.
+	 */
+	public static int[] quantize(Component component)
+	{
+		if (component instanceof Position)
+		{
+			Position position = (Position)component;
+			return new int[] { quantize(position.getX()), quantize(position.getY()) };
+		}
+		else
+		{
+			Velocity velocity = (Velocity)component;
+			return new int[] { quantize(velocity.getX()), quantize(velocity.getY()) };
+		}
+	}
+
+	/**
+	 * Applies this delta to an entity, adding
+	 * the component if it is missing.
+	 *
+	 * @param entity The entity to update.
+	 */
+	public void applyTo(Entity entity)
+	{
+		Component component = entity.getComponent(type);
+		int qx = x, qy = y;
+
+		if ((!absolute) && (component != null))
+		{
+			int[] baseline = quantize(component);
+			qx += baseline[0];
+			qy += baseline[1];
+		}
+
+		if (type == Position.class)
+		{
+			if (component == null) entity.addComponent(new Position(dequantize(qx), dequantize(qy)));
+			else
+			{
+				((Position)component).setX(dequantize(qx));
+				((Position)component).setY(dequantize(qy));
+			}
+		}
+		else
+		{
+			if (component == null) entity.addComponent(new Velocity(dequantize(qx), dequantize(qy)));
+			else
+			{
+				((Velocity)component).setX(dequantize(qx));
+				((Velocity)component).setY(dequantize(qy));
+			}
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package network.packet;
+
+import java.util.*;
+
+/**
+ * A snapshot packet batches every update made to the entities of
+ * a single location during one server tick, so that clients get
+ * a single network packet per tick instead of one per entity.
+ * <p>
+ * Updates are applied by clients in the order they were added.
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+public class SnapshotPacket implements NetPacket
+{
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	public Type getType()
+	{
+		return Type.UPDATE;
+	}
+
+	public final List<UpdatePacket> updates;
+
+	public SnapshotPacket()
+	{
+		this(new ArrayList<UpdatePacket>());
+	}
+
+	public SnapshotPacket(List<UpdatePacket> updates)
+	{
+		this.updates = updates;
+	}
+
+	/**
+	 * Appends an entity update to this snapshot.
+	 */
+	public void add(UpdatePacket update)
+	{
+		updates.add(update);
+	}
+
+	/**
+	 * Whether this snapshot holds no updates.
+	 */
+	public boolean isEmpty()
+	{
+		return updates.isEmpty();
+	}
+}
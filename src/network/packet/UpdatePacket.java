@@ -14,7 +14,7 @@ import ecs.components.*;
  */
 public class UpdatePacket implements NetPacket
 {
-	private static final long serialVersionUID = 1L;
+	private static final long serialVersionUID = 2L;
 
 	@Override
 	public Type getType()
@@ -43,13 +43,28 @@ public class UpdatePacket implements NetPacket
 	public final Set<Component> modified;
 	public final Set<Class<? extends Component>> removed;
 
+	/**
+	 * Position and velocity updates which were
+	 * delta encoded  instead of being sent  in
+	 * {@code modified} (may be {@code null}).
+	 */
+	public final List<ComponentDelta> deltas;
+
 	public UpdatePacket(Kind kind, Long entityID,
 						Set<Component> modified, Set<Class<? extends Component>> removed)
+	{
+		this(kind, entityID, modified, removed, null);
+	}
+
+	public UpdatePacket(Kind kind, Long entityID,
+						Set<Component> modified, Set<Class<? extends Component>> removed,
+						List<ComponentDelta> deltas)
 	{
 		this.kind = kind;
 		this.entityID = entityID;
 		this.modified = modified;
 		this.removed = removed;
+		this.deltas = deltas;
 	}
 	
 	/* Helper methods below. */
@@ -0,0 +1,34 @@
+package network.packet.codec;
+
+import java.io.IOException;
+
+/**
+ * A codec knows how to write a single type
+ * of  object  (a  network  packet  or  an
+ * entity  component)  to  the  wire,  and
+ * how to read it back. Codecs  only write
+ * the object's payload, the type  tag  is
+ * handled by the {@code CodecTable}.
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+public interface Codec<T>
+{
+	/**
+	 * Writes an object's payload to the wire.
+	 *
+	 * @param value The object to write.
+	 * @param out The wire writer.
+	 */
+	public void write(T value, WireWriter out) throws IOException;
+
+	/**
+	 * Reads an object's payload from the wire
+	 * and returns a new instance of it.
+	 *
+	 * @param in The wire reader.
+	 *
+	 * @return Returns the decoded object.
+	 */
+	public T read(WireReader in) throws IOException;
+}
@@ -0,0 +1,47 @@
+package network.packet.codec;
+
+import ecs.components.*;
+
+import network.packet.*;
+
+/**
+ * This class holds the two codec tables used
+ * by the binary packet codec,  one  for  the
+ * network packets themselves and one for the
+ * entity components they carry.
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+public final class CodecRegistry
+{
+	/**
+	 * Codecs  for  every concrete  {@code
+	 * NetPacket} class.
+	 */
+	public static final CodecTable<NetPacket> PACKETS = new CodecTable<NetPacket>();
+
+	/**
+	 * Codecs  for  every concrete  {@code
+	 * Component} class.
+	 */
+	public static final CodecTable<Component> COMPONENTS = new CodecTable<Component>();
+
+	/**
+	 * The version  of the component layout, that
+	 * is the component tags  and codecs, and how
+	 * entities and locations are written. Bump
+	 * this (along with the packet codec version)
+	 * whenever it changes. Files which store
+	 * entities depend on it, and not on the rest
+	 * of the wire format.
+	 */
+	public static final int COMPONENT_VERSION = 1;
+
+	static
+	{
+		ComponentCodecs.register(COMPONENTS);
+		PacketCodecs.register(PACKETS);
+	}
+
+	private CodecRegistry() { }
+}
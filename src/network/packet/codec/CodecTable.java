@@ -0,0 +1,99 @@
+package network.packet.codec;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * This class maps a set of classes to small
+ * integer type tags,  and each  tag  to the
+ * codec responsible  for  that  class. Tags
+ * are part of the wire format, so they must
+ * never be reused or renumbered  -  bump the
+ * codec version instead.
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+public class CodecTable<T>
+{
+	private static final int MAX_TAGS = 256;
+
+	private final Map<Class<?>, Integer> tags = new HashMap<Class<?>, Integer>();
+	private final Codec<?>[] codecs = new Codec<?>[MAX_TAGS];
+	private final Class<?>[] classes = new Class<?>[MAX_TAGS];
+
+	/**
+	 * Registers  a  codec  for  a given  class
+	 * under a given type tag.
+	 *
+	 * @param tag The type tag (1 to 255).
+	 * @param type The class to register.
+	 * @param codec The codec for this class.
+	 */
+	public <U extends T> void register(int tag, Class<U> type, Codec<U> codec)
+	{
+		if ((tag <= 0) || (tag >= MAX_TAGS)) throw new IllegalArgumentException("Invalid type tag " + tag + ".");
+		if (codecs[tag] != null) throw new IllegalArgumentException("Type tag " + tag + " already registered.");
+		if (tags.containsKey(type)) throw new IllegalArgumentException(type + " already registered.");
+
+		tags.put(type, tag);
+		classes[tag] = type;
+		codecs[tag] = codec;
+	}
+
+	/**
+	 * Returns whether  a class  has a  codec in
+	 * this table.
+	 */
+	public boolean supports(Class<?> type)
+	{
+		return tags.containsKey(type);
+	}
+
+	/**
+	 * Returns the type tag of a class, or throws
+	 * an exception if it has no codec.
+	 */
+	public int tagOf(Class<?> type)
+	{
+		Integer tag = tags.get(type);
+		if (tag == null) throw new IllegalArgumentException("No codec registered for " + type + ".");
+		return tag;
+	}
+
+	/**
+	 * Returns the class associated with a type
+	 * tag, or throws an exception if the tag is
+	 * unknown.
+	 */
+	public Class<?> classOf(int tag) throws IOException
+	{
+		if ((tag <= 0) || (tag >= MAX_TAGS) || (classes[tag] == null))
+			throw new IOException("Unknown type tag " + tag + ".");
+
+		return classes[tag];
+	}
+
+	/**
+	 * Writes  an object's type tag followed by
+	 * its payload.
+	 */
+	@SuppressWarnings("unchecked")
+	public void write(T value, WireWriter out) throws IOException
+	{
+		int tag = tagOf(value.getClass());
+		out.writeByte(tag);
+		((Codec<T>)codecs[tag]).write(value, out);
+	}
+
+	/**
+	 * Reads an object's type tag, then decodes
+	 * its payload with the appropriate codec.
+	 */
+	@SuppressWarnings("unchecked")
+	public T read(WireReader in) throws IOException
+	{
+		int tag = in.readUnsignedByte();
+		classOf(tag); /* Validate the tag. */
+		return ((Codec<T>)codecs[tag]).read(in);
+	}
+}
@@ -0,0 +1,364 @@
+package network.packet.codec;
+
+import java.io.IOException;
+import java.util.*;
+
+import renderer.ModelType;
+
+import ecs.entity.*;
+import ecs.components.*;
+import ecs.components.Type.EntityType;
+import ecs.components.Volume.VolumeType;
+
+/**
+ * Binary codecs for every entity component.
+ * The tag of each component is fixed and is
+ * part of the wire format.
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+final class ComponentCodecs
+{
+	static void register(CodecTable<Component> table)
+	{
+		table.register(1, Volume.class, new Codec<Volume>()
+		{
+			@Override
+			public void write(Volume value, WireWriter out) throws IOException
+			{
+				out.writeEnum(value.getType());
+				out.writeFloat(value.getWidth());
+				out.writeFloat(value.getHeight());
+			}
+
+			@Override
+			public Volume read(WireReader in) throws IOException
+			{
+				VolumeType type = in.readEnum(VolumeType.class);
+				return new Volume(in.readFloat(), in.readFloat(), type);
+			}
+		});
+
+		table.register(2, DamageFactor.class, new Codec<DamageFactor>()
+		{
+			@Override
+			public void write(DamageFactor value, WireWriter out) throws IOException
+			{
+				out.writeInt(value.getDamageFactor());
+			}
+
+			@Override
+			public DamageFactor read(WireReader in) throws IOException
+			{
+				return new DamageFactor(in.readInt());
+			}
+		});
+
+		table.register(3, Equipped.class, new Codec<Equipped>()
+		{
+			@Override
+			public void write(Equipped value, WireWriter out) throws IOException
+			{
+				out.writeEntity(value.getEquipped());
+			}
+
+			@Override
+			public Equipped read(WireReader in) throws IOException
+			{
+				Equipped equipped = new Equipped();
+				equipped.setEquipped(in.readEntity());
+				return equipped;
+			}
+		});
+
+		table.register(4, EventTrigger.class, new Codec<EventTrigger>()
+		{
+			@Override
+			public void write(EventTrigger value, WireWriter out) throws IOException
+			{
+				out.writeLong(value.getInterval());
+				out.writeLong(value.getLastFired());
+			}
+
+			@Override
+			public EventTrigger read(WireReader in) throws IOException
+			{
+				EventTrigger trigger = new EventTrigger();
+				trigger.setInterval(in.readLong());
+				trigger.setLastFired(in.readLong());
+				return trigger;
+			}
+		});
+
+		table.register(5, Exit.class, new Codec<Exit>()
+		{
+			@Override
+			public void write(Exit value, WireWriter out) throws IOException
+			{
+				out.writeString(value.getExit());
+				out.writeBoolean(value.getLocked());
+				out.writeBoolean(value.getExitPos() != null);
+
+				if (value.getExitPos() != null)
+				{
+					out.writeDouble(value.getExitPos().getX());
+					out.writeDouble(value.getExitPos().getY());
+				}
+			}
+
+			@Override
+			public Exit read(WireReader in) throws IOException
+			{
+				String exit = in.readString();
+				boolean locked = in.readBoolean();
+				Position exitPos = (in.readBoolean() ? new Position(in.readDouble(), in.readDouble()) : null);
+				return new Exit(exit, locked, exitPos);
+			}
+		});
+
+		table.register(6, Health.class, new Codec<Health>()
+		{
+			@Override
+			public void write(Health value, WireWriter out) throws IOException
+			{
+				out.writeInt(value.getMax());
+				out.writeInt(value.getCurrent());
+			}
+
+			@Override
+			public Health read(WireReader in) throws IOException
+			{
+				return new Health(in.readInt(), in.readInt());
+			}
+		});
+
+		table.register(7, Inventory.class, new Codec<Inventory>()
+		{
+			@Override
+			public void write(Inventory value, WireWriter out) throws IOException
+			{
+				out.writeInt(value.getMaxSize());
+				out.writeInt(value.getCurrent());
+				out.writeVarInt(value.getInventory().size());
+				for (Entity item : value.getInventory()) out.writeEntity(item);
+			}
+
+			@Override
+			public Inventory read(WireReader in) throws IOException
+			{
+				Inventory inventory = new Inventory(in.readInt());
+				inventory.setCurrent(in.readInt());
+
+				int count = in.readVarInt();
+				for (int t = 0; t < count; ++t) inventory.getInventory().add(in.readEntity());
+				return inventory;
+			}
+		});
+
+		table.register(8, ModelData.class, new Codec<ModelData>()
+		{
+			@Override
+			public void write(ModelData value, WireWriter out) throws IOException
+			{
+				out.writeEnum(value.getType());
+			}
+
+			@Override
+			public ModelData read(WireReader in) throws IOException
+			{
+				return new ModelData(in.readEnum(ModelType.class));
+			}
+		});
+
+		table.register(9, Multiplier.class, new Codec<Multiplier>()
+		{
+			@Override
+			public void write(Multiplier value, WireWriter out) throws IOException
+			{
+				out.writeDouble(value.getMultiplier());
+			}
+
+			@Override
+			public Multiplier read(WireReader in) throws IOException
+			{
+				return new Multiplier(in.readDouble());
+			}
+		});
+
+		table.register(10, Name.class, new Codec<Name>()
+		{
+			@Override
+			public void write(Name value, WireWriter out) throws IOException
+			{
+				out.writeString(value.getName());
+				out.writeString(value.getSuffix());
+			}
+
+			@Override
+			public Name read(WireReader in) throws IOException
+			{
+				return new Name(in.readString(), in.readString());
+			}
+		});
+
+		table.register(11, Position.class, new Codec<Position>()
+		{
+			@Override
+			public void write(Position value, WireWriter out) throws IOException
+			{
+				out.writeDouble(value.getX());
+				out.writeDouble(value.getY());
+			}
+
+			@Override
+			public Position read(WireReader in) throws IOException
+			{
+				return new Position(in.readDouble(), in.readDouble());
+			}
+		});
+
+		table.register(12, Size.class, new Codec<Size>()
+		{
+			@Override
+			public void write(Size value, WireWriter out) throws IOException
+			{
+				out.writeInt(value.getSize());
+			}
+
+			@Override
+			public Size read(WireReader in) throws IOException
+			{
+				return new Size(in.readInt());
+			}
+		});
+
+		table.register(13, Target.class, new Codec<Target>()
+		{
+			@Override
+			public void write(Target value, WireWriter out) throws IOException
+			{
+				Set<EntityType> targettable = value.getTargettable();
+				out.writeVarInt(targettable == null ? 0 : targettable.size());
+				if (targettable != null) for (EntityType type : targettable) out.writeEnum(type);
+				out.writeEntity(value.getTarget());
+			}
+
+			@Override
+			public Target read(WireReader in) throws IOException
+			{
+				Set<EntityType> targettable = new HashSet<EntityType>();
+				int count = in.readVarInt();
+				for (int t = 0; t < count; ++t) targettable.add(in.readEnum(EntityType.class));
+
+				Target target = new Target(targettable);
+				target.setTarget(in.readEntity());
+				return target;
+			}
+		});
+
+		table.register(14, TargetRadius.class, new Codec<TargetRadius>()
+		{
+			@Override
+			public void write(TargetRadius value, WireWriter out) throws IOException
+			{
+				out.writeDouble(value.getRadius());
+			}
+
+			@Override
+			public TargetRadius read(WireReader in) throws IOException
+			{
+				return new TargetRadius(in.readDouble());
+			}
+		});
+
+		table.register(15, Text.class, new Codec<Text>()
+		{
+			@Override
+			public void write(Text value, WireWriter out) throws IOException
+			{
+				out.writeString(value.getText());
+			}
+
+			@Override
+			public Text read(WireReader in) throws IOException
+			{
+				return new Text(in.readString());
+			}
+		});
+
+		table.register(16, Type.class, new Codec<Type>()
+		{
+			@Override
+			public void write(Type value, WireWriter out) throws IOException
+			{
+				out.writeEnum(value.getType());
+			}
+
+			@Override
+			public Type read(WireReader in) throws IOException
+			{
+				return new Type(in.readEnum(EntityType.class));
+			}
+		});
+
+		table.register(17, Upgrades.class, new Codec<Upgrades>()
+		{
+			@Override
+			public void write(Upgrades value, WireWriter out) throws IOException
+			{
+				out.writeVarInt(value.getUpgrades().size());
+
+				for (Map.Entry<String, Integer> entry : value.getUpgrades().entrySet())
+				{
+					out.writeString(entry.getKey());
+					out.writeInt(entry.getValue());
+				}
+			}
+
+			@Override
+			public Upgrades read(WireReader in) throws IOException
+			{
+				Map<String, Integer> map = new HashMap<String, Integer>();
+				int count = in.readVarInt();
+				for (int t = 0; t < count; ++t) map.put(in.readString(), in.readInt());
+
+				Upgrades upgrades = new Upgrades();
+				upgrades.setUpgrades(map);
+				return upgrades;
+			}
+		});
+
+		table.register(18, Velocity.class, new Codec<Velocity>()
+		{
+			@Override
+			public void write(Velocity value, WireWriter out) throws IOException
+			{
+				out.writeDouble(value.getX());
+				out.writeDouble(value.getY());
+			}
+
+			@Override
+			public Velocity read(WireReader in) throws IOException
+			{
+				return new Velocity(in.readDouble(), in.readDouble());
+			}
+		});
+
+		table.register(19, Worth.class, new Codec<Worth>()
+		{
+			@Override
+			public void write(Worth value, WireWriter out) throws IOException
+			{
+				out.writeInt(value.getWorth());
+			}
+
+			@Override
+			public Worth read(WireReader in) throws IOException
+			{
+				return new Worth(in.readInt());
+			}
+		});
+	}
+
+	private ComponentCodecs() { }
+}
@@ -0,0 +1,116 @@
+package network.packet.codec;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import network.packet.*;
+
+/**
+ * This class wraps a network packet which is
+ * to be sent  to several  clients. The packet
+ * is encoded at most once per packet format,
+ * and  the  resulting  byte  arrays  are then
+ * shared between every  recipient socket, so
+ * they must never be modified.
+ * <p>
+ * Encoded packets are reference counted. The
+ * creator  holds the  first  reference,  and
+ * every socket write which is still pending
+ * holds  another one  (released  when  the
+ * packet has actually been sent). The byte
+ * arrays are dropped as  soon as the  last
+ * reference is released.
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+public final class EncodedPacket
+{
+	private final NetPacket packet;
+
+	/**
+	 * The encoded packet, indexed by format (an
+	 * entry is {@code null} until some client
+	 * requests this format).
+	 */
+	private final byte[][] encoded = new byte[PacketCodec.Format.values().length][];
+
+	private final AtomicInteger references = new AtomicInteger(1);
+
+	/**
+	 * Wraps a  network packet,  with a single
+	 * reference held by the caller.
+	 *
+	 * @param packet The packet to encode.
+	 */
+	public EncodedPacket(NetPacket packet)
+	{
+		if (packet == null) throw new IllegalArgumentException("Packet cannot be null.");
+		this.packet = packet;
+	}
+
+	/**
+	 * Returns the wrapped network packet.
+	 */
+	public NetPacket getPacket()
+	{
+		return packet;
+	}
+
+	/**
+	 * Returns the packet encoded in a given format,
+	 * encoding it only on the first request.
+	 *
+	 * @param format The packet format.
+	 *
+	 * @return  Returns the encoded packet, which
+	 * must <b>not</b> be modified.
+	 */
+	public synchronized byte[] getBytes(PacketCodec.Format format) throws IOException
+	{
+		if (references.get() == 0) throw new IllegalStateException("Encoded packet already released.");
+
+		if (encoded[format.ordinal()] == null) encoded[format.ordinal()] = PacketCodec.encode(packet, format);
+		return encoded[format.ordinal()];
+	}
+
+	/**
+	 * Acquires a new reference to this packet.
+	 */
+	public void retain()
+	{
+		for (;;)
+		{
+			int count = references.get();
+			if (count == 0) throw new IllegalStateException("Encoded packet already released.");
+			if (references.compareAndSet(count, count + 1)) return;
+		}
+	}
+
+	/**
+	 * Releases a reference to this packet, and
+	 * drops the encoded byte arrays if it was
+	 * the last one.
+	 */
+	public void release()
+	{
+		int count = references.decrementAndGet();
+		if (count < 0) throw new IllegalStateException("Encoded packet released too many times.");
+
+		if (count == 0)
+		{
+			synchronized (this)
+			{
+				for (int t = 0; t < encoded.length; ++t) encoded[t] = null;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of  references which
+	 * are currently held on this packet.
+	 */
+	public int getReferenceCount()
+	{
+		return references.get();
+	}
+}
@@ -0,0 +1,40 @@
+package network.packet.codec;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import network.packet.message.PublicMessage;
+
+/**
+ * JUnit tests for shared encoded packets.
+ */
+public class EncodedPacketTest {
+
+	@Test
+	public void testEncodedOnce() throws Exception{
+		EncodedPacket packet = new EncodedPacket(new PublicMessage("hello"));
+		byte[] first = packet.getBytes(PacketCodec.Format.BINARY);
+		assertSame("Bytes should be shared", first, packet.getBytes(PacketCodec.Format.BINARY));
+		assertNotSame("Formats should differ", first, packet.getBytes(PacketCodec.Format.SERIALIZED));
+	}
+
+	@Test
+	public void testReferenceCount() throws Exception{
+		EncodedPacket packet = new EncodedPacket(new PublicMessage("hello"));
+		packet.retain();
+		packet.retain();
+		packet.release();
+		assertEquals("Two references should be held", 2, packet.getReferenceCount());
+		packet.release();
+		packet.release();
+		assertEquals("No references should be held", 0, packet.getReferenceCount());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testReleased() throws Exception{
+		EncodedPacket packet = new EncodedPacket(new PublicMessage("hello"));
+		packet.release();
+		packet.getBytes(PacketCodec.Format.BINARY);
+	}
+}
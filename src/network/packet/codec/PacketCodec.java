@@ -0,0 +1,180 @@
+package network.packet.codec;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+import network.packet.*;
+
+/**
+ * This class encodes network packets into raw
+ * byte arrays and decodes them back. Packets
+ * are normally encoded with a compact binary
+ * format, built from per-class codecs  found
+ * in the {@code CodecRegistry}, and Java  (GZIP
+ * compressed) serialization is  kept  as  an
+ * opt-in fallback.
+ * <p>
+ * Both formats  can be told apart from their
+ * first  byte,   so   decoding   needs   no
+ * knowledge of which format  the remote host
+ * chose. The format  used to send packets is
+ * agreed upon  at login,  through the  codec
+ * version  carried  by  the  {@code
+ * LoginMessage}.
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+public final class PacketCodec
+{
+	/**
+	 * The version of the binary wire format. Bump
+	 * this whenever  a codec or a type tag changes
+	 * in a way which breaks older clients.
+	 */
+	public static final int VERSION = 3;
+
+	/**
+	 * The first byte of a binary packet. Java
+	 * serialized packets  are GZIP streams and
+	 * always start with {@code 0x1f}.
+	 */
+	private static final int BINARY_MAGIC = 0xB1;
+
+	/**
+	 * The  packet encodings  supported  by the
+	 * codec.
+	 */
+	public enum Format
+	{
+		/**
+		 * GZIP compressed Java serialization, which
+		 * every client understands.
+		 */
+		SERIALIZED,
+
+		/**
+		 * The compact binary codec.
+		 */
+		BINARY,
+	}
+
+	/**
+	 * Returns the packet format to use given the
+	 * codec version a remote host advertised.
+	 *
+	 * @param  version The remote  codec version
+	 * (zero to request Java serialization).
+	 */
+	public static Format negotiate(int version)
+	{
+		return (version == VERSION ? Format.BINARY : Format.SERIALIZED);
+	}
+
+	/**
+	 * Encodes a  network packet into  a byte array
+	 * using  the requested  format. Packets which
+	 * have  no binary codec are silently  sent as
+	 * serialized packets.
+	 *
+	 * @param packet The packet to encode.
+	 * @param format The format to use.
+	 *
+	 * @return Returns the encoded packet.
+	 */
+	public static byte[] encode(NetPacket packet, Format format) throws IOException
+	{
+		if ((format == Format.BINARY) && (CodecRegistry.PACKETS.supports(packet.getClass())))
+		{
+			WireWriter out = new WireWriter();
+			out.writeByte(BINARY_MAGIC);
+			out.writeByte(VERSION);
+			CodecRegistry.PACKETS.write(packet, out);
+			return out.toByteArray();
+		}
+		else return serialize(packet);
+	}
+
+	/**
+	 * Decodes a raw  network packet, whatever the
+	 * format it was encoded with.
+	 *
+	 * @param data The raw network data.
+	 *
+	 * @return Returns a {@code NetPacket}.
+	 */
+	public static NetPacket decode(byte[] data) throws IOException, ClassNotFoundException
+	{
+		if ((data.length > 0) && ((data[0] & 0xFF) == BINARY_MAGIC))
+		{
+			if ((data.length < 2) || (data[1] != VERSION))
+				throw new IOException("Unsupported binary codec version.");
+
+			return CodecRegistry.PACKETS.read(new WireReader(data, 2));
+		}
+		else return deserialize(data);
+	}
+
+	/**
+	 * Encodes a single entity update on its own,
+	 * without any header. The result can later
+	 * be  combined  with  other  updates  into a
+	 * binary snapshot packet,  so that a shared
+	 * update is only encoded once even if every
+	 * client receives a different snapshot.
+	 *
+	 * @param update The update to encode.
+	 *
+	 * @return Returns the encoded update.
+	 */
+	public static byte[] encodeUpdate(UpdatePacket update) throws IOException
+	{
+		WireWriter out = new WireWriter();
+		PacketCodecs.UPDATE_CODEC.write(update, out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Builds a binary {@code SnapshotPacket} out
+	 * of updates encoded by {@code encodeUpdate},
+	 * in the given order.
+	 *
+	 * @param updates The encoded updates.
+	 *
+	 * @return Returns the encoded snapshot.
+	 */
+	public static byte[] encodeSnapshot(List<byte[]> updates) throws IOException
+	{
+		WireWriter out = new WireWriter();
+		out.writeByte(BINARY_MAGIC);
+		out.writeByte(VERSION);
+		out.writeByte(CodecRegistry.PACKETS.tagOf(SnapshotPacket.class));
+		out.writeVarInt(updates.size());
+		for (byte[] update : updates) out.write(update);
+		return out.toByteArray();
+	}
+
+	private static byte[] serialize(NetPacket packet) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		GZIPOutputStream zip = new GZIPOutputStream(bytes);
+		ObjectOutputStream stream = new ObjectOutputStream(zip);
+		stream.writeObject(packet);
+		stream.close();
+		zip.close();
+
+		return bytes.toByteArray();
+	}
+
+	private static NetPacket deserialize(byte[] data) throws IOException, ClassNotFoundException
+	{
+		ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+		GZIPInputStream zip = new GZIPInputStream(bytes);
+		ObjectInputStream stream = new ObjectInputStream(zip);
+		NetPacket packet = (NetPacket)stream.readObject();
+		stream.close();
+		return packet;
+	}
+
+	private PacketCodec() { }
+}
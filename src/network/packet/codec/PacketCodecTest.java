@@ -0,0 +1,168 @@
+package network.packet.codec;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+import ecs.components.*;
+import ecs.entity.Entity;
+import ecs.helpers.EntityFactory;
+import ecs.helpers.LocationFactory;
+import ecs.world.Location;
+
+import network.packet.*;
+import network.packet.action.*;
+import network.packet.message.*;
+import network.packet.message.LoginMessage.LoginStatus;
+import network.server.back_end.DeltaBaseline;
+
+/**
+ * JUnit tests for the binary packet codec.
+ */
+public class PacketCodecTest {
+
+	private NetPacket roundTrip(NetPacket packet) throws Exception{
+		return PacketCodec.decode(PacketCodec.encode(packet, PacketCodec.Format.BINARY));
+	}
+
+	@Test
+	public void testMovementAction() throws Exception{
+		MovementAction action = (MovementAction)roundTrip(new MovementAction(MovementAction.Direction.LEFT));
+		assertEquals("Direction should survive", MovementAction.Direction.LEFT, action.getDir());
+	}
+
+	@Test
+	public void testBinaryIsSmaller() throws Exception{
+		NetPacket packet = new PlayerShootAction(0.25, 0.75);
+		int binary = PacketCodec.encode(packet, PacketCodec.Format.BINARY).length;
+		int serialized = PacketCodec.encode(packet, PacketCodec.Format.SERIALIZED).length;
+		assertTrue("Binary packet should be much smaller", binary * 4 < serialized);
+	}
+
+	@Test
+	public void testSerializedFallback() throws Exception{
+		NetPacket packet = new PublicMessage("hello");
+		PublicMessage message = (PublicMessage)PacketCodec.decode(PacketCodec.encode(packet, PacketCodec.Format.SERIALIZED));
+		assertEquals("Message should survive", "hello", message.getMessage());
+	}
+
+	@Test
+	public void testLoginMessage() throws Exception{
+		LoginMessage login = new LoginMessage("testPlayer");
+		login.setLoginStatus(LoginStatus.NAME_TAKEN);
+		LoginMessage decoded = (LoginMessage)roundTrip(login);
+		assertEquals("Name should survive", "testPlayer", decoded.getPlayerName());
+		assertEquals("Status should survive", LoginStatus.NAME_TAKEN, decoded.getLoginStatus());
+		assertEquals("Codec version should survive", PacketCodec.VERSION, decoded.getCodecVersion());
+	}
+
+	@Test
+	public void testPlayerEntity() throws Exception{
+		Entity player = EntityFactory.genPlayerEntity("testPlayer");
+		player.getComponent(Inventory.class).addEntity(EntityFactory.genItemEntity("cheese"));
+		player.getComponent(Equipped.class).equip(EntityFactory.genRandomWeapon());
+
+		UpdatePacket packet = (UpdatePacket)roundTrip(UpdatePacket.entityCreated(player));
+		Entity decoded = new Entity(packet.entityID);
+		for (Component component : packet.modified) decoded.addComponent(component);
+
+		assertEquals("ID should survive", player.getID(), decoded.getID());
+		assertEquals("Name should survive", "testPlayer", decoded.getName());
+		assertEquals("Components should survive", player.getComponents().size(), decoded.getComponents().size());
+		assertEquals("Position should survive", 0.3, decoded.getComponent(Position.class).getX(), 1e-9);
+		assertEquals("Inventory should survive", 10, decoded.getComponent(Inventory.class).getCurrent());
+		assertEquals("Item should survive", "cheese", decoded.getComponent(Inventory.class).getInventory().get(0).getName());
+		assertEquals("Suffix should survive", player.getComponent(Equipped.class).getEquipped().getComponent(Name.class).getSuffix(),
+				decoded.getComponent(Equipped.class).getEquipped().getComponent(Name.class).getSuffix());
+	}
+
+	@Test
+	public void testEntityCycle() throws Exception{
+		Entity zombie = EntityFactory.genZombieEntity(0.1f, 0.1f);
+		Entity npc = EntityFactory.genNPC(0.2f, 0.2f);
+		zombie.getComponent(Target.class).setTarget(npc);
+		npc.getComponent(Target.class).setTarget(zombie);
+
+		Set<Component> modified = new HashSet<Component>();
+		modified.add(zombie.getComponent(Target.class));
+		UpdatePacket packet = (UpdatePacket)roundTrip(UpdatePacket.componentsModified(zombie, modified));
+
+		Target target = (Target)packet.modified.iterator().next();
+		Entity decodedNPC = target.getTarget();
+		assertEquals("Target should survive", npc.getID(), decodedNPC.getID());
+		assertEquals("Cycle should survive", zombie.getID(), decodedNPC.getComponent(Target.class).getTarget().getID());
+	}
+
+	@Test
+	public void testRemovedComponents() throws Exception{
+		Entity money = EntityFactory.genMoney(1, 1, 10);
+		Set<Class<? extends Component>> removed = new HashSet<Class<? extends Component>>();
+		removed.add(Position.class);
+		UpdatePacket packet = (UpdatePacket)roundTrip(UpdatePacket.componentsRemoved(money, removed));
+		assertNull("No components should be modified", packet.modified);
+		assertTrue("Position should be removed", packet.removed.contains(Position.class));
+	}
+
+	@Test
+	public void testLocationChange() throws Exception{
+		Location location = LocationFactory.startingLocation();
+		LocationChangeMessage message = (LocationChangeMessage)roundTrip(new LocationChangeMessage(location));
+		assertEquals("Name should survive", location.getName(), message.newLocation.getName());
+		assertEquals("Model should survive", location.getModelType(), message.newLocation.getModelType());
+		assertEquals("Entities should survive", location.getEntities().size(), message.newLocation.getEntities().size());
+	}
+
+	@Test
+	public void testSnapshot() throws Exception{
+		Entity zombie = EntityFactory.genZombieEntity(0.1f, 0.1f);
+		Entity money = EntityFactory.genMoney(1, 1, 10);
+		SnapshotPacket snapshot = new SnapshotPacket();
+		snapshot.add(UpdatePacket.entityCreated(zombie));
+		snapshot.add(UpdatePacket.entityDeleted(money));
+
+		SnapshotPacket decoded = (SnapshotPacket)roundTrip(snapshot);
+		assertEquals("Updates should survive", 2, decoded.updates.size());
+		assertEquals("Order should survive", zombie.getID(), (long)decoded.updates.get(0).entityID);
+		assertEquals("Kind should survive", UpdatePacket.Kind.DELETE, decoded.updates.get(1).kind);
+	}
+
+	@Test
+	public void testPositionDeltas() throws Exception{
+		DeltaBaseline baseline = new DeltaBaseline();
+		Entity zombie = EntityFactory.genZombieEntity(0.1f, 0.1f);
+		Entity local = new Entity(zombie.getID());
+
+		for (int t = 0; t < 3; ++t) {
+			zombie.getComponent(Position.class).addX(0.01);
+			SnapshotPacket snapshot = new SnapshotPacket();
+			snapshot.add(UpdatePacket.entityCreated(zombie));
+
+			UpdatePacket update = ((SnapshotPacket)roundTrip(baseline.encode(snapshot))).updates.get(0);
+			for (Component component : update.modified) local.addComponent(component);
+			for (ComponentDelta delta : update.deltas) delta.applyTo(local);
+			assertEquals("Only the first update should be absolute", t == 0, update.deltas.get(0).absolute);
+		}
+
+		assertEquals("Position should be tracked", zombie.getComponent(Position.class).getX(), local.getComponent(Position.class).getX(), 1e-6);
+		assertEquals("Position should be tracked", zombie.getComponent(Position.class).getY(), local.getComponent(Position.class).getY(), 1e-6);
+	}
+
+	@Test
+	public void testAssembledSnapshot() throws Exception{
+		Entity zombie = EntityFactory.genZombieEntity(0.1f, 0.1f);
+		Entity npc = EntityFactory.genNPC(0.2f, 0.2f);
+		zombie.getComponent(Target.class).setTarget(npc);
+
+		List<byte[]> updates = new ArrayList<byte[]>();
+		updates.add(PacketCodec.encodeUpdate(UpdatePacket.entityCreated(zombie)));
+		updates.add(PacketCodec.encodeUpdate(UpdatePacket.entityCreated(npc)));
+
+		SnapshotPacket snapshot = new SnapshotPacket();
+		snapshot.add(UpdatePacket.entityCreated(zombie));
+		snapshot.add(UpdatePacket.entityCreated(npc));
+
+		assertArrayEquals("Assembled snapshot should match", PacketCodec.encode(snapshot, PacketCodec.Format.BINARY), PacketCodec.encodeSnapshot(updates));
+	}
+}
@@ -0,0 +1,306 @@
+package network.packet.codec;
+
+import java.io.IOException;
+import java.util.*;
+
+import ecs.components.*;
+
+import network.packet.*;
+import network.packet.action.*;
+import network.packet.action.MovementAction.Direction;
+import network.packet.message.*;
+import network.packet.message.LoginMessage.LoginStatus;
+
+/**
+ * Binary codecs for every network packet.
+ * The tag of each packet is fixed  and  is
+ * part of the wire format.
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+final class PacketCodecs
+{
+	/* Shared by update and snapshot packets. */
+	static final Codec<UpdatePacket> UPDATE_CODEC = new Codec<UpdatePacket>()
+	{
+		@Override
+		public void write(UpdatePacket value, WireWriter out) throws IOException
+		{
+			out.writeEnum(value.kind);
+			out.writeBoolean(value.entityID != null);
+			if (value.entityID != null) out.writeLong(value.entityID);
+
+			out.writeBoolean(value.modified != null);
+			if (value.modified != null)
+			{
+				out.writeVarInt(value.modified.size());
+				for (Component component : value.modified) out.writeComponent(component);
+			}
+
+			out.writeBoolean(value.removed != null);
+			if (value.removed != null)
+			{
+				out.writeVarInt(value.removed.size());
+				for (Class<? extends Component> type : value.removed) out.writeComponentClass(type);
+			}
+
+			out.writeBoolean(value.deltas != null);
+			if (value.deltas != null)
+			{
+				out.writeVarInt(value.deltas.size());
+
+				for (ComponentDelta delta : value.deltas)
+				{
+					out.writeComponentClass(delta.type);
+					out.writeBoolean(delta.absolute);
+					out.writeSignedVarInt(delta.x);
+					out.writeSignedVarInt(delta.y);
+				}
+			}
+		}
+
+		@Override
+		public UpdatePacket read(WireReader in) throws IOException
+		{
+			UpdatePacket.Kind kind = in.readEnum(UpdatePacket.Kind.class);
+			Long entityID = (in.readBoolean() ? in.readLong() : null);
+
+			Set<Component> modified = null;
+			if (in.readBoolean())
+			{
+				int count = in.readVarInt();
+				modified = new HashSet<Component>();
+				for (int t = 0; t < count; ++t) modified.add(in.readComponent());
+			}
+
+			Set<Class<? extends Component>> removed = null;
+			if (in.readBoolean())
+			{
+				int count = in.readVarInt();
+				removed = new HashSet<Class<? extends Component>>();
+				for (int t = 0; t < count; ++t) removed.add(in.readComponentClass());
+			}
+
+			List<ComponentDelta> deltas = null;
+			if (in.readBoolean())
+			{
+				int count = in.readVarInt();
+				deltas = new ArrayList<ComponentDelta>(count);
+
+				for (int t = 0; t < count; ++t)
+				{
+					Class<? extends Component> type = in.readComponentClass();
+					boolean absolute = in.readBoolean();
+					deltas.add(new ComponentDelta(type, absolute, in.readSignedVarInt(), in.readSignedVarInt()));
+				}
+			}
+
+			return new UpdatePacket(kind, entityID, modified, removed, deltas);
+		}
+	};
+
+	static void register(CodecTable<NetPacket> table)
+	{
+		/* Update packets. */
+
+		table.register(1, UpdatePacket.class, UPDATE_CODEC);
+
+		table.register(12, SnapshotPacket.class, new Codec<SnapshotPacket>()
+		{
+			@Override
+			public void write(SnapshotPacket value, WireWriter out) throws IOException
+			{
+				out.writeVarInt(value.updates.size());
+
+				/* Each update stands alone, see PacketCodec.encodeSnapshot(). */
+				for (UpdatePacket update : value.updates)
+				{
+					out.resetReferences();
+					UPDATE_CODEC.write(update, out);
+				}
+			}
+
+			@Override
+			public SnapshotPacket read(WireReader in) throws IOException
+			{
+				int count = in.readVarInt();
+				List<UpdatePacket> updates = new ArrayList<UpdatePacket>(count);
+				for (int t = 0; t < count; ++t)
+				{
+					in.resetReferences();
+					updates.add(UPDATE_CODEC.read(in));
+				}
+				return new SnapshotPacket(updates);
+			}
+		});
+
+		/* Action packets. */
+
+		table.register(2, MovementAction.class, new Codec<MovementAction>()
+		{
+			@Override
+			public void write(MovementAction value, WireWriter out) throws IOException
+			{
+				out.writeEnum(value.getDir());
+			}
+
+			@Override
+			public MovementAction read(WireReader in) throws IOException
+			{
+				return new MovementAction(in.readEnum(Direction.class));
+			}
+		});
+
+		table.register(3, InteractAction.class, new Codec<InteractAction>()
+		{
+			@Override
+			public void write(InteractAction value, WireWriter out) throws IOException
+			{
+				return; /* No payload. */
+			}
+
+			@Override
+			public InteractAction read(WireReader in) throws IOException
+			{
+				return new InteractAction();
+			}
+		});
+
+		table.register(4, PlayerShootAction.class, new Codec<PlayerShootAction>()
+		{
+			@Override
+			public void write(PlayerShootAction value, WireWriter out) throws IOException
+			{
+				out.writeDouble(value.x);
+				out.writeDouble(value.y);
+			}
+
+			@Override
+			public PlayerShootAction read(WireReader in) throws IOException
+			{
+				return new PlayerShootAction(in.readDouble(), in.readDouble());
+			}
+		});
+
+		table.register(5, UseAction.class, new Codec<UseAction>()
+		{
+			@Override
+			public void write(UseAction value, WireWriter out) throws IOException
+			{
+				out.writeFloat(value.ID);
+			}
+
+			@Override
+			public UseAction read(WireReader in) throws IOException
+			{
+				return new UseAction(in.readFloat());
+			}
+		});
+
+		table.register(6, DropAction.class, new Codec<DropAction>()
+		{
+			@Override
+			public void write(DropAction value, WireWriter out) throws IOException
+			{
+				out.writeFloat(value.ID);
+			}
+
+			@Override
+			public DropAction read(WireReader in) throws IOException
+			{
+				return new DropAction(in.readFloat());
+			}
+		});
+
+		table.register(7, UpgradeAction.class, new Codec<UpgradeAction>()
+		{
+			@Override
+			public void write(UpgradeAction value, WireWriter out) throws IOException
+			{
+				out.writeInt(value.cost);
+				out.writeString(value.type);
+			}
+
+			@Override
+			public UpgradeAction read(WireReader in) throws IOException
+			{
+				return new UpgradeAction(in.readInt(), in.readString());
+			}
+		});
+
+		/* Message packets. */
+
+		table.register(8, LoginMessage.class, new Codec<LoginMessage>()
+		{
+			@Override
+			public void write(LoginMessage value, WireWriter out) throws IOException
+			{
+				out.writeString(value.getPlayerName());
+				out.writeEnum(value.getLoginStatus());
+				out.writeVarInt(value.getCodecVersion());
+			}
+
+			@Override
+			public LoginMessage read(WireReader in) throws IOException
+			{
+				LoginMessage message = new LoginMessage(in.readString());
+				message.setLoginStatus(in.readEnum(LoginStatus.class));
+				message.setCodecVersion(in.readVarInt());
+				return message;
+			}
+		});
+
+		table.register(9, LocationChangeMessage.class, new Codec<LocationChangeMessage>()
+		{
+			@Override
+			public void write(LocationChangeMessage value, WireWriter out) throws IOException
+			{
+				out.writeLocation(value.newLocation);
+			}
+
+			@Override
+			public LocationChangeMessage read(WireReader in) throws IOException
+			{
+				return new LocationChangeMessage(in.readLocation());
+			}
+		});
+
+		table.register(10, PrivateMessage.class, new Codec<PrivateMessage>()
+		{
+			@Override
+			public void write(PrivateMessage value, WireWriter out) throws IOException
+			{
+				out.writeString(value.getSource());
+				out.writeString(value.getRecipient());
+				out.writeString(value.getMessage());
+			}
+
+			@Override
+			public PrivateMessage read(WireReader in) throws IOException
+			{
+				return new PrivateMessage(in.readString(), in.readString(), in.readString());
+			}
+		});
+
+		table.register(11, PublicMessage.class, new Codec<PublicMessage>()
+		{
+			@Override
+			public void write(PublicMessage value, WireWriter out) throws IOException
+			{
+				out.writeString(value.getSource());
+				out.writeString(value.getMessage());
+			}
+
+			@Override
+			public PublicMessage read(WireReader in) throws IOException
+			{
+				String source = in.readString();
+				PublicMessage message = new PublicMessage(in.readString());
+				message.setSource(source);
+				return message;
+			}
+		});
+	}
+
+	private PacketCodecs() { }
+}
@@ -0,0 +1,187 @@
+package network.packet.codec;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+
+import renderer.ModelType;
+
+import ecs.entity.*;
+import ecs.world.*;
+import ecs.components.*;
+
+/**
+ * This  is  the  input  half  of  the  binary
+ * packet codec,  and reads  back  everything
+ * written by a {@code WireWriter}.
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+public class WireReader extends DataInputStream
+{
+	private final List<Entity> read = new ArrayList<Entity>();
+
+	public WireReader(byte[] data, int offset)
+	{
+		super(new ByteArrayInputStream(data, offset, data.length - offset));
+	}
+
+	/**
+	 * Creates  a reader over  the remaining bytes
+	 * of a  buffer, which  may  be a  memory-mapped
+	 * file. The buffer is read in place.
+	 */
+	public WireReader(ByteBuffer buffer)
+	{
+		super(new BufferInputStream(buffer));
+	}
+
+	private static class BufferInputStream extends InputStream
+	{
+		private final ByteBuffer buffer;
+
+		public BufferInputStream(ByteBuffer buffer)
+		{
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read()
+		{
+			return (buffer.hasRemaining() ? buffer.get() & 0xFF : -1);
+		}
+
+		@Override
+		public int read(byte[] data, int offset, int length)
+		{
+			if (length == 0) return 0;
+			if (!buffer.hasRemaining()) return -1;
+
+			length = Math.min(length, buffer.remaining());
+			buffer.get(data, offset, length);
+			return length;
+		}
+
+		@Override
+		public int available()
+		{
+			return buffer.remaining();
+		}
+	}
+
+	/**
+	 * Reads a variable-length integer.
+	 */
+	public int readVarInt() throws IOException
+	{
+		int value = 0;
+
+		for (int shift = 0; shift < 32; shift += 7)
+		{
+			int b = readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) return value;
+		}
+
+		throw new IOException("Malformed variable-length integer.");
+	}
+
+	/**
+	 * Forgets every entity read so far (see
+	 * {@code WireWriter.resetReferences}).
+	 */
+	public void resetReferences()
+	{
+		read.clear();
+	}
+
+	/**
+	 * Reads a signed (zigzag) variable-length
+	 * integer.
+	 */
+	public int readSignedVarInt() throws IOException
+	{
+		int value = readVarInt();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Reads a string, which may be null.
+	 */
+	public String readString() throws IOException
+	{
+		return (readBoolean() ? readUTF() : null);
+	}
+
+	/**
+	 * Reads an enum constant, which may be null.
+	 */
+	public <E extends Enum<E>> E readEnum(Class<E> type) throws IOException
+	{
+		int ordinal = readVarInt();
+		if (ordinal == 0) return null;
+
+		E[] constants = type.getEnumConstants();
+		if (ordinal > constants.length) throw new IOException("Invalid " + type.getSimpleName() + " ordinal.");
+		return constants[ordinal - 1];
+	}
+
+	/**
+	 * Reads an entity and all of its components.
+	 */
+	public Entity readEntity() throws IOException
+	{
+		switch (readUnsignedByte())
+		{
+			case WireWriter.ENTITY_NULL:
+				return null;
+
+			case WireWriter.ENTITY_REF:
+				int index = readVarInt();
+				if (index >= read.size()) throw new IOException("Invalid entity reference.");
+				return read.get(index);
+
+			case WireWriter.ENTITY_NEW:
+				Entity entity = new Entity(readLong());
+				read.add(entity); /* Before the components, they may refer back to it. */
+
+				int count = readVarInt();
+				for (int t = 0; t < count; ++t) entity.addComponent(readComponent());
+				return entity;
+
+			default:
+				throw new IOException("Invalid entity marker.");
+		}
+	}
+
+	/**
+	 * Reads a component and its type tag.
+	 */
+	public Component readComponent() throws IOException
+	{
+		return CodecRegistry.COMPONENTS.read(this);
+	}
+
+	/**
+	 * Reads a component class from its type tag.
+	 */
+	@SuppressWarnings("unchecked")
+	public Class<? extends Component> readComponentClass() throws IOException
+	{
+		return (Class<? extends Component>)CodecRegistry.COMPONENTS.classOf(readUnsignedByte());
+	}
+
+	/**
+	 * Reads a location and its entities.
+	 */
+	public Location readLocation() throws IOException
+	{
+		Location location = new Location(readString());
+		location.setDescription(readString());
+		location.setModelType(readEnum(ModelType.class));
+
+		int count = readVarInt();
+		for (int t = 0; t < count; ++t) location.addEntity(readEntity());
+		return location;
+	}
+}
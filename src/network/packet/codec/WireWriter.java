@@ -0,0 +1,180 @@
+package network.packet.codec;
+
+import java.io.*;
+import java.util.*;
+
+import ecs.entity.*;
+import ecs.world.*;
+import ecs.components.*;
+
+/**
+ * This  is  the  output  half of  the  binary
+ * packet codec. It  extends the  usual  data
+ * output stream  with compact  variable-length
+ * integers, nullable strings and enums, and
+ * entity encoding.
+ * <p>
+ * Entities are written  by reference within a
+ * single  packet: an  entity  written  twice
+ * (for instance  a zombie  targeting a player
+ * who targets the zombie back) is  only fully
+ * encoded the  first  time, like  Java object
+ * serialization would do.
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+public class WireWriter extends DataOutputStream
+{
+	static final int ENTITY_NULL = 0;
+	static final int ENTITY_NEW  = 1;
+	static final int ENTITY_REF  = 2;
+
+	private final Map<Entity, Integer> written = new IdentityHashMap<Entity, Integer>();
+	private final ByteArrayOutputStream bytes;
+
+	public WireWriter()
+	{
+		this(new ByteArrayOutputStream(64));
+	}
+
+	/**
+	 * Creates a writer which writes directly to
+	 * an output stream (for instance  a file),
+	 * rather than to a byte array.
+	 */
+	public WireWriter(OutputStream out)
+	{
+		super(out);
+		this.bytes = ((out instanceof ByteArrayOutputStream) ? (ByteArrayOutputStream)out : null);
+	}
+
+	/**
+	 * Returns everything written so far.
+	 */
+	public byte[] toByteArray() throws IOException
+	{
+		if (bytes == null) throw new IllegalStateException("Not writing to a byte array.");
+
+		flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Forgets every entity  written so far, so
+	 * that what follows can be decoded on its
+	 * own (see {@code PacketCodec.encodeUpdate}).
+	 */
+	public void resetReferences()
+	{
+		written.clear();
+	}
+
+	/**
+	 * Writes a non-negative integer using as few
+	 * bytes as possible (seven bits per byte).
+	 */
+	public void writeVarInt(int value) throws IOException
+	{
+		if (value < 0) throw new IllegalArgumentException("Negative variable-length integer.");
+		writeUnsigned(value);
+	}
+
+	/**
+	 * Writes a signed integer using as few bytes
+	 * as possible,  so that  small  negative  and
+	 * positive values are both short (zigzag).
+	 */
+	public void writeSignedVarInt(int value) throws IOException
+	{
+		writeUnsigned((value << 1) ^ (value >> 31));
+	}
+
+	private void writeUnsigned(int value) throws IOException
+	{
+		while ((value & ~0x7F) != 0)
+		{
+			writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+
+		writeByte(value);
+	}
+
+	/**
+	 * Writes a string, which may be null.
+	 */
+	public void writeString(String value) throws IOException
+	{
+		writeBoolean(value != null);
+		if (value != null) writeUTF(value);
+	}
+
+	/**
+	 * Writes an enum constant, which may be null.
+	 */
+	public void writeEnum(Enum<?> value) throws IOException
+	{
+		writeVarInt(value == null ? 0 : value.ordinal() + 1);
+	}
+
+	/**
+	 * Writes an entity along  with all of its
+	 * components. The entity may be null.
+	 */
+	public void writeEntity(Entity entity) throws IOException
+	{
+		if (entity == null)
+		{
+			writeByte(ENTITY_NULL);
+			return;
+		}
+
+		Integer index = written.get(entity);
+
+		if (index != null)
+		{
+			writeByte(ENTITY_REF);
+			writeVarInt(index);
+			return;
+		}
+
+		written.put(entity, written.size());
+		writeByte(ENTITY_NEW);
+		writeLong(entity.getID());
+
+		Collection<Component> components = entity.getComponentMap().values();
+		writeVarInt(components.size());
+		for (Component component : components) writeComponent(component);
+	}
+
+	/**
+	 * Writes a component, prefixed by its type
+	 * tag.
+	 */
+	public void writeComponent(Component component) throws IOException
+	{
+		CodecRegistry.COMPONENTS.write(component, this);
+	}
+
+	/**
+	 * Writes a component class as its type tag.
+	 */
+	public void writeComponentClass(Class<? extends Component> type) throws IOException
+	{
+		writeByte(CodecRegistry.COMPONENTS.tagOf(type));
+	}
+
+	/**
+	 * Writes a location and all the entities it
+	 * contains. Spawn points are not sent.
+	 */
+	public void writeLocation(Location location) throws IOException
+	{
+		writeString(location.getName());
+		writeString(location.getDescription());
+		writeEnum(location.getModelType());
+
+		writeVarInt(location.getEntities().size());
+		for (Entity entity : location.getEntities()) writeEntity(entity);
+	}
+}
@@ -1,6 +1,7 @@
 package network.packet.message;
 
 import network.packet.MessagePacket;
+import network.packet.codec.PacketCodec;
 
 /**
  * A  login  message  is used  to  let  the
@@ -69,6 +70,7 @@ public class LoginMessage implements MessagePacket
 	
 	private LoginStatus status;
 	private final String name;
+	private int codecVersion;
 	
 	/**
 	 * Creates  a LoginMessage instance with  a
@@ -78,6 +80,7 @@ public class LoginMessage implements MessagePacket
 	 */
 	public LoginMessage(String name)
 	{
+		codecVersion = PacketCodec.VERSION;
 		status = LoginStatus.PENDING;
 		this.name = name;
 	}
@@ -115,4 +118,28 @@ public class LoginMessage implements MessagePacket
 	{
 		return status;
 	}
+	
+	/**
+	 * Sets the binary codec version. The client
+	 * sets it to the version it supports  (zero
+	 * to ask for  Java  serialization) and  the
+	 * server sets it to the version agreed upon.
+	 * 
+	 * @param codecVersion The codec version.
+	 */
+	public void setCodecVersion(int codecVersion)
+	{
+		this.codecVersion = codecVersion;
+	}
+	
+	/**
+	 * Gets the binary codec version.
+	 * 
+	 * @return  Returns  the codec version, or
+	 * zero for Java serialization.
+	 */
+	public int getCodecVersion()
+	{
+		return codecVersion;
+	}
 }
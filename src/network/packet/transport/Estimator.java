@@ -1,6 +1,6 @@
 package network.packet.transport;
 
-import java.util.*;
+import java.util.concurrent.atomic.*;
 
 /**
  * This class implements a sample averaging
@@ -14,32 +14,82 @@ import java.util.*;
  */
 public abstract class Estimator
 {
-	private final int LENGTH = 64;
+	/**
+	 * The number of samples kept, which must be
+	 * a power of two.
+	 */
+	protected static final int LENGTH = 64;
+	
+	/**
+	 * The samples are  kept in a ring of primitive
+	 * slots, written only by the thread offering
+	 * samples and read by any thread,  without
+	 * locks. The time of each sample is in
+	 * nanoseconds,  and its  value is stored as
+	 * raw double bits.
+	 */
+	private final AtomicLongArray times = new AtomicLongArray(LENGTH);
+	private final AtomicLongArray values = new AtomicLongArray(LENGTH);
 	
-	protected final PriorityQueue<Sample> samples = new PriorityQueue<Sample>(LENGTH);
+	/**
+	 * The number of samples offered so far. The
+	 * next sample goes in slot {@code head %
+	 * LENGTH}.
+	 */
+	private final AtomicLong head = new AtomicLong();
 	
 	/**
-	 * Gets the current time, in seconds.
+	 * This  method  offers  a  sample  to  the
+	 * estimator. Only one thread may offer
+	 * samples to a given estimator.
 	 * 
-	 * @return Returns the current time.
+	 * @param sample The measured sample.
 	 */
-	protected static double getTime()
+	public void offer(double sample)
 	{
-		return (double)(System.currentTimeMillis()) / 1000;
+		long position = head.get();
+		int index = (int)(position & (LENGTH - 1));
+		
+		times.lazySet(index, System.nanoTime());
+		values.lazySet(index, Double.doubleToRawLongBits(sample));
+		head.lazySet(position + 1);
 	}
 	
 	/**
-	 * This  method  offers  a  sample  to  the
-	 * estimator.
+	 * Copies the  most recent samples, newest
+	 * first, along with their age in seconds.
+	 * Samples overwritten while they are being
+	 * copied are left out.
 	 * 
-	 * @param  time  The  time the  sample  was
-	 * measured.
-	 * @param sample The measured sample.
+	 * @param ages The sample ages (at least
+	 * {@code LENGTH} long).
+	 * @param samples The sample values (at least
+	 * {@code LENGTH} long).
+	 * 
+	 * @return Returns the number of samples.
 	 */
-	public synchronized void offer(double sample)
+	protected final int copySamples(double[] ages, double[] samples)
 	{
-		if (samples.size() >= LENGTH) samples.poll();	
-		samples.add(new Sample(getTime(), sample));
+		long now = System.nanoTime();
+		long newest = head.get();
+		int count = 0;
+		
+		for (long position = newest - 1; (position >= 0) && (position >= newest - LENGTH); --position)
+		{
+			int index = (int)(position & (LENGTH - 1));
+			long time = times.get(index);
+			long value = values.get(index);
+			
+			/* The writer has  started reusing this
+			 * slot, so older ones are gone too. */
+			if (head.get() >= position + LENGTH) break;
+			
+			ages[count] = (now - time) / 1e9;
+			samples[count] = Double.longBitsToDouble(value);
+			count += 1;
+		}
+		
+		return count;
 	}
 	
 	/**
@@ -53,34 +103,4 @@ public abstract class Estimator
 	 * @return Returns the estimate so far.
 	 */
 	public abstract double estimate();
-	
-	protected static class Sample implements Comparable<Sample>
-	{
-		public final double time, sample;
-		
-		public Sample(double time, double sample)
-		{
-			this.sample = sample;
-			this.time = time;
-		}
-
-		@Override
-		public int compareTo(Sample o)
-		{
-			return Double.compare(time, ((Sample)o).time);
-		}
-		
-		@Override
-		public boolean equals(Object o)
-		{
-			if ((o == null) || (!(o instanceof Sample))) return false;
-			return ((Sample)o).time == time;
-		}
-		
-		@Override
-		public int hashCode()
-		{
-			return Double.valueOf(time).hashCode();
-		}
-	}
 }
@@ -0,0 +1,89 @@
+package network.packet.transport;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.*;
+
+import org.junit.Test;
+
+import network.packet.transport.estimators.*;
+
+/**
+ * JUnit tests for the sample ring of estimators.
+ */
+public class EstimatorTest {
+
+	/**
+	 * Gives access to the samples themselves.
+	 */
+	private static class Samples extends Estimator {
+		final double[] ages = new double[LENGTH];
+		final double[] samples = new double[LENGTH];
+
+		int copy(){
+			return copySamples(ages, samples);
+		}
+
+		@Override
+		public double estimate(){
+			return Double.NaN;
+		}
+	}
+
+	@Test
+	public void testEstimate() throws Exception{
+		LatencyEstimator estimator = new LatencyEstimator();
+		assertTrue("No samples should give no estimate", Double.isNaN(estimator.estimate()));
+
+		for (int t = 1; t <= 4; ++t) estimator.offer(t);
+		// The samples are all about as recent, so they weigh about the same
+		assertEquals("Estimate should be the average", 2.5, estimator.estimate(), 1e-3);
+	}
+
+	@Test
+	public void testWrapAround() throws Exception{
+		Samples estimator = new Samples();
+		assertEquals("No samples should be copied", 0, estimator.copy());
+
+		int total = Estimator.LENGTH * 2 + 5;
+		for (int t = 0; t < total; ++t) estimator.offer(t);
+
+		// The oldest slot is left out, as it is the next one the writer fills
+		int kept = Estimator.LENGTH - 1;
+		assertEquals("Only the newest samples should be kept", kept, estimator.copy());
+		for (int t = 0; t < kept; ++t){
+			assertEquals("Samples should be copied newest first", total - 1 - t, estimator.samples[t], 0);
+			if (t > 0) assertTrue("Older samples should be older", estimator.ages[t] >= estimator.ages[t - 1]);
+		}
+	}
+
+	@Test
+	public void testConcurrent() throws Exception{
+		final Samples estimator = new Samples();
+		final AtomicBoolean running = new AtomicBoolean(true);
+
+		Thread writer = new Thread(new Runnable(){
+			@Override
+			public void run(){
+				for (long t = 0; running.get(); ++t) estimator.offer(t);
+			}
+		});
+		writer.start();
+
+		try{
+			// Each copy should be a run of consecutive samples, never mixing in a newer one
+			for (int copy = 0; copy < 100000; ++copy){
+				int count = estimator.copy();
+				assertTrue("The slot being written should not be copied", count < Estimator.LENGTH);
+				for (int t = 1; t < count; ++t){
+					assertEquals("Samples should not be torn", estimator.samples[t - 1] - 1, estimator.samples[t], 0);
+					assertTrue("Ages should not be torn", estimator.ages[t] >= estimator.ages[t - 1]);
+				}
+			}
+		}
+		finally{
+			running.set(false);
+			writer.join();
+		}
+	}
+}
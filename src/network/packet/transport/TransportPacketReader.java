@@ -2,6 +2,7 @@ package network.packet.transport;
 
 import network.packet.transport.estimators.*;
 import java.nio.ByteBuffer;
+import naga.NIOSocket;
 import naga.PacketReader;
 import naga.exception.*;
 import log.Log;
@@ -20,6 +21,13 @@ import log.Log;
  * waiting until a fully formed game packet
  * is  received before  passing  it to  the
  * game client or server.
+ * <p>
+ * Transport control frames  (pings and pongs)
+ * are handled  here and never  passed on. The
+ * round-trip  time and  clock  offset  are
+ * computed from each pong as  in NTP,  so
+ * they do not depend on both  ends having
+ * synchronized clocks.
  * 
  * @author Thomas Beneteau (300250968)
  */
@@ -27,28 +35,87 @@ public class TransportPacketReader implements PacketReader
 {
 	private static final String COMPONENT = "Network Transport Layer";
 	
+	/**
+	 * The  minimum  number of  nanoseconds
+	 * between two pings.
+	 */
+	private static final long PING_INTERVAL = 1000000000L;
+	
 	/**
 	 * This keeps track of the measured network
-	 * latency (in units of seconds).
+	 * round-trip time (in units of seconds).
 	 */
-	private Estimator latency = new LatencyEstimator();
+	private final Estimator latency = new LatencyEstimator();
+	
+	/**
+	 * This keeps track of the measured offset
+	 * of the remote clock  from the local one
+	 * (in units of seconds). It is smoothed in
+	 * the same way as the latency.
+	 */
+	private final Estimator clockOffset = new LatencyEstimator();
 	
 	/**
 	 * This keeps track of the measured network
 	 * throughput (in units of bytes/second).
 	 */
-	private Estimator throughput = new ThroughputEstimator();
+	private final Estimator throughput = new ThroughputEstimator();
+	
+	/**
+	 * The socket used to reply to pings, which
+	 * is null until set.
+	 */
+	private volatile NIOSocket socket;
+	
+	private volatile long lastPing = System.nanoTime() - PING_INTERVAL;
+	
+	/**
+	 * Sets the socket this packet reader is
+	 * reading from, which is needed to answer
+	 * pings from the remote end.
+	 */
+	public void setSocket(NIOSocket socket)
+	{
+		this.socket = socket;
+	}
+	
+	/**
+	 * Sends a ping to the remote end, unless
+	 * one was sent less than a second ago. This
+	 * may be called from any thread.
+	 */
+	public void ping()
+	{
+		NIOSocket target = socket;
+		long now = System.nanoTime();
+		
+		if ((target == null) || (now - lastPing < PING_INTERVAL)) return;
+		
+		lastPing = now;
+		target.write(TransportUtils.ping());
+	}
 	
 	/**
-	 * Returns   the  best   estimated  latency
-	 * between the  server and the  client this
-	 * packet reader is serving, in seconds.
+	 * Returns   the  best   estimated  round-trip
+	 * time between the  server and the  client
+	 * this packet reader is serving, in seconds.
 	 */
 	public double getLatency()
 	{
 		return latency.estimate();
 	}
 	
+	/**
+	 * Returns the best estimated offset of the
+	 * remote clock from the local clock,   in
+	 * seconds (positive if the remote clock is
+	 * ahead).
+	 */
+	public double getClockOffset()
+	{
+		return clockOffset.estimate();
+	}
+	
 	/**
 	 * Returns  the  best estimated  throughput
 	 * from the remote end in bytes per second.
@@ -61,32 +128,73 @@ public class TransportPacketReader implements PacketReader
 	@Override
 	public byte[] nextPacket(ByteBuffer buffer) throws ProtocolViolationException
 	{
-		if (buffer.remaining() < TransportUtils.HEADER_SIZE) return null;
-		
-		buffer.mark(); /* Start of header. */
-		int packetSize = buffer.getInt();
-		long time = buffer.getLong();
-		
-		if ((packetSize <= 0) || (packetSize > TransportUtils.MAX_PACKET_SIZE))
+		while (true)
 		{
-			Log.warning(COMPONENT, "Rejecting invalid network packet (%d bytes).", packetSize);
-			throw new ProtocolViolationException("Received network packet with invalid size.");
+			if (buffer.remaining() < TransportUtils.HEADER_SIZE) return null;
+			
+			buffer.mark(); /* Start of header. */
+			int packetSize = buffer.getInt();
+			long time = buffer.getLong();
+			
+			if ((packetSize <= 0) || (packetSize > TransportUtils.MAX_PACKET_SIZE))
+			{
+				Log.warning(COMPONENT, "Rejecting invalid network packet (%d bytes).", packetSize);
+				throw new ProtocolViolationException("Received network packet with invalid size.");
+			}
+			
+			if (buffer.remaining() < packetSize)
+			{
+				buffer.reset();
+				return null;
+			}
+			
+			byte[] data = new byte[packetSize];
+			buffer.get(data);
+			
+			throughput.offer(packetSize + TransportUtils.HEADER_SIZE);
+			
+			if (!TransportUtils.isControl(data)) return data;
+			handleControl(data, time);
 		}
+	}
+	
+	/**
+	 * Answers a ping, or measures the round-trip
+	 * time and clock offset from a pong.
+	 * 
+	 * @param data The control frame.
+	 * @param sent The time the frame was sent,
+	 * from its header.
+	 */
+	private void handleControl(byte[] data, long sent) throws ProtocolViolationException
+	{
+		long received = System.currentTimeMillis();
+		ByteBuffer frame = ByteBuffer.wrap(data, 2, data.length - 2);
 		
-		if (buffer.remaining() < packetSize)
+		if ((data[1] == TransportUtils.PING) && (data.length == TransportUtils.PING_SIZE))
 		{
-			buffer.reset();
-			return null;
+			NIOSocket target = socket;
+			if (target != null) target.write(TransportUtils.pong(frame.getLong(), frame.getLong(), received));
+		}
+		else if ((data[1] == TransportUtils.PONG) && (data.length == TransportUtils.PONG_SIZE))
+		{
+			/* The four NTP timestamps, in Unix milliseconds. The
+			 * round trip itself is timed with the local nanosecond
+			 * clock, which is far more precise. */
+			long nanos = frame.getLong();
+			long t1 = frame.getLong(), t2 = frame.getLong();
+			long t3 = sent, t4 = received;
+			
+			double RTT = (System.nanoTime() - nanos) / 1e9 - (t3 - t2) / 1000.0;
+			double offset = ((t2 - t1) + (t3 - t4)) / 2000.0;
+			
+			latency.offer(Math.max(0, RTT));
+			clockOffset.offer(offset);
+		}
+		else
+		{
+			Log.warning(COMPONENT, "Rejecting invalid control frame (type %d, %d bytes).", data[1], data.length);
+			throw new ProtocolViolationException("Received invalid control frame.");
 		}
-		
-		byte[] data = new byte[packetSize];
-		buffer.get(data);
-		
-		double RTT = 2 * (double)(System.currentTimeMillis() - time) / 1000.0; /* Compute the round-trip time. */
-		if (RTT < 0) Log.info(COMPONENT, "Packet yielded negative latency (%.3f seconds) - assuming zero.", RTT);
-		
-		throughput.offer(packetSize + TransportUtils.HEADER_SIZE);
-		latency.offer(Math.max(0, RTT));
-		return data;
 	}
 }
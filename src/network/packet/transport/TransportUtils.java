@@ -1,5 +1,7 @@
 package network.packet.transport;
 
+import java.nio.ByteBuffer;
+
 /**
  * This class contains  utility methods and
  * constants  for   packet  reading/writing
@@ -29,4 +31,74 @@ class TransportUtils
 	 * This is in bytes.
 	 */
 	public static final int HEADER_SIZE = 12;
+	
+	/**
+	 * The first byte of a control frame. Game
+	 * packets never start with it (they begin
+	 * with  either the binary  codec magic or
+	 * a GZIP header), so control frames can be
+	 * recognized  and  handled  entirely  by
+	 * the transport layer.
+	 */
+	public static final int CONTROL_MAGIC = 0xC7;
+	
+	/**
+	 * A ping frame carries the sender's clocks
+	 * at the time  it was  created: a {@code
+	 * System.nanoTime()} value, only meaningful
+	 * to the sender, followed by its Unix time
+	 * in milliseconds.
+	 */
+	public static final byte PING = 1;
+	
+	/**
+	 * A pong frame  is the  immediate reply to
+	 * a ping. It echoes both of the ping's
+	 * clocks, followed by the  Unix time  at
+	 * which  the ping was received. The  time
+	 * the pong was sent is in its header.
+	 */
+	public static final byte PONG = 2;
+	
+	public static final int PING_SIZE = 2 + 8 + 8;
+	public static final int PONG_SIZE = 2 + 8 + 8 + 8;
+	
+	/**
+	 * Returns whether  a packet is a transport
+	 * control frame.
+	 */
+	public static boolean isControl(byte[] data)
+	{
+		return (data.length >= 2) && ((data[0] & 0xFF) == CONTROL_MAGIC);
+	}
+	
+	/**
+	 * Creates a ping frame, stamped with the
+	 * current time.
+	 */
+	public static byte[] ping()
+	{
+		ByteBuffer frame = ByteBuffer.allocate(PING_SIZE);
+		frame.put((byte)CONTROL_MAGIC).put(PING);
+		frame.putLong(System.nanoTime());
+		frame.putLong(System.currentTimeMillis());
+		return frame.array();
+	}
+	
+	/**
+	 * Creates the pong frame replying to a ping.
+	 * 
+	 * @param nanos  The ping's  sender nanosecond
+	 * clock.
+	 * @param millis The ping's sender Unix time.
+	 * @param received The Unix time the ping was
+	 * received at.
+	 */
+	public static byte[] pong(long nanos, long millis, long received)
+	{
+		ByteBuffer frame = ByteBuffer.allocate(PONG_SIZE);
+		frame.put((byte)CONTROL_MAGIC).put(PONG);
+		frame.putLong(nanos).putLong(millis).putLong(received);
+		return frame.array();
+	}
 }
@@ -3,10 +3,10 @@ package network.packet.transport.estimators;
 import network.packet.transport.Estimator;
 
 /**
- * This class is actually not used, it works fine
- * but we are not able to accurately compute the
- * latency of clients in the code, so we just
- * aren't using it.
+ * This class smooths out round-trip time (and
+ * clock offset)  measurements,  which are made
+ * with ping and pong control frames by the
+ * transport packet reader.
  */
 public class LatencyEstimator extends Estimator
 {
@@ -38,17 +38,20 @@ public class LatencyEstimator extends Estimator
 		return Math.exp(-delta / ALPHA); 
 	}
 	
-	public synchronized double estimate()
+	public double estimate()
 	{
-		double time = getTime();
+		double[] ages = new double[LENGTH];
+		double[] samples = new double[LENGTH];
+		int count = copySamples(ages, samples);
+		
 		double normalized = 0;
 		double estimate = 0;
 		
-		for (Sample sample : samples)
+		for (int t = 0; t < count; ++t)
 		{
-			if (time - sample.time > RELEVANCE) continue;
-			double weight = weight(time - sample.time);
-			estimate += sample.sample * weight;
+			if (ages[t] > RELEVANCE) continue;
+			double weight = weight(ages[t]);
+			estimate += samples[t] * weight;
 			normalized += weight;
 		}
 		
@@ -14,18 +14,21 @@ public class ThroughputEstimator extends Estimator
 	 */
 	private static final double RELEVANCE = 15;
 	
-	public synchronized double estimate()
+	public double estimate()
 	{
+		double[] ages = new double[LENGTH];
+		double[] samples = new double[LENGTH];
+		int count = copySamples(ages, samples);
+		
 		double maxTimeDelta = 0;
-		double time = getTime();
 		double estimate = 0;
 		
-		for (Sample sample : samples)
+		for (int t = 0; t < count; ++t)
 		{
-			if (time - sample.time > RELEVANCE) continue;
-			if (time - sample.time > maxTimeDelta)
-				maxTimeDelta = time - sample.time;
-			estimate += sample.sample;
+			if (ages[t] > RELEVANCE) continue;
+			if (ages[t] > maxTimeDelta)
+				maxTimeDelta = ages[t];
+			estimate += samples[t];
 		}
 
 		return (maxTimeDelta < 1e-5 ? Double.NaN : estimate / maxTimeDelta);
@@ -7,6 +7,8 @@ import org.w3c.dom.*;
 import javax.xml.parsers.*;
 import org.xml.sax.SAXException;
 
+import network.packet.codec.PacketCodec;
+
 /**
  * This   describes   the   game   server's
  * configuration,  such  as   the  port  on
@@ -76,7 +78,9 @@ public final class Configuration
 	 * which contains an  XML representation of
 	 * the game  at some point in  time (useful
 	 * to  save and  resume games  even if  the
-	 * server shuts down).
+	 * server shuts down). If its  name ends in
+	 * {@code .bin}, the much faster to load
+	 * binary format is used instead.
 	 */
 	public String getWorldStateFile()
 	{
@@ -113,6 +117,92 @@ public final class Configuration
 		return networkTicks;
 	}
 	
+	private final PacketCodec.Format packetFormat;
+	
+	/**
+	 * The packet format the server  offers to
+	 * clients at login. If set to {@code binary}
+	 * clients  supporting  the  same  codec
+	 * version  use the  binary packet codec,
+	 * if  set  to {@code  serialized}  every
+	 * client falls back to Java serialization.
+	 */
+	public PacketCodec.Format getPacketFormat()
+	{
+		return packetFormat;
+	}
+	
+	private final double interestRadius;
+	
+	/**
+	 * The distance  around  a player  within
+	 * which  it receives entity updates (area
+	 * of interest filtering). If this is zero
+	 * every  client receives  every update in
+	 * its location.
+	 */
+	public double getInterestRadius()
+	{
+		return interestRadius;
+	}
+	
+	private final double snapshotInterval;
+	
+	/**
+	 * The number of seconds between two world
+	 * snapshots, which  are written while the
+	 * server is running  so that  it can be
+	 * restarted after a crash. Zero  disables
+	 * periodic  snapshots  (the  world  is then
+	 * only saved  on shutdown,  though player
+	 * changes are still journaled).
+	 */
+	public double getSnapshotInterval()
+	{
+		return snapshotInterval;
+	}
+	
+	private final double hibernateDelay;
+	
+	/**
+	 * The number of seconds a location must be
+	 * empty  of players before  it hibernates,
+	 * at which point it is no longer simulated
+	 * until a player enters it again. Zero
+	 * disables hibernation.
+	 */
+	public double getHibernateDelay()
+	{
+		return hibernateDelay;
+	}
+	
+	private final boolean pageOut;
+	
+	/**
+	 * Whether the entities of hibernating
+	 * locations are also  written out to disk
+	 * and dropped from memory until the location
+	 * wakes up.
+	 */
+	public boolean getPageOut()
+	{
+		return pageOut;
+	}
+	
+	private final int worldThreads;
+	
+	/**
+	 * The number of  threads used to  process
+	 * the  world's  locations  in  parallel. If
+	 * this is 1 locations are processed one at
+	 * a time on the game logic thread, and if
+	 * it is 0 one thread per processor is used.
+	 */
+	public int getWorldThreads()
+	{
+		return worldThreads;
+	}
+	
 	/**
 	 * Attempts  to  load   the  game  server's
 	 * configuration from an XML file.
@@ -145,6 +235,12 @@ public final class Configuration
 				this.tcpBufferSize = parseInt(valueOf(getNode(getNode(root, "tcp"), "buffer")));
 				this.updateRate = parseDouble(valueOf(getNode(getNode(root, "world"), "updaterate")));
 				this.networkTicks = parseInt(valueOf(getNode(getNode(root, "world"), "networkticks")));
+				this.packetFormat = parseFormat(valueOf(getNode(getNode(root, "tcp"), "codec")));
+				this.interestRadius = parseDouble(valueOf(getNode(getNode(root, "world"), "interestradius")));
+				this.worldThreads = parseInt(valueOf(getNode(getNode(root, "world"), "threads")));
+				this.snapshotInterval = parseDouble(valueOf(getNode(getNode(root, "world"), "snapshotinterval")));
+				this.hibernateDelay = parseDouble(valueOf(getNode(getNode(root, "world"), "hibernatedelay")));
+				this.pageOut = parseBoolean(valueOf(getNode(getNode(root, "world"), "pageout")));
 			}
 			else
 			{
@@ -215,6 +311,25 @@ public final class Configuration
 		}
 	}
 	
+	private boolean parseBoolean(String value) throws ConfigurationException
+	{
+		if (value.trim().equalsIgnoreCase("true")) return true;
+		if (value.trim().equalsIgnoreCase("false")) return false;
+		throw new ConfigurationException("expected boolean but found '%s'", value);
+	}
+	
+	private PacketCodec.Format parseFormat(String value) throws ConfigurationException
+	{
+		try
+		{
+			return PacketCodec.Format.valueOf(value.trim().toUpperCase());
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new ConfigurationException("expected packet format but found '%s'", value);
+		}
+	}
+	
 	/**
 	 * This  exception is  thrown when  parsing
 	 * the  server configuration  from the  XML
@@ -6,6 +6,7 @@ import ecs.world.*;
 
 import network.*;
 import network.packet.*;
+import network.packet.codec.*;
 import network.packet.message.*;
 import network.packet.message.LoginMessage.*;
 
@@ -44,6 +45,12 @@ public class ClientList
 	 */
 	private final LoginObserver loginObserver;
 
+	/**
+	 * The packet format offered to clients when
+	 * they log in.
+	 */
+	private final PacketCodec.Format packetFormat;
+
 	/**
 	 * Creates  a client  list  with a  maximum
 	 * number of connected clients.
@@ -54,12 +61,15 @@ public class ClientList
 	 * @param loginObserver  The login observer
 	 * to  notify  when  players log  into  the
 	 * server.
+	 * @param packetFormat The packet format to
+	 * offer to clients when they log in.
 	 */
-	public ClientList(int maxClients, LoginObserver loginObserver)
+	public ClientList(int maxClients, LoginObserver loginObserver, PacketCodec.Format packetFormat)
 	{
-		Log.info(COMPONENT, "Ready (%d clients maximum).", maxClients);
+		Log.info(COMPONENT, "Ready (%d clients maximum, %s packets).", maxClients, packetFormat);
 		clientMap = new HashMap<NIOSocket, NetClient>(maxClients);
 		this.loginObserver = loginObserver;
+		this.packetFormat = packetFormat;
 	}
 
 	/**
@@ -190,18 +200,45 @@ public class ClientList
 	 * <p>
 	 * If {@code location} is {@code null} then
 	 * broadcasts to every connected client.
+	 * <p>
+	 * The packet  is encoded  only  once  (per
+	 * packet format) and the encoded bytes are
+	 * shared by every recipient.
 	 *
 	 * @param location The world location.
 	 * @param packet The network packet.
 	 */
 	public synchronized void broadcastPacket(final Location location, final NetPacket packet)
+	{
+		EncodedPacket encoded = new EncodedPacket(packet);
+
+		try
+		{
+			broadcastPacket(location, encoded);
+		}
+		finally
+		{
+			encoded.release();
+		}
+	}
+
+	/**
+	 * This method  broadcasts an already encoded
+	 * packet, exactly like {@code broadcastPacket}
+	 * above. The caller keeps its own reference
+	 * to the packet and must release it.
+	 *
+	 * @param location The world location.
+	 * @param packet The encoded packet.
+	 */
+	public synchronized void broadcastPacket(final Location location, final EncodedPacket packet)
 	{
 		filter(new ClientTask()
 		{
 			@Override
 			public boolean nextClient(NetClient client)
 			{
-				if ((client.isLoggedIn()) && (location == null) || (client.getLocation() == location)) client.sendPacket(packet);
+				if ((client.isLoggedIn()) && ((location == null) || (client.getLocation() == location))) client.sendPacket(packet);
 
 				return true;
 			}
@@ -253,6 +290,12 @@ public class ClientList
 				/* Name is valid and available, login accepted. */
 				message.setLoginStatus(LoginStatus.LOGGED_IN);
 				client.setName(message.getPlayerName());
+
+				/* Agree on a packet format, the reply already uses it. */
+				PacketCodec.Format format = PacketCodec.Format.SERIALIZED;
+				if (packetFormat == PacketCodec.Format.BINARY) format = PacketCodec.negotiate(message.getCodecVersion());
+				message.setCodecVersion(format == PacketCodec.Format.BINARY ? PacketCodec.VERSION : 0);
+				client.setPacketFormat(format);
 			}
 		}
 
@@ -0,0 +1,109 @@
+package network.server.back_end;
+
+import java.util.*;
+
+import ecs.components.*;
+
+import network.packet.*;
+
+/**
+ * This  class remembers,  for every entity
+ * of a single location, the last quantized
+ * position   and  velocity   sent  to  the
+ * clients  in  that  location. It rewrites
+ * snapshots  so that  these components are
+ * sent as small fixed-point deltas against
+ * that baseline.
+ * <p>
+ * The  baseline is  shared by every client
+ * in the  location, because  snapshots are
+ * only encoded once for all of them. It is
+ * thus cleared whenever a client joins, so
+ * that   the  next   snapshot  only  holds
+ * absolute values,  and also  every {@code
+ * KEYFRAME_INTERVAL}  snapshots  to  bound
+ * any rounding drift.
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+public class DeltaBaseline
+{
+	private final Map<Long, int[]> positions = new HashMap<Long, int[]>();
+	private final Map<Long, int[]> velocities = new HashMap<Long, int[]>();
+
+	/**
+	 * The  number of snapshots after which the
+	 * baseline is reset and absolute values are
+	 * sent again.
+	 */
+	public static final int KEYFRAME_INTERVAL = 64;
+
+	private int snapshotCount = 0;
+
+	/**
+	 * Delta encodes every position and velocity
+	 * update of a snapshot, and advances  the
+	 * baseline accordingly.
+	 *
+	 * @param snapshot The snapshot to encode.
+	 *
+	 * @return Returns the encoded snapshot.
+	 */
+	public SnapshotPacket encode(SnapshotPacket snapshot)
+	{
+		if (++snapshotCount == KEYFRAME_INTERVAL) clear();
+
+		SnapshotPacket encoded = new SnapshotPacket(new ArrayList<UpdatePacket>(snapshot.updates.size()));
+		for (UpdatePacket update : snapshot.updates) encoded.add(encode(update));
+		return encoded;
+	}
+
+	private UpdatePacket encode(UpdatePacket update)
+	{
+		if (update.kind == UpdatePacket.Kind.DELETE)
+		{
+			positions.remove(update.entityID);
+			velocities.remove(update.entityID);
+			return update;
+		}
+
+		if (update.removed != null)
+		{
+			if (update.removed.contains(Position.class)) positions.remove(update.entityID);
+			if (update.removed.contains(Velocity.class)) velocities.remove(update.entityID);
+		}
+
+		if (update.modified == null) return update;
+
+		Set<Component> modified = new HashSet<Component>();
+		List<ComponentDelta> deltas = new ArrayList<ComponentDelta>();
+
+		for (Component component : update.modified)
+		{
+			if (!ComponentDelta.supports(component)) modified.add(component);
+			else
+			{
+				Map<Long, int[]> baselines = ((component instanceof Position) ? positions : velocities);
+				int[] value = ComponentDelta.quantize(component);
+				int[] baseline = baselines.put(update.entityID, value);
+
+				if (baseline == null) deltas.add(new ComponentDelta(component.getClass(), true, value[0], value[1]));
+				else deltas.add(new ComponentDelta(component.getClass(), false, value[0] - baseline[0], value[1] - baseline[1]));
+			}
+		}
+
+		if (deltas.isEmpty()) return update;
+		return new UpdatePacket(update.kind, update.entityID, (modified.isEmpty() ? null : modified), update.removed, deltas);
+	}
+
+	/**
+	 * Forgets the  baseline of every entity in
+	 * the location.
+	 */
+	public void clear()
+	{
+		positions.clear();
+		velocities.clear();
+		snapshotCount = 0;
+	}
+}
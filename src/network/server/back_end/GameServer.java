@@ -11,6 +11,7 @@ import ecs.components.*;
 import network.*;
 import network.server.*;
 import network.packet.*;
+import network.packet.codec.*;
 import network.packet.message.*;
 import network.packet.message.LoginMessage.*;
 
@@ -60,6 +61,13 @@ public class GameServer implements Configurable
 	 */
 	private final WorldState worldState;
 
+	/**
+	 * The  interest manager, which filters the
+	 * entity  updates sent  to each client  by
+	 * distance ({@code null} if disabled).
+	 */
+	private final InterestManager interestManager;
+
 	@Override
 	public void validate(Configuration config) throws IllegalArgumentException
 	{
@@ -68,6 +76,9 @@ public class GameServer implements Configurable
 
 		if (config.getMaxPlayers() < 1)
 			throw new IllegalArgumentException("Server requires at least one player");
+
+		if (config.getInterestRadius() < 0)
+			throw new IllegalArgumentException("Invalid interest radius.");
 	}
 
 	public GameServer(Configuration config) throws IOException
@@ -83,7 +94,8 @@ public class GameServer implements Configurable
 		service.setExceptionObserver(observer);
 		ServiceLoop.execute(service, observer);
 
-		clientList = new ClientList(config.getMaxPlayers(), observer);
+		clientList = new ClientList(config.getMaxPlayers(), observer, config.getPacketFormat());
+		interestManager = (config.getInterestRadius() > 0 ? new InterestManager(config.getInterestRadius()) : null);
 		worldState = new WorldState(new ConcreteWorldObserver(), config);
 
 		/* Clients can now connect. */
@@ -284,48 +296,120 @@ public class GameServer implements Configurable
 	 */
 	private class ConcreteWorldObserver implements WorldObserver
 	{
+		/**
+		 * The delta  encoding baseline of every
+		 * location (see {@code DeltaBaseline}).
+		 */
+		private final Map<Location, DeltaBaseline> baselines = new HashMap<Location, DeltaBaseline>();
+
 		@Override
 		public void commitWorldState(final World world)
 		{
+			/* One snapshot per location, sent once per tick. */
+			final Map<Location, SnapshotPacket> snapshots = new HashMap<Location, SnapshotPacket>();
+
 			for (Location location : world.getLocations())
 			{
+				SnapshotPacket snapshot = new SnapshotPacket();
+				snapshots.put(location, snapshot);
+
 				for (Entity entity : location.clearRemovedEntities())
-					clientList.broadcastPacket(location, UpdatePacket.entityDeleted(entity));
+					snapshot.add(UpdatePacket.entityDeleted(entity));
 
-				for (Entity entity : location.getEntities())
+				for (Entity entity : location.clearDirtyEntities())
 				{
 					/* Get its removed and modified components. */
 					Set<Class<? extends Component>> removedComponents = entity.clearRemovedComponents();
 					Set<Component> modifiedComponents = entity.clearModifiedComponents();
 
 					if ((removedComponents.size() > 0) || (modifiedComponents.size() > 0))
-						clientList.broadcastPacket(location, UpdatePacket.componentsUpdated(entity,
-															 modifiedComponents, removedComponents));
+						snapshot.add(UpdatePacket.componentsUpdated(entity, modifiedComponents, removedComponents));
 				}
 			}
 
+			final List<NetClient> moved = new ArrayList<NetClient>();
+
 			clientList.filter(new ClientList.ClientTask()
 			{
 				@Override
 				public boolean nextClient(NetClient client)
 				{
-					if (client.locationChanged())
-					{
-						Location oldLocation = client.getLocation();
-						client.updateLocation();
+					client.ping();
+					if (client.locationChanged()) moved.add(client);
+					return true;
+				}
+			});
+
+			/* In a fixed order, so that replayed ticks move them the same way. */
+			Collections.sort(moved, WorldState.BY_NAME);
+
+			for (NetClient client : moved)
+			{
+				Location oldLocation = client.getLocation();
+				client.updateLocation();
+
+				client.sendPacket(new LocationChangeMessage(client.getLocation()));
 
-						client.sendPacket(new LocationChangeMessage(client.getLocation()));
+				/* Remove player from his previous location. */
+				if (oldLocation != null) snapshotOf(snapshots, oldLocation).add(UpdatePacket.entityDeleted(client.getPlayer()));
+				
+				/* And add player to his new location. */
+				snapshotOf(snapshots, client.getLocation()).add(UpdatePacket.entityCreated(client.getPlayer()));
 
-						/* Remove player from his previous location. */
-						if (oldLocation != null) clientList.broadcastPacket(oldLocation, UpdatePacket.entityDeleted(client.getPlayer()));
-						
-						/* And add player to his new location. */
-						clientList.broadcastPacket(client.getLocation(), UpdatePacket.entityCreated(client.getPlayer()));
+				/* The new player has no baseline yet, send absolute values. */
+				baselineOf(client.getLocation()).clear();
+				if (interestManager != null) interestManager.clientJoined(client, client.getLocation());
+			}
+
+			if (interestManager == null)
+			{
+				for (Map.Entry<Location, SnapshotPacket> entry : snapshots.entrySet())
+					if (!entry.getValue().isEmpty())
+						clientList.broadcastPacket(entry.getKey(), baselineOf(entry.getKey()).encode(entry.getValue()));
+			}
+			else dispatchByInterest(snapshots);
+		}
+
+		private void dispatchByInterest(Map<Location, SnapshotPacket> snapshots)
+		{
+			final Map<Location, List<NetClient>> clients = new HashMap<Location, List<NetClient>>();
+
+			clientList.filter(new ClientList.ClientTask()
+			{
+				@Override
+				public boolean nextClient(NetClient client)
+				{
+					if ((client.isLoggedIn()) && (client.getLocation() != null))
+					{
+						List<NetClient> list = clients.get(client.getLocation());
+						if (list == null) clients.put(client.getLocation(), list = new ArrayList<NetClient>());
+						list.add(client);
 					}
 
 					return true;
 				}
 			});
+
+			/* Entities may enter or leave a client's view even when nothing changed. */
+			for (Map.Entry<Location, SnapshotPacket> entry : snapshots.entrySet())
+			{
+				SnapshotPacket snapshot = baselineOf(entry.getKey()).encode(entry.getValue());
+				if (clients.containsKey(entry.getKey())) interestManager.dispatch(entry.getKey(), snapshot, clients.get(entry.getKey()));
+			}
+		}
+
+		private DeltaBaseline baselineOf(Location location)
+		{
+			DeltaBaseline baseline = baselines.get(location);
+			if (baseline == null) baselines.put(location, baseline = new DeltaBaseline());
+			return baseline;
+		}
+
+		private SnapshotPacket snapshotOf(Map<Location, SnapshotPacket> snapshots, Location location)
+		{
+			SnapshotPacket snapshot = snapshots.get(location);
+			if (snapshot == null) snapshots.put(location, snapshot = new SnapshotPacket());
+			return snapshot;
 		}
 	}
 
@@ -371,6 +455,7 @@ public class GameServer implements Configurable
 		{
 			NetClient client = clientList.removeClient(socket);
 			if (client.isLoggedIn()) worldState.removePlayer(client);
+			if (interestManager != null) interestManager.clientLeft(client);
 
 			if (e != null) Log.info(e, COMPONENT, "Lost connection with %s.", client);
 			else Log.info(COMPONENT, "Disconnected %s.", client);
@@ -411,10 +496,20 @@ public class GameServer implements Configurable
 			}
 		}
 
+		/**
+		 * Called when a packet has been written to
+		 * a client socket. Shared encoded packets
+		 * are  tagged  with  themselves,  and the
+		 * reference taken for  this socket can now
+		 * be released.
+		 *
+		 * @param socket The destination socket.
+		 * @param tag The packet tag, if any.
+		 */
 		@Override
 		public void packetSent(NIOSocket socket, Object tag)
 		{
-			return;
+			if (tag instanceof EncodedPacket) ((EncodedPacket)tag).release();
 		}
 	}
 }
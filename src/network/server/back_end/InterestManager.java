@@ -0,0 +1,188 @@
+package network.server.back_end;
+
+import java.io.*;
+import java.util.*;
+
+import ecs.world.*;
+import ecs.entity.*;
+import ecs.components.*;
+
+import network.*;
+import network.packet.*;
+import network.packet.codec.*;
+
+import log.Log;
+
+/**
+ * This  class implements  area of interest
+ * filtering.  Every  client  only receives
+ * updates  for the entities within a given
+ * radius of  its player,  found through  a
+ * spatial  grid over  the location,  along
+ * with the entities which have no position
+ * at all.
+ * <p>
+ * The  class remembers the set of entities
+ * each client  currently knows about. When
+ * an  entity enters this radius the client
+ * receives  its  full  state,  and when it
+ * leaves  the radius the client is told to
+ * delete  it.  Updates  for  entities  the
+ * client  does not  know about  are simply
+ * not sent.
+ * <p>
+ * Shared  updates  are  encoded  once  per
+ * tick, and  each client  snapshot is then
+ * built  out of  these encoded updates, so
+ * the encoding cost does not depend on the
+ * number of clients.
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+public class InterestManager
+{
+	private final static String COMPONENT = "Interest Manager";
+
+	/**
+	 * The set of entities each client knows of,
+	 * by entity ID.
+	 */
+	private final Map<NetClient, Set<Long>> interests = new HashMap<NetClient, Set<Long>>();
+
+	private final double radius;
+
+	/**
+	 * Creates an interest manager.
+	 *
+	 * @param radius The  distance around  the
+	 * player within which entities are visible.
+	 */
+	public InterestManager(double radius)
+	{
+		if (!(radius > 0)) throw new IllegalArgumentException("Interest radius must be positive.");
+		this.radius = radius;
+	}
+
+	/**
+	 * Called when a client has  been sent the
+	 * full state of a location, and therefore
+	 * knows about every entity in it.
+	 *
+	 * @param client The client.
+	 * @param location Its new location.
+	 */
+	public synchronized void clientJoined(NetClient client, Location location)
+	{
+		interests.put(client, entityIDs(location.getEntities()));
+	}
+
+	/**
+	 * Called when a client disconnects.
+	 *
+	 * @param client The client.
+	 */
+	public synchronized void clientLeft(NetClient client)
+	{
+		interests.remove(client);
+	}
+
+	/**
+	 * Sends the updates of a  location to every
+	 * client  in it, each  client only getting
+	 * the updates it is interested in.
+	 *
+	 * @param location The world location.
+	 * @param snapshot The location's snapshot.
+	 * @param clients The clients in the location.
+	 */
+	public synchronized void dispatch(Location location, SnapshotPacket snapshot, Collection<NetClient> clients)
+	{
+		Map<Long, Entity> entities = new HashMap<Long, Entity>();
+		Set<Long> unpositioned = new HashSet<Long>();
+
+		for (Entity entity : location.getEntities())
+		{
+			entities.put(entity.getID(), entity);
+			if (!entity.hasAll(Position.class)) unpositioned.add(entity.getID());
+		}
+
+		SpatialGrid grid = new SpatialGrid(radius);
+		grid.rebuild(location.getEntities());
+
+		/* Each shared update is encoded at most once. */
+		Map<UpdatePacket, byte[]> encoded = new IdentityHashMap<UpdatePacket, byte[]>();
+
+		for (NetClient client : clients)
+		{
+			Set<Long> known = interests.get(client);
+			if (known == null) known = new HashSet<Long>(entities.keySet());
+
+			Set<Long> visible = visibleTo(client, grid, entities.keySet(), unpositioned);
+			List<UpdatePacket> updates = new ArrayList<UpdatePacket>();
+
+			for (UpdatePacket update : snapshot.updates)
+			{
+				if (update.kind == UpdatePacket.Kind.DELETE)
+				{
+					if (known.contains(update.entityID)) updates.add(update);
+				}
+				else if (known.contains(update.entityID) && visible.contains(update.entityID)) updates.add(update);
+			}
+
+			for (Long id : visible)
+				if (!known.contains(id)) updates.add(UpdatePacket.entityCreated(entities.get(id)));
+
+			for (Long id : known)
+				if ((!visible.contains(id)) && (entities.containsKey(id))) updates.add(new UpdatePacket(UpdatePacket.Kind.DELETE, id, null, null));
+
+			interests.put(client, visible);
+			if (!updates.isEmpty()) send(client, updates, encoded);
+		}
+	}
+
+	private Set<Long> visibleTo(NetClient client, SpatialGrid grid, Set<Long> all, Set<Long> unpositioned)
+	{
+		Entity player = client.getPlayer();
+		if ((player == null) || (!player.hasAll(Position.class))) return new HashSet<Long>(all);
+
+		Position position = player.getComponent(Position.class);
+		Set<Long> visible = entityIDs(grid.queryRadius(position.getX(), position.getY(), radius));
+		visible.addAll(unpositioned);
+		visible.add(player.getID());
+		return visible;
+	}
+
+	private void send(NetClient client, List<UpdatePacket> updates, Map<UpdatePacket, byte[]> encoded)
+	{
+		if (client.getPacketFormat() != PacketCodec.Format.BINARY)
+		{
+			client.sendPacket(new SnapshotPacket(updates));
+			return;
+		}
+
+		try
+		{
+			List<byte[]> frame = new ArrayList<byte[]>(updates.size());
+
+			for (UpdatePacket update : updates)
+			{
+				byte[] data = encoded.get(update);
+				if (data == null) encoded.put(update, data = PacketCodec.encodeUpdate(update));
+				frame.add(data);
+			}
+
+			client.sendEncodedPacket(PacketCodec.encodeSnapshot(frame));
+		}
+		catch (IOException error)
+		{
+			Log.warning(error, COMPONENT, "Serialization error.");
+		}
+	}
+
+	private static Set<Long> entityIDs(Collection<Entity> entities)
+	{
+		Set<Long> ids = new HashSet<Long>();
+		for (Entity entity : entities) ids.add(entity.getID());
+		return ids;
+	}
+}
@@ -0,0 +1,141 @@
+package network.server.back_end;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * This  is  a  fixed-size  histogram  of
+ * durations in nanoseconds, in the style
+ * of  HdrHistogram. Buckets  are linear
+ * below 32 ns, and above  that each power
+ * of two is split  into 16 sub-buckets, so
+ * any recorded  value is known  to within
+ * about  6%  whatever its  magnitude,  and
+ * the whole {@code long} range fits in  a
+ * few hundred buckets.
+ * <p>
+ * Recording  never allocates or  locks, so
+ * it is cheap enough to  be done on every
+ * tick, and may be done concurrently from
+ * several threads.
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+public class LatencyHistogram
+{
+	private static final int SUB_BUCKETS = 16;
+	private static final int BUCKETS = SUB_BUCKETS * 60;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Returns the  bucket a value falls into.
+	 */
+	static int bucketOf(long value)
+	{
+		if (value < 2 * SUB_BUCKETS) return (int)value;
+
+		int shift = (63 - Long.numberOfLeadingZeros(value)) - 4;
+		return SUB_BUCKETS * shift + (int)(value >>> shift);
+	}
+
+	/**
+	 * Returns the largest value which falls in
+	 * a given bucket.
+	 */
+	static long highestValueOf(int bucket)
+	{
+		if (bucket < 2 * SUB_BUCKETS) return bucket;
+
+		int shift = bucket / SUB_BUCKETS - 1;
+		long mantissa = bucket % SUB_BUCKETS + SUB_BUCKETS;
+		return ((mantissa + 1) << shift) - 1;
+	}
+
+	/**
+	 * Records a duration.
+	 *
+	 * @param nanos The  duration, in nanoseconds
+	 * (negative durations are recorded as zero).
+	 */
+	public void record(long nanos)
+	{
+		if (nanos < 0) nanos = 0;
+
+		counts.incrementAndGet(bucketOf(nanos));
+		count.incrementAndGet();
+		total.addAndGet(nanos);
+
+		long current;
+		while ((current = max.get()) < nanos)
+			if (max.compareAndSet(current, nanos)) break;
+	}
+
+	/**
+	 * Returns the number of recorded values.
+	 */
+	public long getCount()
+	{
+		return count.get();
+	}
+
+	/**
+	 * Returns the largest recorded value, in
+	 * nanoseconds.
+	 */
+	public long getMax()
+	{
+		return max.get();
+	}
+
+	/**
+	 * Returns  the mean of the recorded values,
+	 * in nanoseconds.
+	 */
+	public double getMean()
+	{
+		long n = count.get();
+		return (n == 0) ? 0 : (double)total.get() / n;
+	}
+
+	/**
+	 * Returns the value  below which a given
+	 * fraction of the  recorded values fall,
+	 * rounded  up to  its bucket's  highest
+	 * value (but never above the maximum).
+	 *
+	 * @param fraction The fraction, from 0 to 1.
+	 *
+	 * @return  Returns the value, in nanoseconds,
+	 * or zero if nothing was recorded.
+	 */
+	public long getPercentile(double fraction)
+	{
+		long n = count.get();
+		if (n == 0) return 0;
+
+		long rank = Math.max(1, (long)Math.ceil(fraction * n));
+		long seen = 0;
+
+		for (int bucket = 0; bucket < BUCKETS; ++bucket)
+		{
+			seen += counts.get(bucket);
+			if (seen >= rank) return Math.min(highestValueOf(bucket), getMax());
+		}
+
+		return getMax();
+	}
+
+	/**
+	 * Forgets every recorded value.
+	 */
+	public void reset()
+	{
+		for (int bucket = 0; bucket < BUCKETS; ++bucket) counts.set(bucket, 0);
+		count.set(0);
+		total.set(0);
+		max.set(0);
+	}
+}
@@ -0,0 +1,37 @@
+package network.server.back_end;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * JUnit tests for the tick latency histogram.
+ */
+public class LatencyHistogramTest {
+
+	@Test
+	public void testBuckets() throws Exception{
+		long previous = -1;
+		for (long value = 0; value < 1L << 20; value += 7){
+			int bucket = LatencyHistogram.bucketOf(value);
+			long highest = LatencyHistogram.highestValueOf(bucket);
+			assertTrue("Value should fit its bucket", value <= highest);
+			assertTrue("Buckets should be precise", highest - value <= value / 16);
+			assertTrue("Buckets should be ordered", highest >= previous);
+			previous = highest;
+		}
+		assertEquals("Largest value should fit", Long.MAX_VALUE, LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(Long.MAX_VALUE)));
+	}
+
+	@Test
+	public void testPercentiles() throws Exception{
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int t = 1; t <= 100; ++t) histogram.record(t * 1000000L);
+		assertEquals("Count should match", 100, histogram.getCount());
+		assertEquals("Max should be exact", 100000000L, histogram.getMax());
+		assertEquals("Median should be close", 50e6, histogram.getPercentile(0.50), 50e6 / 16);
+		assertEquals("p99 should be close", 99e6, histogram.getPercentile(0.99), 99e6 / 16);
+		histogram.reset();
+		assertEquals("Reset should forget values", 0, histogram.getPercentile(0.99));
+	}
+}
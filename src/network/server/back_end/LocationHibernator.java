@@ -0,0 +1,172 @@
+package network.server.back_end;
+
+import java.io.*;
+import java.util.*;
+
+import ecs.world.*;
+
+import network.*;
+
+import log.*;
+
+/**
+ * This class decides which locations are
+ * simulated  every tick. A location which
+ * has had no players  in it  for a while
+ * hibernates: it  is no longer  processed,
+ * its physics world is freed, and  its
+ * entities may be paged out to disk. It
+ * wakes up  as  soon as a player is about
+ * to enter it.
+ * <p>
+ * This  class  is  only  used  from  the
+ * game logic thread.
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+public class LocationHibernator
+{
+	public static final String COMPONENT = "Location Hibernator";
+
+	private final Map<Location, Long> lastOccupied = new IdentityHashMap<Location, Long>();
+	private final Set<Location> hibernating = Collections.newSetFromMap(new IdentityHashMap<Location, Boolean>());
+
+	private final WorldPersistence persistence;
+	private final long delay;
+	private final boolean pageOut;
+
+	/**
+	 * Creates a hibernator.
+	 *
+	 * @param persistence The persistence used
+	 * to page out locations, or {@code null} if
+	 * locations are never paged out.
+	 * @param delay  The number of ticks after
+	 * which an empty location hibernates, zero
+	 * to disable hibernation.
+	 * @param pageOut Whether to page out the
+	 * entities of hibernating locations.
+	 */
+	public LocationHibernator(WorldPersistence persistence, long delay, boolean pageOut)
+	{
+		this.persistence = persistence;
+		this.pageOut = pageOut;
+		this.delay = delay;
+	}
+
+	/**
+	 * Wakes up  every location a player is in
+	 * or is about to enter, and hibernates the
+	 * ones which  have been empty long enough.
+	 * This must be called every tick, before
+	 * the locations are processed.
+	 *
+	 * @param world The game world.
+	 * @param clients The active players.
+	 * @param tick The current tick.
+	 */
+	public void update(World world, Collection<NetClient> clients, long tick)
+	{
+		if (delay <= 0) return;
+
+		for (NetClient client : clients)
+		{
+			if (client.getLocation() != null) occupied(client.getLocation(), tick);
+			if (client.getNewLocation() != null) occupied(client.getNewLocation(), tick);
+		}
+
+		for (Location location : world.getLocations())
+		{
+			Long last = lastOccupied.get(location);
+
+			if (last == null) lastOccupied.put(location, tick);
+			else if ((tick - last >= delay) && (!hibernating.contains(location)))
+				hibernate(world, location);
+		}
+	}
+
+	/**
+	 * Returns whether a location is hibernating,
+	 * in which case it should not be processed.
+	 */
+	public boolean isHibernating(Location location)
+	{
+		return hibernating.contains(location);
+	}
+
+	/**
+	 * Returns the tick at which a location was
+	 * last occupied,  or {@code null} if it has
+	 * not been looked at yet.
+	 */
+	public Long getLastOccupied(Location location)
+	{
+		return lastOccupied.get(location);
+	}
+
+	/**
+	 * Restores the state of a location, as it
+	 * was saved with {@code getLastOccupied} and
+	 * {@code isHibernating}. This is used  when
+	 * replaying recorded ticks.
+	 */
+	public void restore(Location location, Long last, boolean hibernates)
+	{
+		if (last != null) lastOccupied.put(location, last);
+		if (hibernates) hibernating.add(location);
+	}
+
+	/**
+	 * Returns whether the entities of hibernating
+	 * locations are paged out.
+	 */
+	public boolean isPagingOut()
+	{
+		return pageOut;
+	}
+
+	/**
+	 * Returns the number of hibernating locations.
+	 */
+	public int getHibernatingCount()
+	{
+		return hibernating.size();
+	}
+
+	private void occupied(Location location, long tick)
+	{
+		lastOccupied.put(location, tick);
+		if (hibernating.remove(location)) wake(location);
+	}
+
+	private void hibernate(World world, Location location)
+	{
+		world.getPhysics().removeLocation(location);
+		hibernating.add(location);
+
+		try
+		{
+			if (pageOut) persistence.pageOut(location);
+		}
+		catch (IOException error)
+		{
+			Log.warning(error, COMPONENT, "Failed to page out '%s', keeping it in memory.", location.getName());
+		}
+
+		Log.debug(COMPONENT, "Location '%s' is now hibernating.", location.getName());
+	}
+
+	private void wake(Location location)
+	{
+		try
+		{
+			if (persistence != null) persistence.pageIn(location);
+		}
+		catch (IOException error)
+		{
+			Log.severe(error, COMPONENT, "Failed to page in '%s'.", location.getName());
+		}
+
+		Log.debug(COMPONENT, "Location '%s' woke up.", location.getName());
+	}
+}
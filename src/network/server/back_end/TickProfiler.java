@@ -0,0 +1,193 @@
+package network.server.back_end;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * This  class  keeps  track of  how  long
+ * each  phase  of the  server tick takes,
+ * with one  histogram per  phase, as well
+ * as how often  whole ticks  overrun their
+ * time budget.
+ * <p>
+ * Phases  are  identified  by name,  and
+ * are listed  in  the order in which they
+ * were first recorded.
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+public class TickProfiler
+{
+	/**
+	 * The name of the phase covering the whole
+	 * server tick.
+	 */
+	public static final String TICK = "Tick";
+
+	private final Map<String, LatencyHistogram> phases = new LinkedHashMap<String, LatencyHistogram>();
+
+	private final AtomicLong overruns = new AtomicLong();
+	private final long budget;
+
+	/**
+	 * Creates a profiler for a given tick budget.
+	 *
+	 * @param budget  The time budget of a tick,
+	 * in nanoseconds.
+	 */
+	public TickProfiler(long budget)
+	{
+		this.budget = budget;
+	}
+
+	/**
+	 * Returns the histogram of a phase, creating
+	 * it if needed.
+	 *
+	 * @param phase The phase name.
+	 */
+	public LatencyHistogram getPhase(String phase)
+	{
+		synchronized (phases)
+		{
+			LatencyHistogram histogram = phases.get(phase);
+			if (histogram == null) phases.put(phase, histogram = new LatencyHistogram());
+			return histogram;
+		}
+	}
+
+	/**
+	 * Records the duration of a tick phase.
+	 *
+	 * @param phase The phase name.
+	 * @param start The {@code System.nanoTime()}
+	 * at which the phase started.
+	 *
+	 * @return Returns the current time, so that
+	 * consecutive phases can be chained.
+	 */
+	public long record(String phase, long start)
+	{
+		long now = System.nanoTime();
+		getPhase(phase).record(now - start);
+		return now;
+	}
+
+	/**
+	 * Records the duration of a tick phase whose
+	 * histogram was looked up beforehand (see
+	 * {@code getPhase}), which is cheaper in a
+	 * loop.
+	 *
+	 * @param phase The phase histogram.
+	 * @param start The {@code System.nanoTime()}
+	 * at which the phase started.
+	 *
+	 * @return Returns the current time.
+	 */
+	public long record(LatencyHistogram phase, long start)
+	{
+		long now = System.nanoTime();
+		phase.record(now - start);
+		return now;
+	}
+
+	/**
+	 * Records the  duration of a  whole tick,
+	 * counting it as an overrun if it exceeds
+	 * the tick budget.
+	 *
+	 * @param start The {@code System.nanoTime()}
+	 * at which the tick started.
+	 */
+	public void recordTick(long start)
+	{
+		long elapsed = System.nanoTime() - start;
+		getPhase(TICK).record(elapsed);
+		if (elapsed > budget) overruns.incrementAndGet();
+	}
+
+	/**
+	 * Returns the number of ticks which took
+	 * longer than the tick budget.
+	 */
+	public long getOverruns()
+	{
+		return overruns.get();
+	}
+
+	/**
+	 * Returns the tick budget, in nanoseconds.
+	 */
+	public long getBudget()
+	{
+		return budget;
+	}
+
+	/**
+	 * Returns a snapshot of every phase with
+	 * its histogram, in the order the phases
+	 * were first recorded.
+	 */
+	public Map<String, LatencyHistogram> getPhases()
+	{
+		synchronized (phases)
+		{
+			return new LinkedHashMap<String, LatencyHistogram>(phases);
+		}
+	}
+
+	/**
+	 * Forgets  every recorded duration and
+	 * overrun.
+	 */
+	public void reset()
+	{
+		synchronized (phases)
+		{
+			for (LatencyHistogram histogram : phases.values()) histogram.reset();
+			overruns.set(0);
+		}
+	}
+
+	/**
+	 * Prints how long each phase takes (median,
+	 * 99th percentile and maximum) as a table.
+	 *
+	 * @param out The stream to print to.
+	 */
+	public void print(PrintStream out)
+	{
+		Map<String, LatencyHistogram> phases = getPhases();
+		LatencyHistogram tick = phases.get(TICK);
+
+		if ((tick == null) || (tick.getCount() == 0))
+		{
+			out.printf("  No ticks recorded yet - nothing to display.\n");
+			return;
+		}
+
+		out.printf("  %d tick(s), %d overrun(s) of the %.2f ms budget (%.1f%%).\n\n",
+				   tick.getCount(), getOverruns(), getBudget() / 1e6,
+				   100.0 * getOverruns() / tick.getCount());
+		out.printf("  Phase                                     Count     p50 (ms)  p99 (ms)  max (ms)\n");
+		out.printf("  ========================================  ========  ========  ========  ========\n");
+
+		for (Map.Entry<String, LatencyHistogram> phase : phases.entrySet())
+		{
+			LatencyHistogram histogram = phase.getValue();
+			out.printf("  %-40s  %8d  %8.3f  %8.3f  %8.3f\n",
+					   ellipsis(phase.getKey(), 40), histogram.getCount(),
+					   histogram.getPercentile(0.50) / 1e6,
+					   histogram.getPercentile(0.99) / 1e6,
+					   histogram.getMax() / 1e6);
+		}
+	}
+
+	private static String ellipsis(String string, int maxLength)
+	{
+		if (string.length() <= maxLength) return string;
+		else return string.substring(0, maxLength - 3) + "...";
+	}
+}
@@ -0,0 +1,330 @@
+package network.server.back_end;
+
+import java.io.*;
+import java.util.*;
+
+import ecs.world.*;
+import ecs.entity.*;
+import ecs.helpers.*;
+import ecs.components.*;
+
+import network.*;
+import network.packet.codec.*;
+import network.server.back_end.GameLogic.*;
+
+import dataStorage.BinaryStorage;
+import log.*;
+
+/**
+ * This class records server ticks to a file,
+ * so that they can be replayed offline (see
+ * {@code TickReplayer}). The recording holds
+ * the world as it was when it started, then
+ * for every tick its seed, time and first
+ * entity ID, and the players who joined or
+ * left and the actions they sent during that
+ * tick.
+ * <p>
+ * A checksum of the world is also recorded
+ * every now and then, and when the recording
+ * ends, to find out whether a replay still
+ * matches what happened.
+ * <p>
+ * This  class  is  only  used  from  the
+ * game logic thread. If the file cannot be
+ * written, the recording fails  and stops,
+ * but the server goes on.
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+public class TickRecorder
+{
+	public static final String COMPONENT = "Tick Recorder";
+
+	/** Magic number at the start of every recording ("TICK"). */
+	public static final int MAGIC = 0x5449434B;
+
+	/** Version of the recording layout. */
+	public static final int VERSION = 2;
+
+	/**
+	 * The tags of the records following the
+	 * initial world.
+	 */
+	static final int END      = 0;
+	static final int TICK     = 1;
+	static final int ADD      = 2;
+	static final int REMOVE   = 3;
+	static final int ACTION   = 4;
+	static final int CHECKSUM = 5;
+
+	/**
+	 * The number of ticks between two checksums
+	 * of the world.
+	 */
+	static final long CHECKSUM_TICKS = 60;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Every  client is  recorded  as a number
+	 * rather than by name, as a player may log
+	 * in again before his previous connection
+	 * has been removed.
+	 */
+	private final Map<NetClient, Integer> clients = new IdentityHashMap<NetClient, Integer>();
+
+	private final File file;
+	private final World world;
+	private final WireWriter out;
+	private final long startTick;
+	private long ticks = 0;
+	private boolean failed = false;
+
+	/**
+	 * Starts  a recording. This  must be called
+	 * at the start of a tick, right after a world
+	 * commit  (when no change is pending), and
+	 * with no physics bodies left, as they are
+	 * not recorded.
+	 *
+	 * @param file The file to record to.
+	 * @param world The game world.
+	 * @param tick The tick about to run.
+	 * @param updateRate The update rate.
+	 * @param networkTicks The number of ticks
+	 * between two world commits.
+	 * @param hibernateTicks The number of ticks
+	 * before a location hibernates.
+	 * @param hibernator The location hibernator.
+	 * @param players The players in the game.
+	 */
+	public TickRecorder(File file, World world, long tick, double updateRate, int networkTicks, long hibernateTicks,
+						LocationHibernator hibernator, Collection<NetClient> players) throws IOException
+	{
+		out = new WireWriter(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+		this.startTick = tick;
+		this.world = world;
+		this.file = file;
+
+		try
+		{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(PacketCodec.VERSION);
+			out.writeDouble(updateRate);
+			out.writeVarInt(networkTicks);
+			out.writeLong(hibernateTicks);
+			out.writeLong(tick);
+
+			BinaryStorage.write(out, world);
+			out.resetReferences();
+
+			out.writeVarInt(world.getLocations().size());
+
+			for (Location location : world.getLocations())
+			{
+				Long last = hibernator.getLastOccupied(location);
+				out.writeString(location.getName());
+				out.writeLong(last == null ? -1 : last);
+				out.writeBoolean(hibernator.isHibernating(location));
+			}
+
+			out.writeVarInt(players.size());
+
+			for (NetClient client : players)
+			{
+				out.writeVarInt(register(client));
+				out.writeUTF(client.getName());
+				out.writeString(client.getLocation() == null ? null : client.getLocation().getName());
+				out.writeLong(client.hasPlayerEntity() ? client.getPlayer().getID() : 0);
+			}
+		}
+		catch (IOException error)
+		{
+			out.close();
+			throw error;
+		}
+
+		Log.info(COMPONENT, "Recording ticks to '%s', starting at tick %d.", file, tick);
+	}
+
+	/**
+	 * Records the start of a tick.
+	 *
+	 * @param tick The tick.
+	 * @param seed The seed of the tick.
+	 * @param time The time of the tick.
+	 * @param ids The first entity ID reserved
+	 * for the tick.
+	 */
+	public void beginTick(long tick, long seed, long time, long ids)
+	{
+		if (failed) return;
+
+		try
+		{
+			if ((tick - startTick) % CHECKSUM_TICKS == 0)
+			{
+				out.writeByte(CHECKSUM);
+				out.writeLong(checksum(world));
+			}
+
+			out.writeByte(TICK);
+			out.writeLong(seed);
+			out.writeLong(time);
+			out.writeLong(ids);
+			ticks += 1;
+		}
+		catch (IOException error)
+		{
+			fail(error);
+		}
+	}
+
+	/**
+	 * Records a player joining the game.
+	 */
+	public void clientAdded(NetClient client)
+	{
+		if (failed) return;
+
+		try
+		{
+			out.writeByte(ADD);
+			out.writeVarInt(register(client));
+			out.writeUTF(client.getName());
+		}
+		catch (IOException error)
+		{
+			fail(error);
+		}
+	}
+
+	/**
+	 * Records a player leaving the game.
+	 */
+	public void clientRemoved(NetClient client)
+	{
+		Integer id = clients.get(client);
+		if ((failed) || (id == null)) return;
+
+		try
+		{
+			out.writeByte(REMOVE);
+			out.writeVarInt(id);
+		}
+		catch (IOException error)
+		{
+			fail(error);
+		}
+	}
+
+	/**
+	 * Records an action sent by a player.
+	 */
+	public void action(ClientAction action)
+	{
+		Integer id = clients.get(action.client);
+		if ((failed) || (id == null)) return;
+
+		try
+		{
+			byte[] data = PacketCodec.encode(action.packet, PacketCodec.Format.BINARY);
+
+			out.writeByte(ACTION);
+			out.writeVarInt(id);
+			out.writeVarInt(data.length);
+			out.write(data);
+		}
+		catch (IOException error)
+		{
+			fail(error);
+		}
+	}
+
+	/**
+	 * Returns whether the recording failed, in
+	 * which case it should be closed.
+	 */
+	public boolean isFailed()
+	{
+		return failed;
+	}
+
+	/**
+	 * Ends the recording and closes the file.
+	 * This must be called between two ticks.
+	 */
+	public void close()
+	{
+		if (failed) return;
+
+		try
+		{
+			out.writeByte(CHECKSUM);
+			out.writeLong(checksum(world));
+			out.writeByte(END);
+			out.close();
+			Log.info(COMPONENT, "Recorded %d tick(s) to '%s'.", ticks, file);
+		}
+		catch (IOException error)
+		{
+			fail(error);
+		}
+	}
+
+	/**
+	 * Computes a cheap checksum of a world, from
+	 * the ID, position and health of each of its
+	 * entities. It does not depend on the order
+	 * in which entities are iterated.
+	 */
+	static long checksum(World world)
+	{
+		long sum = 0;
+
+		for (Location location : world.getLocations())
+		{
+			long salt = location.getName().hashCode();
+
+			for (Entity entity : location.getEntities())
+			{
+				long hash = TickContext.mix(entity.getID(), salt);
+
+				Position position = entity.getComponent(Position.class);
+				Health health = entity.getComponent(Health.class);
+
+				if (position != null) hash = TickContext.mix(hash, Double.doubleToLongBits(position.getX()));
+				if (position != null) hash = TickContext.mix(hash, Double.doubleToLongBits(position.getY()));
+				if (health != null) hash = TickContext.mix(hash, health.getCurrent());
+
+				sum += hash;
+			}
+		}
+
+		return sum;
+	}
+
+	private int register(NetClient client)
+	{
+		Integer id = clients.get(client);
+		if (id == null) clients.put(client, id = clients.size());
+		return id;
+	}
+
+	private void fail(IOException error)
+	{
+		Log.severe(error, COMPONENT, "Failed to write to '%s', recording stopped.", file);
+		failed = true;
+
+		try
+		{
+			out.close();
+		}
+		catch (IOException exception)
+		{
+			return;
+		}
+	}
+}
@@ -0,0 +1,316 @@
+package network.server.back_end;
+
+import java.io.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+import ecs.world.*;
+import ecs.entity.*;
+
+import network.*;
+import network.packet.*;
+import network.packet.codec.*;
+
+import dataStorage.BinaryStorage;
+
+/**
+ * This class replays ticks recorded by the
+ * server (see {@code TickRecorder}) headless
+ * and as fast as possible, to profile them
+ * offline. The ticks are timed by the same
+ * profiler as  on the server, and the world
+ * is checked against the recorded checksums,
+ * so that an  optimization can be checked to
+ * give the exact same simulation.
+ * <p>
+ * Nothing is sent to the players, and the
+ * world is neither journaled nor saved.
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+public class TickReplayer implements WorldObserver
+{
+	/**
+	 * Every recorded player, by number, and the
+	 * ones still in the game.
+	 */
+	private final Map<Integer, NetClient> clients = new HashMap<Integer, NetClient>();
+	private final Set<NetClient> playing = new HashSet<NetClient>();
+
+	private final WireReader in;
+	private final WorldState state;
+	private final World world;
+
+	private final double updateRate;
+	private final long startTick;
+	private long ticks = 0;
+
+	private boolean pending = false;
+	private long seed;
+	private long time;
+	private long ids;
+
+	/**
+	 * Opens a recording.
+	 *
+	 * @param file The recording.
+	 * @param threads The number of threads to
+	 * process locations on.
+	 */
+	public TickReplayer(File file, int threads) throws IOException
+	{
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+		try
+		{
+			in = new WireReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+		finally
+		{
+			channel.close();
+		}
+
+		if (in.readInt() != TickRecorder.MAGIC) throw new IOException("Not a tick recording.");
+		int version = in.readInt();
+		if (version != TickRecorder.VERSION) throw new IOException("Unsupported recording version " + version + ".");
+		int codecVersion = in.readInt();
+		if (codecVersion != PacketCodec.VERSION) throw new IOException("Unsupported packet codec version " + codecVersion + ".");
+
+		updateRate = in.readDouble();
+		int networkTicks = in.readVarInt();
+		long hibernateTicks = in.readLong();
+		startTick = in.readLong();
+
+		world = BinaryStorage.read(in);
+		in.resetReferences();
+
+		state = new WorldState(world, this, threads, updateRate, networkTicks, hibernateTicks, startTick);
+
+		Map<String, Location> locations = new HashMap<String, Location>();
+		for (Location location : world.getLocations()) locations.put(location.getName(), location);
+
+		int locationCount = in.readVarInt();
+
+		for (int t = 0; t < locationCount; ++t)
+		{
+			Location location = locations.get(in.readString());
+			long last = in.readLong();
+			boolean hibernating = in.readBoolean();
+
+			state.getHibernator().restore(location, (last < 0 ? null : last), hibernating);
+		}
+
+		int playerCount = in.readVarInt();
+
+		for (int t = 0; t < playerCount; ++t)
+		{
+			int id = in.readVarInt();
+			String name = in.readUTF();
+			Location location = locations.get(in.readString());
+			long player = in.readLong();
+
+			NetClient client = new NetClient(name, location);
+			if (location != null) client.setPlayerEntity(location.getEntity(player));
+
+			state.restorePlayer(client);
+			clients.put(id, client);
+			playing.add(client);
+		}
+	}
+
+	/**
+	 * Replays every recorded tick, stopping at
+	 * the first checksum which does not match.
+	 *
+	 * @return Returns {@code true} if the replay
+	 * matched the recording.
+	 */
+	public boolean replay() throws IOException, ClassNotFoundException
+	{
+		while (true)
+		{
+			int tag;
+
+			try
+			{
+				tag = in.readUnsignedByte();
+			}
+			catch (EOFException error)
+			{
+				System.out.printf("  The recording was cut short, its last tick was not replayed.\n");
+				return true;
+			}
+
+			switch (tag)
+			{
+				case TickRecorder.END:
+					runPendingTick();
+					return true;
+
+				case TickRecorder.TICK:
+					runPendingTick();
+					seed = in.readLong();
+					time = in.readLong();
+					ids = in.readLong();
+					pending = true;
+					break;
+
+				case TickRecorder.ADD:
+				{
+					int id = in.readVarInt();
+					NetClient client = new NetClient(in.readUTF(), null);
+
+					clients.put(id, client);
+					playing.add(client);
+					state.addPlayer(client);
+					break;
+				}
+
+				case TickRecorder.REMOVE:
+				{
+					NetClient client = clients.get(in.readVarInt());
+
+					playing.remove(client);
+					state.removePlayer(client);
+					break;
+				}
+
+				case TickRecorder.ACTION:
+				{
+					NetClient client = clients.get(in.readVarInt());
+					byte[] data = new byte[in.readVarInt()];
+					in.readFully(data);
+
+					state.processAction(client, (ActionPacket)PacketCodec.decode(data));
+					break;
+				}
+
+				case TickRecorder.CHECKSUM:
+				{
+					runPendingTick();
+					long expected = in.readLong();
+
+					if (TickRecorder.checksum(world) != expected)
+					{
+						System.out.printf("  The world diverged from the recording before tick %d.\n", startTick + ticks);
+						return false;
+					}
+
+					break;
+				}
+
+				default:
+					throw new IOException("Corrupt recording (unknown tag " + tag + ").");
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of ticks replayed.
+	 */
+	public long getTicks()
+	{
+		return ticks;
+	}
+
+	/**
+	 * Returns the recorded update rate.
+	 */
+	public double getUpdateRate()
+	{
+		return updateRate;
+	}
+
+	/**
+	 * Returns  the  profiler  holding the tick
+	 * timings.
+	 */
+	public TickProfiler getProfiler()
+	{
+		return state.getProfiler();
+	}
+
+	private void runPendingTick()
+	{
+		if (!pending) return;
+
+		state.replayTick(seed, time, ids);
+		pending = false;
+		ticks += 1;
+	}
+
+	/**
+	 * Only applies the changes which the server
+	 * makes to the world when committing it, as
+	 * nothing is sent.
+	 */
+	@Override
+	public void commitWorldState(World world)
+	{
+		for (Location location : world.getLocations())
+		{
+			location.clearRemovedEntities();
+
+			for (Entity entity : location.clearDirtyEntities())
+			{
+				entity.clearRemovedComponents();
+				entity.clearModifiedComponents();
+			}
+		}
+
+		List<NetClient> moved = new ArrayList<NetClient>();
+
+		for (NetClient client : playing)
+			if (client.locationChanged()) moved.add(client);
+
+		Collections.sort(moved, WorldState.BY_NAME);
+		for (NetClient client : moved) client.updateLocation();
+	}
+
+	/**
+	 * Takes as arguments  the recording and,
+	 * optionally, the number of threads to
+	 * process locations on (one by default).
+	 *
+	 * @param args The command-line arguments.
+	 */
+	public static void main(String[] args)
+	{
+		if ((args.length < 1) || (args.length > 2))
+		{
+			System.out.println("Usage: <recording> [threads]");
+			return;
+		}
+
+		try
+		{
+			int threads = (args.length > 1 ? Integer.parseInt(args[1]) : 1);
+			TickReplayer replayer = new TickReplayer(new File(args[0]), threads);
+
+			System.out.printf("\n  Replaying '%s' on %d thread(s).\n\n", args[0], threads);
+
+			long start = System.nanoTime();
+			boolean matched = replayer.replay();
+			double elapsed = (System.nanoTime() - start) / 1e9;
+
+			System.out.printf("  Replayed %d tick(s) in %.2f s (%.1fx real time), %s.\n\n",
+							  replayer.getTicks(), elapsed, replayer.getTicks() * replayer.getUpdateRate() / elapsed,
+							  (matched ? "matching the recording" : "NOT matching the recording"));
+			replayer.getProfiler().print(System.out);
+			System.out.printf("\n");
+
+			System.exit(matched ? 0 : 1);
+		}
+		catch (NumberFormatException error)
+		{
+			System.out.printf("Invalid argument: %s\n", error.getMessage());
+		}
+		catch (Exception error)
+		{
+			System.out.printf("Failed to replay: %s\n", error);
+		}
+
+		System.exit(2);
+	}
+}
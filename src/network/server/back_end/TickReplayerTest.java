@@ -0,0 +1,114 @@
+package network.server.back_end;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.Test;
+
+import ecs.world.*;
+import ecs.entity.*;
+import ecs.helpers.*;
+import ecs.components.*;
+import ecs.components.Type.EntityType;
+
+import network.*;
+import network.packet.action.*;
+
+/**
+ * JUnit tests for recording and replaying ticks.
+ */
+public class TickReplayerTest {
+
+	private static final double UPDATE_RATE = 1.0 / 60;
+	private static final int NETWORK_TICKS = 3;
+	private static final int TICKS = 150;
+
+	/**
+	 * Commits the world the way the replayer does, as nothing is sent.
+	 */
+	private static final WorldObserver COMMIT = new WorldObserver(){
+		@Override
+		public void commitWorldState(World world){
+			for (Location location : world.getLocations()){
+				location.clearRemovedEntities();
+				for (Entity entity : location.clearDirtyEntities()){
+					entity.clearRemovedComponents();
+					entity.clearModifiedComponents();
+				}
+			}
+		}
+	};
+
+	private static int count(Location location, EntityType type){
+		int count = 0;
+		for (Entity entity : location.getEntities())
+			if (entity.getType() == type) ++count;
+		return count;
+	}
+
+	@Test
+	public void testReplay() throws Exception{
+		World world = new World(new HashSet<Location>(), new HashMap<String, PlayerRecord>());
+		Location location = new Location("Range");
+		world.add(location);
+
+		Entity player = EntityFactory.genPlayerEntity("shooter");
+		player.getComponent(Equipped.class).equip(EntityFactory.genDefaultWeapon("Shotgun"));
+		player.getComponent(Health.class).setMax(100000); // Keeps shooting while the zombies bite
+		player.getComponent(Health.class).setCurrent(100000);
+		player.removeComponent(Target.class); // Leaves the drops lying around
+		location.addEntity(player);
+
+		// A ring of zombies which die from the first bullet, dropping money and a weapon
+		List<Position> targets = new ArrayList<Position>();
+		for (int t = 0; t < 8; ++t){
+			double angle = t * Math.PI / 4;
+			Entity zombie = EntityFactory.genZombieEntity((float)(0.3 + 0.12 * Math.cos(angle)), (float)(0.7 + 0.12 * Math.sin(angle)));
+			zombie.getComponent(Health.class).setCurrent(1);
+			targets.add(zombie.getComponent(Position.class));
+			location.addEntity(zombie);
+		}
+
+		NetClient client = new NetClient("shooter", location);
+		client.setPlayerEntity(player);
+
+		WorldState state = new WorldState(world, COMMIT, 1, UPDATE_RATE, NETWORK_TICKS, Long.MAX_VALUE, 0);
+		state.restorePlayer(client);
+
+		File file = File.createTempFile("ticks", ".bin");
+		try{
+			Random random = new Random(208);
+			long time = System.currentTimeMillis(); // Event triggers start from the real clock
+
+			state.startRecording(file);
+			for (int t = 0; t < TICKS; ++t){
+				Position target = targets.get(t % targets.size());
+				state.processAction(client, new PlayerShootAction(target.getX(), target.getY()));
+				state.runTick(random.nextLong(), time += 100);
+			}
+			state.stopRecording();
+			state.runTick(random.nextLong(), time += 100);
+
+			assertTrue("Zombies should have died", count(location, EntityType.ZOMBIE) < targets.size());
+			assertTrue("Zombies should have dropped money", count(location, EntityType.MONEY) > 1);
+
+			// Entities are numbered as they are made, so they should have been added in that order
+			long previous = 0;
+			for (Entity entity : location.getEntities()){
+				assertTrue("Entities should be added in the order they were made", entity.getID() > previous);
+				previous = entity.getID();
+			}
+
+			for (int threads = 1; threads <= 2; ++threads){
+				TickReplayer replayer = new TickReplayer(file, threads);
+				assertTrue("Replay should match the recording", replayer.replay());
+				assertTrue("Every tick should be replayed", replayer.getTicks() >= TICKS - NETWORK_TICKS);
+			}
+		}
+		finally{
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,703 @@
+package network.server.back_end;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import ecs.world.*;
+import ecs.entity.*;
+import ecs.components.Type.*;
+
+import dataStorage.*;
+import log.*;
+
+/**
+ * This class keeps the world state file up
+ * to date while the server is running, so
+ * that a crash  loses  at most  the  last
+ * few seconds of the game.
+ * <p>
+ * The world is periodically snapshotted: it
+ * is copied  in the game logic thread, and
+ * the copy  is then written to disk by a
+ * background thread,  through a temporary
+ * file which atomically replaces the world
+ * state file once complete.
+ * <p>
+ * Between snapshots,  player changes (logging
+ * out, changing location) are appended to a
+ * write-ahead journal, which is replayed on
+ * top of the last snapshot when the world is
+ * loaded. Entries are encoded in the game
+ * logic thread and written by a journal
+ * thread, which syncs the journal once per
+ * batch of entries rather than once per
+ * entry. Journals are numbered, and every
+ * snapshot  starts a new  journal; the world
+ * state file records the number  of the first
+ * journal it does  not include, and  older
+ * journals are deleted once it is written.
+ * <p>
+ * Snapshots and journal entries also record
+ * how many entity ID's have been handed out,
+ * so that they are never reused after the
+ * world is loaded back (see {@code
+ * IDProvider}).
+ * <p>
+ * Hibernating locations can also be paged
+ * out: their entities are written to a page
+ * file and dropped from memory until the
+ * location wakes up. Pages are only a cache,
+ * snapshots  always include  the  paged out
+ * entities.
+ *
+ * @author Thomas Beneteau (300250968)
+ */
+public class WorldPersistence
+{
+	public static final String COMPONENT = "World Persistence";
+
+	private final ExecutorService writer = Executors.newSingleThreadExecutor();
+	private Future<?> pendingSnapshot = null;
+
+	private final File worldStateFile;
+
+	/**
+	 * The number of  the journal currently being
+	 * appended to. This is only accessed from
+	 * the game logic thread.
+	 */
+	private long sequence;
+
+	/**
+	 * The entries waiting for the journal thread,
+	 * and whether it has been asked to write
+	 * them.
+	 */
+	private final ExecutorService journalWriter = Executors.newSingleThreadExecutor();
+	private final Queue<JournalEntry> entries = new ConcurrentLinkedQueue<JournalEntry>();
+	private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+	/**
+	 * The journal open  for writing, and its
+	 * number. These are only accessed from the
+	 * journal thread (once the world is loaded).
+	 */
+	private long openSequence;
+	private FileOutputStream journalFile;
+	private DataOutputStream journal;
+
+	/**
+	 * An encoded  journal entry, and the number
+	 * of the journal it belongs to.
+	 */
+	private static class JournalEntry
+	{
+		private final String name;
+		private final byte[] data;
+		private final long sequence;
+
+		public JournalEntry(String name, byte[] data, long sequence)
+		{
+			this.sequence = sequence;
+			this.name = name;
+			this.data = data;
+		}
+	}
+
+	private final Runnable flushJournal = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			/* Entries queued from now on need another run. */
+			flushScheduled.set(false);
+			writeEntries();
+		}
+	};
+
+	/**
+	 * The page file of every  paged out location.
+	 * This is only  accessed from the game logic
+	 * thread.
+	 */
+	private final Map<Location, File> pages = new IdentityHashMap<Location, File>();
+	private final File pageDirectory;
+	private long pageCount = 0;
+
+	/**
+	 * A copy of the world state, taken  in the
+	 * game logic thread and  written to disk in
+	 * the background.
+	 */
+	private static class WorldCopy
+	{
+		private final byte[] data;
+		private final List<Set<SpawnPoint>> spawnPoints;
+		private final List<File> pages;
+		private final long sequence;
+		private final long nextID;
+
+		public WorldCopy(byte[] data, List<Set<SpawnPoint>> spawnPoints, List<File> pages, long sequence, long nextID)
+		{
+			this.spawnPoints = spawnPoints;
+			this.pages = pages;
+			this.sequence = sequence;
+			this.nextID = nextID;
+			this.data = data;
+		}
+	}
+
+	public WorldPersistence(File worldStateFile)
+	{
+		this.worldStateFile = worldStateFile;
+		pageDirectory = new File(worldStateFile.getPath() + ".pages");
+	}
+
+	/**
+	 * Loads the world from the world state file
+	 * (or generates a default world if it does
+	 * not exist), replays every journal written
+	 * since, and starts a new journal. No entity
+	 * ID of the loaded world is handed out again.
+	 *
+	 * @return Returns the loaded world.
+	 */
+	public World load() throws IOException
+	{
+		World world;
+
+		try
+		{
+			world = DataStorage.loadFile(worldStateFile);
+			if (world == null) throw new IOException("Failed to parse the world state file.");
+			Log.info(COMPONENT, "Loaded world state from '%s'.", worldStateFile);
+		}
+		catch (Exception error)
+		{
+			Log.severe(error, COMPONENT, "Failed to load game world, generating default world.");
+			world = WorldGenerator.generateWorld();
+		}
+
+		sequence = world.getJournalSequence();
+		deleteJournals(sequence);
+		deletePages();
+
+		for (File file : listJournals())
+		{
+			int entries = replay(file, world);
+			Log.info(COMPONENT, "Replayed %d journal entries from '%s'.", entries, file);
+			sequence = journalNumber(file) + 1;
+		}
+
+		IDProvider.advance(world.getNextID());
+		openSequence = sequence;
+		openJournal();
+		return world;
+	}
+
+	/**
+	 * Appends  a player change to the journal.
+	 * This must be called from the game logic
+	 * thread. The player is encoded right away,
+	 * but the entry is written and synced to
+	 * disk by the journal thread, along with
+	 * any other entry queued meanwhile.
+	 *
+	 * @param name The player's name.
+	 * @param location The player's location.
+	 * @param player The player entity.
+	 */
+	public void journal(String name, String location, Entity player)
+	{
+		try
+		{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream entry = new ObjectOutputStream(bytes);
+			entry.writeUTF(name);
+			entry.writeUTF(location);
+			entry.writeObject(player);
+			entry.writeLong(IDProvider.getReserved());
+			entry.close();
+
+			entries.add(new JournalEntry(name, bytes.toByteArray(), sequence));
+			if (flushScheduled.compareAndSet(false, true)) journalWriter.execute(flushJournal);
+		}
+		catch (IOException error)
+		{
+			Log.severe(error, COMPONENT, "Failed to journal player '%s'.", name);
+		}
+	}
+
+	/**
+	 * Waits until every  entry journaled so far
+	 * has been written and synced to disk.
+	 */
+	void awaitJournal() throws InterruptedException, ExecutionException
+	{
+		journalWriter.submit(new Runnable()
+		{
+			@Override
+			public void run() { }
+		}).get();
+	}
+
+	/**
+	 * Writes every queued journal entry, moving
+	 * on to the next journal after a snapshot,
+	 * and syncs  the journal  once  at the end.
+	 * This runs in the journal thread.
+	 */
+	private void writeEntries()
+	{
+		JournalEntry entry = null;
+		boolean written = false;
+
+		try
+		{
+			while ((entry = entries.poll()) != null)
+			{
+				if ((journal == null) || (entry.sequence != openSequence))
+				{
+					if (written) syncJournal();
+					written = false;
+
+					closeJournal();
+					openSequence = entry.sequence;
+					openJournal();
+				}
+
+				CRC32 checksum = new CRC32();
+				checksum.update(entry.data);
+
+				journal.writeInt(entry.data.length);
+				journal.writeLong(checksum.getValue());
+				journal.write(entry.data);
+				written = true;
+			}
+
+			if (written) syncJournal();
+		}
+		catch (IOException error)
+		{
+			if (entry != null) Log.severe(error, COMPONENT, "Failed to journal player '%s'.", entry.name);
+			else Log.severe(error, COMPONENT, "Failed to sync the journal.");
+		}
+	}
+
+	/**
+	 * Writes  the  entities of  a location to a
+	 * page file and removes them from memory.
+	 * This must be called from the game logic
+	 * thread.
+	 *
+	 * @param location The location to page out.
+	 */
+	public void pageOut(Location location) throws IOException
+	{
+		if (pages.containsKey(location)) return;
+		if ((!pageDirectory.isDirectory()) && (!pageDirectory.mkdirs()))
+			throw new IOException("Failed to create page directory.");
+
+		File page = new File(pageDirectory, (pageCount++) + ".bin");
+		BinaryStorage.saveEntities(page, location.getEntities());
+		location.getEntities().clear();
+		pages.put(location, page);
+	}
+
+	/**
+	 * Reads the  entities of a paged out location
+	 * back into memory. Does nothing if it was
+	 * not paged out. This must be called from
+	 * the game logic thread.
+	 *
+	 * @param location The location to page in.
+	 */
+	public void pageIn(Location location) throws IOException
+	{
+		File page = pages.get(location);
+		if (page == null) return;
+
+		for (Entity entity : BinaryStorage.loadEntities(page)) location.addEntity(entity);
+		pages.remove(location);
+		deletePage(page);
+	}
+
+	/**
+	 * Deletes a page once no snapshot needs it.
+	 * Snapshots read pages in the background,
+	 * and the writer runs its tasks in order,
+	 * so the page is  deleted by  the writer
+	 * after any snapshot already taken.
+	 */
+	private void deletePage(final File page)
+	{
+		Runnable delete = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				if (!page.delete()) Log.warning(COMPONENT, "Failed to delete page '%s'.", page);
+			}
+		};
+
+		if (writer.isShutdown()) delete.run();
+		else writer.execute(delete);
+	}
+
+	/**
+	 * Returns whether a location is paged out.
+	 */
+	public boolean isPagedOut(Location location)
+	{
+		return pages.containsKey(location);
+	}
+
+	/**
+	 * Takes a snapshot of the world, which will
+	 * be written in the background. This must be
+	 * called from the game logic thread, and
+	 * does nothing if the previous snapshot is
+	 * still being written.
+	 *
+	 * @param world The world to snapshot.
+	 *
+	 * @return Returns {@code true} if a snapshot
+	 * was taken.
+	 */
+	public boolean snapshot(World world)
+	{
+		if ((pendingSnapshot != null) && (!pendingSnapshot.isDone()))
+		{
+			Log.debug(COMPONENT, "Previous snapshot still in progress, skipping.");
+			return false;
+		}
+
+		try
+		{
+			/* Changes from now on go to the next journal. */
+			final WorldCopy copy = copy(world, sequence + 1);
+			sequence += 1;
+
+			pendingSnapshot = writer.submit(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						long start = System.nanoTime();
+						write(copy);
+						Log.info(COMPONENT, "Snapshot written in %.1f ms.", (System.nanoTime() - start) / 1e6);
+					}
+					catch (Exception error)
+					{
+						Log.severe(error, COMPONENT, "Failed to write snapshot, keeping journals.");
+					}
+				}
+			});
+
+			return true;
+		}
+		catch (IOException error)
+		{
+			Log.severe(error, COMPONENT, "Failed to snapshot the world.");
+			return false;
+		}
+	}
+
+	/**
+	 * Waits for any snapshot in progress, then
+	 * saves the world and deletes every journal.
+	 * The world should no longer change after
+	 * this is called.
+	 *
+	 * @param world The world to save.
+	 */
+	public void close(World world) throws IOException, InterruptedException
+	{
+		writer.shutdown();
+		writer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		journalWriter.shutdown();
+		journalWriter.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+		for (Location location : new ArrayList<Location>(pages.keySet())) pageIn(location);
+
+		closeJournal();
+		world.setJournalSequence(sequence + 1);
+		world.setNextID(IDProvider.getReserved());
+		DataStorage.saveFileAtomically(worldStateFile, world);
+		deleteJournals(sequence + 1);
+	}
+
+	/**
+	 * Copies the world into a byte array, so it
+	 * can be rebuilt in the background. Spawn
+	 * points are not serializable, and are
+	 * copied separately. Paged out locations
+	 * hold no entities, which are  only read
+	 * back from their page in the background.
+	 */
+	private WorldCopy copy(World world, long sequence) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		List<Set<SpawnPoint>> spawnPoints = new ArrayList<Set<SpawnPoint>>();
+		List<File> pageFiles = new ArrayList<File>();
+
+		out.writeInt(world.getLocations().size());
+
+		for (Location location : world.getLocations())
+		{
+			Set<SpawnPoint> points = new HashSet<SpawnPoint>();
+
+			if (location.getSpawnPoints() != null)
+			{
+				for (SpawnPoint point : location.getSpawnPoints())
+				{
+					SpawnPoint copy = new SpawnPoint(point.getX(), point.getY());
+					copy.setOccupied(point.isOccupied());
+					points.add(copy);
+				}
+			}
+
+			out.writeObject(location);
+			pageFiles.add(pages.get(location));
+			spawnPoints.add(points);
+		}
+
+		out.writeInt(world.getSavedPlayers().size());
+
+		for (Map.Entry<String, PlayerRecord> record : world.getSavedPlayers().entrySet())
+		{
+			out.writeUTF(record.getKey());
+			out.writeUTF(record.getValue().getLocation());
+			out.writeObject(record.getValue().getPlayer());
+		}
+
+		out.close();
+		return new WorldCopy(bytes.toByteArray(), spawnPoints, pageFiles, sequence, IDProvider.getReserved());
+	}
+
+	/**
+	 * Rebuilds a copied world, and writes it to
+	 * the world state file. Players who were
+	 * still active are saved as if they had
+	 * logged out, so that they can log back in
+	 * after a crash.
+	 */
+	private void write(WorldCopy copy) throws IOException, ClassNotFoundException
+	{
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(copy.data));
+		Map<String, PlayerRecord> savedPlayers = new HashMap<String, PlayerRecord>();
+		Set<Location> locations = new HashSet<Location>();
+
+		int locationCount = in.readInt();
+
+		for (int t = 0; t < locationCount; ++t)
+		{
+			Location location = (Location)in.readObject();
+			location.setSpawnPoints(copy.spawnPoints.get(t));
+			locations.add(location);
+
+			File page = copy.pages.get(t);
+			if (page != null)
+				for (Entity entity : BinaryStorage.loadEntities(page)) location.addEntity(entity);
+		}
+
+		int playerCount = in.readInt();
+
+		for (int t = 0; t < playerCount; ++t)
+		{
+			String name = in.readUTF();
+			String location = in.readUTF();
+			savedPlayers.put(name, new PlayerRecord(location, (Entity)in.readObject()));
+		}
+
+		for (Location location : locations)
+		{
+			Iterator<Entity> iterator = location.getEntities().iterator();
+
+			while (iterator.hasNext())
+			{
+				Entity entity = iterator.next();
+
+				if ((entity.getType() == EntityType.PLAYER) && (entity.getName() != null))
+				{
+					savedPlayers.put(entity.getName(), new PlayerRecord(location.getName(), entity));
+					iterator.remove();
+				}
+			}
+		}
+
+		World world = new World(locations, savedPlayers);
+		world.setJournalSequence(copy.sequence);
+		world.setNextID(copy.nextID);
+		DataStorage.saveFileAtomically(worldStateFile, world);
+		deleteJournals(copy.sequence);
+	}
+
+	/**
+	 * Replays a journal on top of a world. A
+	 * truncated or corrupt entry (for instance
+	 * if the server crashed while writing it)
+	 * ends the journal.
+	 *
+	 * @return Returns the number of entries.
+	 */
+	private static int replay(File file, World world) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		int entries = 0;
+
+		try
+		{
+			while (true)
+			{
+				int length;
+
+				try
+				{
+					length = in.readInt();
+				}
+				catch (EOFException done)
+				{
+					break;
+				}
+
+				long checksum = in.readLong();
+				byte[] data = new byte[length];
+				in.readFully(data);
+
+				CRC32 actual = new CRC32();
+				actual.update(data);
+				if (actual.getValue() != checksum) throw new IOException("Journal entry checksum mismatch.");
+
+				ObjectInputStream entry = new ObjectInputStream(new ByteArrayInputStream(data));
+				String name = entry.readUTF();
+				String location = entry.readUTF();
+				world.getSavedPlayers().put(name, new PlayerRecord(location, (Entity)entry.readObject()));
+				world.setNextID(Math.max(world.getNextID(), readNextID(entry)));
+				entries += 1;
+			}
+		}
+		catch (Exception error)
+		{
+			Log.warning(error, COMPONENT, "Journal '%s' ends with a damaged entry, ignoring it.", file);
+		}
+		finally
+		{
+			in.close();
+		}
+
+		return entries;
+	}
+
+	/**
+	 * Reads the first unused entity ID recorded
+	 * by a journal entry, or zero for entries
+	 * written before it was recorded.
+	 */
+	private static long readNextID(ObjectInputStream entry) throws IOException
+	{
+		try
+		{
+			return entry.readLong();
+		}
+		catch (EOFException error)
+		{
+			return 0;
+		}
+	}
+
+	private void openJournal() throws IOException
+	{
+		journalFile = new FileOutputStream(journalFile(openSequence), true);
+		journal = new DataOutputStream(new BufferedOutputStream(journalFile));
+	}
+
+	private void syncJournal() throws IOException
+	{
+		journal.flush();
+		journalFile.getFD().sync();
+	}
+
+	private void closeJournal() throws IOException
+	{
+		if (journal != null) journal.close();
+		journal = null;
+	}
+
+	private File journalFile(long number)
+	{
+		return new File(worldStateFile.getPath() + ".journal." + number);
+	}
+
+	private long journalNumber(File file)
+	{
+		String name = file.getName();
+		String prefix = worldStateFile.getName() + ".journal.";
+
+		try
+		{
+			return name.startsWith(prefix) ? Long.parseLong(name.substring(prefix.length())) : -1;
+		}
+		catch (NumberFormatException error)
+		{
+			return -1;
+		}
+	}
+
+	/**
+	 * Returns every journal, in order.
+	 */
+	private List<File> listJournals()
+	{
+		List<File> journals = new ArrayList<File>();
+		File[] files = worldStateFile.getAbsoluteFile().getParentFile().listFiles();
+
+		if (files != null)
+			for (File file : files)
+				if (journalNumber(file) >= 0) journals.add(file);
+
+		Collections.sort(journals, new Comparator<File>()
+		{
+			@Override
+			public int compare(File a, File b)
+			{
+				return Long.compare(journalNumber(a), journalNumber(b));
+			}
+		});
+
+		return journals;
+	}
+
+	/**
+	 * Deletes  the page files left over by the
+	 * previous run (the world state file always
+	 * includes paged out entities).
+	 */
+	private void deletePages()
+	{
+		File[] files = pageDirectory.listFiles();
+
+		if (files != null)
+			for (File file : files)
+				if (!file.delete()) Log.warning(COMPONENT, "Failed to delete page '%s'.", file);
+	}
+
+	/**
+	 * Deletes  the journals  already included
+	 * in the world state file.
+	 *
+	 * @param first The first journal to keep.
+	 */
+	private void deleteJournals(long first)
+	{
+		for (File file : listJournals())
+			if ((journalNumber(file) < first) && (!file.delete()))
+				Log.warning(COMPONENT, "Failed to delete journal '%s'.", file);
+	}
+}
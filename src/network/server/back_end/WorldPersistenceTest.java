@@ -0,0 +1,191 @@
+package network.server.back_end;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+import org.junit.Test;
+
+import ecs.world.*;
+import ecs.entity.*;
+import ecs.helpers.*;
+
+import dataStorage.*;
+
+/**
+ * JUnit tests for world snapshots and journals.
+ */
+public class WorldPersistenceTest {
+
+	/**
+	 * Saves a world with one location and no players in a new directory.
+	 */
+	private static File save() throws IOException{
+		File directory = Files.createTempDirectory("world").toFile();
+		File file = new File(directory, "world" + DataStorage.BINARY_EXTENSION);
+
+		World world = new World(new HashSet<Location>(), new HashMap<String, PlayerRecord>());
+		world.add(new Location("Town"));
+		DataStorage.saveFileAtomically(file, world);
+		return file;
+	}
+
+	private static void delete(File file){
+		File[] files = file.listFiles();
+		if (files != null)
+			for (File child : files) delete(child);
+		file.delete();
+	}
+
+	private static File journal(File file, long number){
+		return new File(file.getPath() + ".journal." + number);
+	}
+
+	/**
+	 * Saves a player the way the server does when they log out, journaling the change.
+	 */
+	private static Entity logOut(WorldPersistence persistence, World world, String name){
+		Entity player = EntityFactory.genPlayerEntity(name);
+		world.getSavedPlayers().put(name, new PlayerRecord("Town", player));
+		persistence.journal(name, "Town", player);
+		return player;
+	}
+
+	/**
+	 * Waits until the first snapshot is written, which deletes the journal it includes.
+	 */
+	private static void awaitSnapshot(File file) throws InterruptedException{
+		for (int wait = 0; journal(file, 0).exists() && (wait < 1000); ++wait) Thread.sleep(10);
+		assertFalse("Included journal should be deleted", journal(file, 0).exists());
+	}
+
+	/**
+	 * Copies the world state file and journals as they are now, as if the server had crashed.
+	 */
+	private static File crash(File file) throws IOException{
+		File directory = file.getParentFile();
+		File crashed = new File(directory, "crashed");
+		if (!crashed.mkdir()) throw new IOException("Failed to create " + crashed);
+		for (File child : directory.listFiles())
+			if (child.isFile()) Files.copy(child.toPath(), new File(crashed, child.getName()).toPath());
+		return new File(crashed, file.getName());
+	}
+
+	@Test
+	public void testReplay() throws Exception{
+		File file = save();
+		try{
+			replay(file);
+		}
+		finally{
+			delete(file.getParentFile());
+		}
+	}
+
+	private static void replay(File file) throws Exception{
+		WorldPersistence persistence = new WorldPersistence(file);
+		World world = persistence.load();
+		assertTrue("First journal should be open", journal(file, 0).exists());
+
+		Entity alice = logOut(persistence, world, "alice");
+		assertTrue("Snapshot should be taken", persistence.snapshot(world));
+		Entity bob = logOut(persistence, world, "bob");
+
+		awaitSnapshot(file);
+		persistence.awaitJournal();
+		assertTrue("Next journal should be kept", journal(file, 1).exists());
+
+		File crashed = crash(file);
+		persistence.close(world);
+		assertFalse("Journals should be deleted on close", journal(file, 1).exists());
+
+		// Alice comes from the snapshot, and Bob from the journal written after it
+		WorldPersistence recovery = new WorldPersistence(crashed);
+		World recovered = recovery.load();
+		assertEquals("Players should be restored", new HashSet<String>(Arrays.asList("alice", "bob")), recovered.getSavedPlayers().keySet());
+		assertEquals("Snapshot player should match", alice.getID(), recovered.getSavedPlayers().get("alice").getPlayer().getID());
+		assertEquals("Journaled player should match", bob.getID(), recovered.getSavedPlayers().get("bob").getPlayer().getID());
+		assertEquals("Journaled location should match", "Town", recovered.getSavedPlayers().get("bob").getLocation());
+		assertTrue("Entity ID's should not be handed out again", IDProvider.getReserved() > bob.getID());
+		recovery.close(recovered);
+
+		World closed = DataStorage.loadFile(file);
+		assertEquals("Closed world should include every player", 2, closed.getSavedPlayers().size());
+	}
+
+	@Test
+	public void testTruncatedJournal() throws Exception{
+		File file = save();
+		try{
+			truncate(file);
+		}
+		finally{
+			delete(file.getParentFile());
+		}
+	}
+
+	private static void truncate(File file) throws Exception{
+		WorldPersistence persistence = new WorldPersistence(file);
+		World world = persistence.load();
+		logOut(persistence, world, "alice");
+		logOut(persistence, world, "bob");
+		persistence.awaitJournal();
+
+		File crashed = crash(file);
+		persistence.close(world);
+
+		// The server crashed while writing Bob's entry
+		RandomAccessFile journal = new RandomAccessFile(journal(crashed, 0), "rw");
+		try{
+			journal.setLength(journal.length() - 10);
+		}
+		finally{
+			journal.close();
+		}
+
+		WorldPersistence recovery = new WorldPersistence(crashed);
+		World recovered = recovery.load();
+		assertEquals("Truncated entry should be skipped", Collections.singleton("alice"), recovered.getSavedPlayers().keySet());
+		recovery.close(recovered);
+	}
+
+	@Test
+	public void testPagedSnapshot() throws Exception{
+		File file = save();
+		try{
+			snapshotPaged(file);
+		}
+		finally{
+			delete(file.getParentFile());
+		}
+	}
+
+	private static void snapshotPaged(File file) throws Exception{
+		WorldPersistence persistence = new WorldPersistence(file);
+		World world = persistence.load();
+		Location town = world.getLocations().iterator().next();
+		Entity zombie = EntityFactory.genZombieEntity(0.5f, 0.5f);
+		town.addEntity(zombie);
+
+		try{
+			persistence.pageOut(town);
+			assertTrue("Location should be paged out", persistence.isPagedOut(town));
+			assertTrue("Snapshot should be taken", persistence.snapshot(world));
+
+			// The snapshot reads the page in the background, so it must outlive the page in
+			persistence.pageIn(town);
+			assertNotNull("Entities should be paged in", town.getEntity(zombie.getID()));
+			awaitSnapshot(file);
+
+			Location saved = DataStorage.loadFile(file).getLocations().iterator().next();
+			assertNotNull("Paged out entities should be in the snapshot", saved.getEntity(zombie.getID()));
+		}
+		finally{
+			persistence.close(world);
+		}
+		File[] pages = new File(file.getPath() + ".pages").listFiles();
+		assertEquals("Page should be deleted", 0, pages == null ? 0 : pages.length);
+	}
+}
@@ -6,6 +6,8 @@ import java.util.concurrent.*;
 
 import ecs.world.*;
 import ecs.entity.*;
+import ecs.systems.*;
+import ecs.helpers.*;
 import ecs.components.Type.*;
 
 import network.*;
@@ -13,7 +15,6 @@ import network.server.*;
 import network.packet.*;
 import network.server.back_end.GameLogic.*;
 
-import dataStorage.*;
 import log.*;
 
 /**
@@ -26,6 +27,39 @@ public class WorldState implements Configurable
 {
 	public static final String COMPONENT = "World State";
 
+	/**
+	 * Orders clients  by name. Clients changing
+	 * location in the same tick are moved in this
+	 * order, so that replays move them the same
+	 * way (see {@code TickRecorder}).
+	 */
+	public static final Comparator<NetClient> BY_NAME = new Comparator<NetClient>()
+	{
+		@Override
+		public int compare(NetClient a, NetClient b)
+		{
+			return a.getName().compareTo(b.getName());
+		}
+	};
+
+	/**
+	 * The salts from which the seeds of each part
+	 * of a tick are derived (see {@code mix}).
+	 */
+	private static final long CLIENTS_SALT = 1;
+	private static final long COMMIT_SALT = 2;
+	private static final long LOCATION_SALT = 3;
+
+	/**
+	 * The block of entity ID's given to each part
+	 * of a tick, counted in {@code TickContext.IDS}
+	 * from the first ID reserved by the tick. Each
+	 * location has its own block, by name order.
+	 */
+	private static final int CLIENTS_IDS = 0;
+	private static final int COMMIT_IDS = 1;
+	private static final int LOCATION_IDS = 2;
+
 	private class ServerTick implements Runnable
 	{
 		private final ConcurrentLinkedQueue<ClientAction> actions;
@@ -34,18 +68,94 @@ public class WorldState implements Configurable
 
 		private final double updateRate;
 		private final int networkTicks;
+		private final long snapshotTicks;
+		private final long hibernateTicks;
+		private long lastSnapshot = 0;
 		private final long startTime;
-		private long tick = 0;
+		private final TickProfiler profiler;
+		private long tick;
 
-		public ServerTick(double updateRate, int networkTicks)
+		/**
+		 * Every tick draws its seed from here,
+		 * unless it is replayed.
+		 */
+		private final Random seeds = new Random();
+
+		/**
+		 * The number of every location, by name,
+		 * which gives its block of entity ID's.
+		 */
+		private final Map<Location, Integer> locationNumbers = new IdentityHashMap<Location, Integer>();
+
+		/**
+		 * The histogram of every system in every
+		 * location, by location and in the order
+		 * the systems run, so that timing them
+		 * looks nothing up by name. Each array is
+		 * only used by the thread processing its
+		 * location, and filled in as the systems
+		 * first run (to list them in that order).
+		 */
+		private final Map<Location, LatencyHistogram[]> systemPhases = new IdentityHashMap<Location, LatencyHistogram[]>();
+
+		/**
+		 * The recording in progress, if any, which
+		 * is only accessed from the logic thread.
+		 * It is started and stopped by requests
+		 * from the console.
+		 */
+		private TickRecorder recorder;
+		private volatile File recordRequest;
+		private volatile boolean stopRequest;
+
+		/**
+		 * The  location of every  player at the time
+		 * it was last journaled.
+		 */
+		private final Map<NetClient, Location> players = new HashMap<NetClient, Location>();
+
+		private final LocationHibernator hibernator;
+
+		public ServerTick(double updateRate, int networkTicks, long snapshotTicks, long hibernateTicks, boolean pageOut, long tick)
 		{
+			hibernator = new LocationHibernator(persistence, hibernateTicks, pageOut);
+			this.hibernateTicks = hibernateTicks;
+			this.snapshotTicks = snapshotTicks;
+			this.tick = tick;
 			actions = new ConcurrentLinkedQueue<ClientAction>();
 			removed = new ConcurrentLinkedQueue<NetClient>();
 			added = new ConcurrentLinkedQueue<NetClient>();
 
+			profiler = new TickProfiler((long)(updateRate * 1e9));
 			startTime = System.currentTimeMillis();
 			this.networkTicks = networkTicks;
 			this.updateRate = updateRate;
+
+			List<Location> locations = new ArrayList<Location>(world.getLocations());
+
+			Collections.sort(locations, new Comparator<Location>()
+			{
+				@Override
+				public int compare(Location a, Location b)
+				{
+					return a.getName().compareTo(b.getName());
+				}
+			});
+
+			for (Location location : locations)
+			{
+				locationNumbers.put(location, locationNumbers.size());
+				systemPhases.put(location, new LatencyHistogram[world.getSystems().size()]);
+			}
+		}
+
+		/**
+		 * Returns the number of entity ID's needed
+		 * by each tick.
+		 */
+		public long getTickIDs()
+		{
+			return (long)(LOCATION_IDS + locationNumbers.size()) * TickContext.IDS;
 		}
 
 		/**
@@ -87,57 +197,287 @@ public class WorldState implements Configurable
 		{
 			try
 			{
-				synchronized(world)
+				tick(seeds.nextLong(), System.currentTimeMillis());
+			}
+			catch (Exception error)
+			{
+				Log.severe(error, COMPONENT, "Game logic loop encountered an error, attempting to recover.");
+			}
+		}
+
+		/**
+		 * Runs one tick as scheduled,  starting or
+		 * stopping the recording as requested, and
+		 * reserving the tick's entity ID's.
+		 *
+		 * @param seed The seed of the tick.
+		 * @param time The time of the tick.
+		 */
+		public void tick(long seed, long time)
+		{
+			synchronized(world)
+			{
+				updateRecording();
+				step(seed, time, IDProvider.reserve(getTickIDs()));
+			}
+		}
+
+		/**
+		 * Runs one tick. All the randomness of the
+		 * game logic comes from the seed, and its
+		 * clock is stopped at the given time, so
+		 * that a tick replayed from the same state
+		 * with the same seed, time, ID's and inputs
+		 * has the exact same outcome.
+		 *
+		 * @param seed The seed of the tick.
+		 * @param time The time of the tick.
+		 * @param ids The first of the {@code
+		 * getTickIDs()} entity ID's reserved for
+		 * the tick.
+		 */
+		public void step(long seed, long time, long ids)
+		{
+			long tickStart = System.nanoTime();
+			long phaseStart = tickStart;
+
+			if (recorder != null) recorder.beginTick(tick, seed, time, ids);
+			TickContext.begin(TickContext.mix(seed, CLIENTS_SALT), time, ids + CLIENTS_IDS * TickContext.IDS);
+
+			try
+			{
+				/* We need to handle new players a bit differently, as
+				 * they need to be sent the state of the location they
+				 * are currently in. This happens after the game logic
+				 * has decided what to do with them. */
+				Set<NetClient> newPlayers = new HashSet<NetClient>();
+
+				while (!added.isEmpty())
+				{
+					NetClient newPlayer = added.poll();
+					newPlayers.add(newPlayer);
+					if (recorder != null) recorder.clientAdded(newPlayer);
+
+					/* Here the game logic should add the
+					 * player to some location, and maybe
+					 * give him starting items and stuff. */
+					GameLogic.addClient(newPlayer, world);
+					players.put(newPlayer, null);
+				}
+
+				while (!removed.isEmpty())
 				{
-					/* We need to handle new players a bit differently, as
-					 * they need to be sent the state of the location they
-					 * are currently in. This happens after the game logic
-					 * has decided what to do with them. */
-					Set<NetClient> newPlayers = new HashSet<NetClient>();
+					NetClient client = removed.poll();
+					if (recorder != null) recorder.clientRemoved(client);
 
-					while (!added.isEmpty())
+					GameLogic.removeClient(client, world);
+					players.remove(client);
+
+					PlayerRecord record = world.getSavedPlayers().get(client.getName());
+					if ((record != null) && (persistence != null)) persistence.journal(client.getName(), record.getLocation(), record.getPlayer());
+				}
+
+				phaseStart = profiler.record("Clients", phaseStart);
+
+				/* This is because until the end of this tick, new players *have* no actual
+				 * location, so they cannot issue any action yet (next tick they will). */
+				while (!actions.isEmpty())
+				{
+					ClientAction action = actions.poll();
+					if (recorder != null) recorder.action(action);
+
+					if (!action.client.locationChanged())
 					{
-						NetClient newPlayer = added.poll();
-						newPlayers.add(newPlayer);
+						GameLogic.processAction(action, world);
+					}
+				}
+
+				phaseStart = profiler.record("Actions", phaseStart);
+
+				/* Only simulate locations which have players in them, or recently had. */
+				hibernator.update(world, players.keySet(), tick);
+				phaseStart = profiler.record("Hibernation", phaseStart);
+
+				processLocations(seed, time, ids);
+				phaseStart = profiler.record("Locations", phaseStart);
+
+				/* Commit the world state to the clients every now and then. */
+				if ((tick++) % networkTicks == 0)
+				{
+					TickContext.begin(TickContext.mix(seed, COMMIT_SALT), time, ids + COMMIT_IDS * TickContext.IDS);
+					observer.commitWorldState(world);
+					phaseStart = profiler.record("Commit", phaseStart);
+					if (persistence != null) journalLocationChanges();
 
-						/* Here the game logic should add the
-						 * player to some location, and maybe
-						 * give him starting items and stuff. */
-						GameLogic.addClient(newPlayer, world);
+					if ((snapshotTicks > 0) && (tick - lastSnapshot >= snapshotTicks))
+					{
+						if (persistence.snapshot(world)) lastSnapshot = tick;
+						profiler.record("Snapshot", phaseStart);
 					}
+				}
+			}
+			finally
+			{
+				TickContext.end();
+			}
+
+			profiler.recordTick(tickStart);
+		}
+
+		/**
+		 * Starts or stops recording as requested.
+		 * A recording  only starts right after a
+		 * world commit, when no change is pending.
+		 */
+		private void updateRecording()
+		{
+			if ((recorder != null) && ((stopRequest) || (recorder.isFailed())))
+			{
+				recorder.close();
+				recorder = null;
+			}
 
-					while (!removed.isEmpty()) GameLogic.removeClient(removed.poll(), world);
+			if (recorder == null) stopRequest = false;
+			File file = recordRequest;
 
-					/* This is because until the end of this tick, new players *have* no actual
-					 * location, so they cannot issue any action yet (next tick they will). */
-					while (!actions.isEmpty())
+			if ((file != null) && (recorder == null) && ((tick - 1) % networkTicks == 0))
+			{
+				recordRequest = null;
+
+				if (hibernator.isPagingOut())
+				{
+					Log.warning(COMPONENT, "Cannot record ticks while paging out locations.");
+					return;
+				}
+
+				/* Both the recording and its replays rebuild the physics bodies,
+				 * and walk the entities of each archetype in the same order. */
+				for (Location location : world.getLocations())
+				{
+					world.getPhysics().removeLocation(location);
+					location.reindex();
+				}
+
+				try
+				{
+					recorder = new TickRecorder(file, world, tick, updateRate, networkTicks, hibernateTicks, hibernator, players.keySet());
+				}
+				catch (IOException error)
+				{
+					Log.severe(error, COMPONENT, "Failed to start recording to '%s'.", file);
+				}
+			}
+		}
+
+		/**
+		 * Journals  every player whose location has
+		 * changed since it was last journaled. This
+		 * is called right after the world commit,
+		 * which is where players change location.
+		 */
+		private void journalLocationChanges()
+		{
+			for (Map.Entry<NetClient, Location> entry : players.entrySet())
+			{
+				NetClient client = entry.getKey();
+				Location location = client.getLocation();
+
+				if ((location != null) && (location != entry.getValue()) && (client.hasPlayerEntity()))
+				{
+					persistence.journal(client.getName(), location.getName(), client.getPlayer());
+					entry.setValue(location);
+				}
+			}
+		}
+
+		/**
+		 * Runs the entity systems on every location.
+		 * Locations share no entities while this is
+		 * running (players only change location in
+		 * the world commit, and logins, logouts and
+		 * portals are handled before), so each one
+		 * can be processed on its own thread. This
+		 * method only returns once every location
+		 * is done, which  is the barrier  at which
+		 * cross-location effects are then applied.
+		 */
+		private void processLocations(final long seed, final long time, final long ids)
+		{
+			if (locationPool == null)
+			{
+				for (Location location : world.getLocations())
+					if (!hibernator.isHibernating(location)) processLocation(location, seed, time, ids);
+
+				return;
+			}
+
+			List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+
+			for (final Location location : world.getLocations())
+			{
+				if (hibernator.isHibernating(location)) continue;
+
+				tasks.add(locationPool.submit(new Runnable()
+				{
+					@Override
+					public void run()
 					{
-						ClientAction action = actions.poll();
-						if (!action.client.locationChanged())
+						try
+						{
+							processLocation(location, seed, time, ids);
+						}
+						finally
 						{
-							GameLogic.processAction(action, world);
+							TickContext.end();
 						}
 					}
+				}));
+			}
 
-					for(Location location : world.getLocations())
-						world.process(location, updateRate);
+			/* Rethrows any exception thrown by a location. */
+			for (ForkJoinTask<?> task : tasks) task.join();
+		}
 
-					/* Commit the world state to the clients every now and then. */
-					if ((tick++) % networkTicks == 0) observer.commitWorldState(world);
-				}
-			}
-			catch (Exception error)
+		/**
+		 * Runs every entity system on a location,
+		 * timing each of them separately. Each
+		 * location has its own seed and ID's, so
+		 * the order in which they are processed,
+		 * and which thread they are processed on,
+		 * does not matter.
+		 */
+		private void processLocation(Location location, long seed, long time, long ids)
+		{
+			long start = System.nanoTime();
+			long locationIDs = ids + (long)(LOCATION_IDS + locationNumbers.get(location)) * TickContext.IDS;
+			TickContext.begin(TickContext.mix(TickContext.mix(seed, LOCATION_SALT), location.getName().hashCode()), time, locationIDs);
+
+			List<EntitySystem> systems = world.getSystems();
+			LatencyHistogram[] phases = systemPhases.get(location);
+
+			for (int t = 0; t < systems.size(); ++t)
 			{
-				Log.severe(error, COMPONENT, "Game logic loop encountered an error, attempting to recover.");
+				EntitySystem system = systems.get(t);
+				system.process(world, location, updateRate);
+
+				if (phases[t] == null) phases[t] = profiler.getPhase(system.getClass().getSimpleName() + " @ " + location.getName());
+				start = profiler.record(phases[t], start);
 			}
 		}
 	}
 
 	private final ScheduledExecutorService gameLogicScheduler;
+
+	/**
+	 * The  pool used to process  locations in
+	 * parallel, or {@code null} if locations are
+	 * processed sequentially.
+	 */
+	private final ForkJoinPool locationPool;
 	private final WorldObserver observer;
 	private final ServerTick logic;
 
-	private final File worldStateFile;
+	private final WorldPersistence persistence;
 	private World world;
 
 	@Override
@@ -145,32 +485,123 @@ public class WorldState implements Configurable
 	{
 		if (config.getUpdateRate() <= 0) throw new IllegalArgumentException("Update rate cannot be zero or negative.");
 		if (config.getNetworkTicks() <= 0) throw new IllegalArgumentException("Network ticks cannot be zero or negative.");
+		if (config.getWorldThreads() < 0) throw new IllegalArgumentException("World threads cannot be negative.");
+		if (config.getSnapshotInterval() < 0) throw new IllegalArgumentException("Snapshot interval cannot be negative.");
+		if (config.getHibernateDelay() < 0) throw new IllegalArgumentException("Hibernate delay cannot be negative.");
 	}
 
-	public WorldState(WorldObserver observer, Configuration config)
+	public WorldState(WorldObserver observer, Configuration config) throws IOException
 	{
 		validate(config);
 
-		worldStateFile = new File(config.getWorldStateFile());
-
-		try
-		{
-			world = DataStorage.loadFile(worldStateFile);
-			System.out.println("LOADING WORKED");
-		}
-		catch (Exception error)
-		{
-			Log.severe(error, COMPONENT, "Failed to load game world, generating default world.");
-			world = WorldGenerator.generateWorld();
-		}
+		/* This also replays any changes journaled
+		 * since the last snapshot, if the server
+		 * did not shut down cleanly. */
+		persistence = new WorldPersistence(new File(config.getWorldStateFile()));
+		world = persistence.load();
 
 		this.observer = observer;
 
+		int threads = (config.getWorldThreads() == 0 ? Runtime.getRuntime().availableProcessors() : config.getWorldThreads());
+		locationPool = (threads > 1 ? new ForkJoinPool(threads) : null);
+		Log.info(COMPONENT, "Processing locations on %d thread(s).", threads);
+
 		gameLogicScheduler = Executors.newScheduledThreadPool(1);
-		logic = new ServerTick(config.getUpdateRate(), config.getNetworkTicks());
+		logic = new ServerTick(config.getUpdateRate(), config.getNetworkTicks(),
+							   Math.round(config.getSnapshotInterval() / config.getUpdateRate()),
+							   Math.round(config.getHibernateDelay() / config.getUpdateRate()), config.getPageOut(), 0);
 		gameLogicScheduler.scheduleAtFixedRate(logic, 0, (long)(config.getUpdateRate() * 1000), TimeUnit.MILLISECONDS);
 	}
 
+	/**
+	 * Creates a world state which is not run on
+	 * a schedule and not persisted, to replay
+	 * recorded ticks (see {@code TickReplayer}).
+	 *
+	 * @param world The world as it was when the
+	 * recording started.
+	 * @param observer The observer committing
+	 * the world state.
+	 * @param threads The number of threads  to
+	 * process locations on.
+	 * @param updateRate The recorded update rate.
+	 * @param networkTicks The recorded number of
+	 * ticks between two world commits.
+	 * @param hibernateTicks The recorded number
+	 * of ticks before a location hibernates.
+	 * @param tick The first recorded tick.
+	 */
+	WorldState(World world, WorldObserver observer, int threads, double updateRate, int networkTicks, long hibernateTicks, long tick)
+	{
+		this.persistence = null;
+		this.observer = observer;
+		this.world = world;
+
+		locationPool = (threads > 1 ? new ForkJoinPool(threads) : null);
+		gameLogicScheduler = null;
+
+		logic = new ServerTick(updateRate, networkTicks, 0, hibernateTicks, false, tick);
+	}
+
+	/**
+	 * Runs a recorded tick (see {@code step}).
+	 */
+	void replayTick(long seed, long time, long ids)
+	{
+		synchronized(world)
+		{
+			logic.step(seed, time, ids);
+		}
+	}
+
+	/**
+	 * Runs a tick as the server would, with a
+	 * given seed and time (see {@code step}).
+	 */
+	void runTick(long seed, long time)
+	{
+		logic.tick(seed, time);
+	}
+
+	/**
+	 * Restores a player who was already in the
+	 * game when the recording started.
+	 */
+	void restorePlayer(NetClient client)
+	{
+		logic.players.put(client, client.getLocation());
+	}
+
+	/**
+	 * Returns the location hibernator.
+	 */
+	LocationHibernator getHibernator()
+	{
+		return logic.hibernator;
+	}
+
+	/**
+	 * Starts recording every tick to a file, from
+	 * the next world commit onwards, to replay
+	 * them later (see {@code TickReplayer}).
+	 *
+	 * @param file The file to record to.
+	 */
+	public void startRecording(File file)
+	{
+		logic.stopRequest = false;
+		logic.recordRequest = file;
+	}
+
+	/**
+	 * Stops recording ticks, if recording.
+	 */
+	public void stopRecording()
+	{
+		logic.recordRequest = null;
+		logic.stopRequest = true;
+	}
+
 	/**
 	 * Called when a new player logs in.
 	 * 
@@ -218,6 +649,24 @@ public class WorldState implements Configurable
 		return logic.tick;
 	}
 
+	/**
+	 * Returns  the  profiler  holding the tick
+	 * timings.
+	 */
+	public TickProfiler getProfiler()
+	{
+		return logic.profiler;
+	}
+
+	/**
+	 * Returns whether a location is hibernating.
+	 * The caller must hold the world's lock.
+	 */
+	public boolean isHibernating(Location location)
+	{
+		return logic.hibernator.isHibernating(location);
+	}
+
 	/**
 	 * Returns the time the server started.
 	 */
@@ -263,8 +712,19 @@ public class WorldState implements Configurable
 		else
 			Log.info(COMPONENT, "Game logic loop successfully terminated.");
 
+		if (locationPool != null) locationPool.shutdown();
+		if (logic.recorder != null) logic.recorder.close();
+
 		Log.info(COMPONENT, "Saving world state.");
-		DataStorage.saveFile(worldStateFile, world);
-		Log.info(COMPONENT, "World has been saved.");
+
+		try
+		{
+			persistence.close(world);
+			Log.info(COMPONENT, "World has been saved.");
+		}
+		catch (IOException error)
+		{
+			Log.severe(error, COMPONENT, "Failed to save world state, the journal has been kept.");
+		}
 	}
 }
@@ -1,5 +1,6 @@
 package network.server.back_end.logic_handlers;
 
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -15,6 +16,7 @@ import ecs.components.Multiplier;
 import ecs.components.Position;
 import ecs.components.Size;
 import ecs.components.Target;
+import ecs.components.TargetRadius;
 import ecs.components.Text;
 import ecs.components.Type;
 import ecs.components.Worth;
@@ -32,6 +34,10 @@ import ecs.world.World;
  */
 public class InteractionHandler {
 
+	/** The types of entity that can be interacted with */
+	private static final Set<EntityType> INTERACTABLE = EnumSet.of(EntityType.ITEM, EntityType.KEY, EntityType.HEALTH_POTION,
+			EntityType.PORTAL, EntityType.MONEY, EntityType.WEAPON, EntityType.CONTAINER, EntityType.NPC);
+
 	/** Handle event based on a packet that a client has sent
 	 *
 	 * @param client
@@ -43,6 +49,10 @@ public class InteractionHandler {
 
 
 		Target target = player.getComponent(Target.class);
+		if(target.getTarget()==null){
+			// Nothing targetted since the last tick, look for something close by
+			target.setTarget(findInteractable(client, player, world));
+		}
 		if(target.getTarget()!=null && target.getTarget().hasAll(Type.class)){
 			// TODO: Change this to be more detailed. add more logic
 			EntityType type = target.getTarget().getType();
@@ -63,6 +73,33 @@ public class InteractionHandler {
 		}
 	}
 
+	/** Find the closest entity in the player's targetting radius that can be interacted with,
+	 * using the physics system's proximity queries
+	 *
+	 * @param client
+	 * @param player
+	 * @param world
+	 * @return The closest interactable entity, or null if there is none
+	 */
+	private static Entity findInteractable(NetClient client, Entity player, World world) {
+		if(client.getLocation()==null || !player.hasAll(Position.class, TargetRadius.class)){
+			return null;
+		}
+		Position pos = player.getComponent(Position.class);
+		double dist = player.getComponent(TargetRadius.class).getRadius();
+		Entity closest = null;
+		for(Entity ent : world.getPhysics().queryRadius(client.getLocation(), pos.getX(), pos.getY(), dist, null)){
+			if(ent.getID()!=player.getID() && ent.hasAll(Type.class) && INTERACTABLE.contains(ent.getType())){
+				double disBetween = ent.getComponent(Position.class).getDistance(pos);
+				if(disBetween < dist){
+					dist = disBetween;
+					closest = ent;
+				}
+			}
+		}
+		return closest;
+	}
+
 	/** Take a targetted item and put it in the inventory
 	 *
 	 * @param client
@@ -14,11 +14,11 @@ import ecs.components.Name;
 import ecs.components.Position;
 import ecs.components.Target;
 import ecs.components.TargetRadius;
-import ecs.components.Velocity;
 import ecs.components.Volume;
 import ecs.components.Type.EntityType;
 import ecs.entity.Entity;
-import ecs.helpers.EntityFactory;
+import ecs.helpers.BulletPool;
+import ecs.helpers.TickContext;
 import ecs.world.World;
 
 /** Handles player shooting
@@ -42,39 +42,43 @@ public class ShootingHandler {
 		if(!equip.hasEquipped()){ return; } // If no weapon equipped, do nothing
 		Entity weapon = equip.getEquipped();
 		if(equip.getEquipped().getName().equals("None")){ return; }
-		if((player.getComponent(EventTrigger.class)).canFire(System.currentTimeMillis())){ // If can fire
+		if((player.getComponent(EventTrigger.class)).canFire(TickContext.currentTimeMillis())){ // If can fire
 			Position playerPos = player.getComponent(Position.class);
 			double mag = playerPos.getDistance(new Position(packet.x, packet.y)); // Get magnitude from player to click
 			// Get directional unit vector (to find where bullet is going)
 			double x = (packet.x - playerPos.getX())/mag;
 			double y = (packet.y - playerPos.getY())/mag;
-			Velocity bulletV = new Velocity(x*1.5f, y*1.5f); // Set velocity of bullet
 			double offset = (player.getComponent(Volume.class).getWidth() / 2);
-			// Create bullet position relative to player
-			Position bulletPos = new Position(playerPos.getX() + (offset + 0.013)*x, playerPos.getY() + (offset + 0.013)*y);
-			Entity bullet = getBullet(weapon, player, bulletV, bulletPos); // Generate a bullet based on weapon and player
+			// Create bullet relative to player, going towards the click
+			Entity bullet = getBullet(client.getLocation().getBulletPool(), weapon, player,
+					playerPos.getX() + (offset + 0.013)*x, playerPos.getY() + (offset + 0.013)*y, x*1.5f, y*1.5f);
 			client.getLocation().addEntity(bullet); // Add bullet to the location
 		}
 
 	}
 
 	/** Generates a bullet based on the player and what he/she has equipped
+	 * (reusing a bullet from the location's pool if there is one)
 	 *
+	 * @param pool
 	 * @param weapon
 	 * @param player
-	 * @param vel
-	 * @param pos
+	 * @param x
+	 * @param y
+	 * @param vx
+	 * @param vy
 	 * @return
 	 */
-	private static Entity getBullet(Entity weapon, Entity player, Velocity vel, Position pos) {
+	private static Entity getBullet(BulletPool pool, Entity weapon, Entity player, double x, double y, double vx, double vy) {
 		// Calculate bullet damage
 		int damage = weapon.getComponent(DamageFactor.class).getDamageFactor() + player.getComponent(DamageFactor.class).getDamageFactor();
-		// Generate a new bullet based on this damage, position and velocity
-		Entity bullet = EntityFactory.genBulletEntity(new DamageFactor(damage), 0.005f, pos, vel);
+		// Get a bullet with this damage, position and velocity
+		Entity bullet = pool.acquire(damage, 0.005f, x, y, vx, vy);
 		// Check if the weapon it spawns from has a suffix to give bullet special behaviour
-		if(weapon.getComponent(Name.class).hasSuffix()){
-			String suffix = weapon.getComponent(Name.class).getSuffix();
-			bullet.addComponent(weapon.getComponent(Name.class)); // Add a name to th ebullet
+		Name weaponName = weapon.getComponent(Name.class);
+		if(weaponName.hasSuffix()){
+			String suffix = weaponName.getSuffix();
+			bullet.addComponent(new Name(weaponName.getName(), suffix)); // Add a name to the bullet (a copy, as the weapon keeps its own)
 			if(suffix.equalsIgnoreCase("Homing")){ // Homing bullets need a targetting component
 				Set<EntityType> targets = new HashSet<EntityType>();
 				targets.add(EntityType.ZOMBIE);
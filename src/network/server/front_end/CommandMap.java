@@ -98,6 +98,8 @@ public class CommandMap
 		registerCommand("status", new StatusCommand());
 		registerCommand("uptime", new UptimeCommand());
 		registerCommand("database", new DatabaseCommand());
+		registerCommand("perf", new PerfCommand());
+		registerCommand("record", new RecordCommand());
 		
 		registerAlias("quit", "exit");
 		registerAlias("up", "uptime");
@@ -37,10 +37,11 @@ public class DatabaseCommand implements ServerCommand
 							  entityTotal(world), componentTotal(world), locationCount(world));
 			
 			for (Location location : world.getLocations())
-				System.out.printf("    - '%s' with %d entities (%d saved, %d active)\n",
+				System.out.printf("    - '%s' with %d entities (%d saved, %d active)%s\n",
 								  location.getName(), location.getEntities().size(),
 								  savedPlayerCount(world, location),
-								  activePlayerCount(world, location));
+								  activePlayerCount(world, location),
+								  server.getWorldState().isHibernating(location) ? ", hibernating" : "");
 			
 			if (world.getSavedPlayers().size() > 0)
 			{
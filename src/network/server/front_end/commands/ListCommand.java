@@ -37,17 +37,19 @@ public class ListCommand implements ServerCommand
 			}
 			else
 			{
-				System.out.printf("  IP Address       Throughput      Player Name       Location                 \n");
-				System.out.printf("  ===============  ==============  ================  =========================\n");
+				System.out.printf("  IP Address       Throughput      RTT      Offset     Player Name       Location                 \n");
+				System.out.printf("  ===============  ==============  =======  =========  ================  =========================\n");
 				
 				server.clientFilter(new ClientTask()
 				{
 					@Override
 					public boolean nextClient(NetClient client)
 					{
-						System.out.printf("  %15s  %14s  %16s  %25s\n",
+						System.out.printf("  %15s  %14s  %7s  %9s  %16s  %25s\n",
 								          formatAddress(client.getAddress()),
 								          formatThroughput(client),
+								          formatLatency(client.getLatency()),
+								          formatOffset(client.getClockOffset()),
 								          formatName(client),
 								          formatLocation(client));
 						return true;
@@ -71,6 +73,18 @@ public class ListCommand implements ServerCommand
 			                                 (int)(client.getFromThroughput() / 1024));
 	}
 	
+	private String formatLatency(double latency)
+	{
+		if (Double.isNaN(latency)) return "-";
+		else return String.format("%d ms", Math.round(latency * 1000));
+	}
+	
+	private String formatOffset(double offset)
+	{
+		if (Double.isNaN(offset)) return "-";
+		else return String.format("%+d ms", Math.round(offset * 1000));
+	}
+	
 	private String formatName(NetClient client)
 	{
 		if (client.isLoggedIn())
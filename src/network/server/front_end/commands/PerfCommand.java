@@ -0,0 +1,42 @@
+package network.server.front_end.commands;
+
+import network.server.back_end.*;
+import java.io.IOException;
+
+/**
+ * Prints how long each phase of the server tick
+ * takes (median, 99th percentile and maximum), or
+ * resets these statistics.
+ */
+public class PerfCommand implements ServerCommand
+{
+	@Override
+	public boolean validate(String[] args)
+	{
+		return (args.length == 0) || ((args.length == 1) && (args[0].equals("reset")));
+	}
+
+	@Override
+	public String usage(String command)
+	{
+		return String.format("%s [reset]", command);
+	}
+
+	@Override
+	public boolean execute(String[] args, GameServer server) throws IOException
+	{
+		TickProfiler profiler = server.getWorldState().getProfiler();
+
+		if (args.length == 1)
+		{
+			profiler.reset();
+			System.out.printf("\n  Tick statistics have been reset.\n\n");
+			return false;
+		}
+
+		System.out.printf("\n");
+		profiler.print(System.out);
+		System.out.printf("\n");
+		return false;
+	}
+}
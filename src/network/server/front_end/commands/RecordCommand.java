@@ -0,0 +1,42 @@
+package network.server.front_end.commands;
+
+import java.io.*;
+
+import network.server.back_end.*;
+
+/**
+ * Starts recording the server ticks to a file,
+ * to replay them offline (see TickReplayer), or
+ * stops recording.
+ */
+public class RecordCommand implements ServerCommand
+{
+	@Override
+	public boolean validate(String[] args)
+	{
+		return (args.length == 1);
+	}
+
+	@Override
+	public String usage(String command)
+	{
+		return String.format("%s <file>/stop", command);
+	}
+
+	@Override
+	public boolean execute(String[] args, GameServer server) throws IOException
+	{
+		if (args[0].equals("stop"))
+		{
+			server.getWorldState().stopRecording();
+			System.out.printf("\n  Recording will stop at the next tick.\n\n");
+		}
+		else
+		{
+			server.getWorldState().startRecording(new File(args[0]));
+			System.out.printf("\n  Recording to '%s' from the next world commit.\n\n", args[0]);
+		}
+
+		return false;
+	}
+}